@@ -3,7 +3,6 @@ package com.github.obourgain.elasticsearch.http.buffer;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.channels.GatheringByteChannel;
-import java.util.Arrays;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -60,7 +59,9 @@ public class ByteBufBytesReference implements BytesReference {
 
     @Override
     public byte[] toBytes() {
-        return Arrays.copyOf(buf.array(), buf.capacity());
+        byte[] bytes = new byte[buf.capacity()];
+        buf.getBytes(0, bytes);
+        return bytes;
     }
 
     @Override
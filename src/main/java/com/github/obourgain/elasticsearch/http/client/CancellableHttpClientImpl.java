@@ -0,0 +1,85 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import io.netty.bootstrap.Bootstrap;
+import io.reactivex.netty.channel.ObservableConnection;
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.client.ConnectionPoolBuilder;
+import io.reactivex.netty.client.RxClient;
+import io.reactivex.netty.metrics.MetricEventsSubject;
+import io.reactivex.netty.pipeline.PipelineConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
+import io.reactivex.netty.protocol.http.client.HttpClientImpl;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Action1;
+
+/**
+ * A client closing the connection of a request unsubscribed before its response completed, e.g. because the caller
+ * cancelled it or its deadline passed. RxNetty keeps such a connection busy until the node answers, and would give it
+ * back to the pool with the late response still to be read. The closed connection is discarded by the pool, which
+ * frees its slot for the next requests.
+ *
+ * @author olivier bourgain
+ */
+class CancellableHttpClientImpl<I, O> extends HttpClientImpl<I, O> {
+
+    CancellableHttpClientImpl(String name, ServerInfo serverInfo, Bootstrap clientBootstrap,
+                              PipelineConfigurator<HttpClientResponse<O>, HttpClientRequest<I>> pipelineConfigurator,
+                              ClientConfig clientConfig, ConnectionPoolBuilder<HttpClientResponse<O>, HttpClientRequest<I>> poolBuilder,
+                              MetricEventsSubject<ClientMetricsEvent<?>> eventsSubject) {
+        super(name, serverInfo, clientBootstrap, pipelineConfigurator, clientConfig, poolBuilder, eventsSubject);
+    }
+
+    @Override
+    protected Observable<HttpClientResponse<O>> submit(HttpClientRequest<I> request,
+                                                       Observable<ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>>> connectionObservable,
+                                                       RxClient.ClientConfig config) {
+        final AtomicReference<ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>>> connection = new AtomicReference<>();
+        final AtomicBoolean terminated = new AtomicBoolean();
+        Observable<ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>>> remembered = connectionObservable.doOnNext(new Action1<ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>>>() {
+            @Override
+            public void call(ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>> acquired) {
+                connection.set(acquired);
+            }
+        });
+        return super.submit(request, remembered, config)
+                .doOnTerminate(new Action0() {
+                    @Override
+                    public void call() {
+                        terminated.set(true);
+                    }
+                })
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        ObservableConnection<HttpClientResponse<O>, HttpClientRequest<I>> acquired = connection.get();
+                        if (!terminated.get() && acquired != null) {
+                            acquired.getChannel().close();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Builds a {@link CancellableHttpClientImpl} with the configuration of the RxNetty builder.
+     */
+    static class Builder<I, O> extends HttpClientBuilder<I, O> {
+
+        Builder(String host, int port) {
+            super(host, port);
+        }
+
+        @Override
+        protected io.reactivex.netty.protocol.http.client.HttpClient<I, O> createClient() {
+            if (poolBuilder == null) {
+                // every client of the nodes is pooled, see HttpClient#createClient
+                throw new IllegalStateException("the connections must be pooled");
+            }
+            return new CancellableHttpClientImpl<>(getOrCreateName(), serverInfo, bootstrap, pipelineConfigurator, clientConfig, poolBuilder, eventsSubject);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+/**
+ * Receives the events of the connection pools of the nodes and the latencies of the requests, to be exported to a
+ * metrics library. The nodes are identified by their host:port, the actions by the endpoint of their requests, like
+ * {@code _search} or {@code get}, see {@link NodeSelectingHttpClient#action(String, String)}.
+ * <p>
+ * Does nothing by default, implementations override the events they need. The events come from the I/O threads, so
+ * the implementations must be thread safe and must not block. {@link StatsClientMetrics} keeps the counters and
+ * latencies in memory.
+ *
+ * @author olivier bourgain
+ */
+public abstract class ClientMetrics {
+
+    private static final ClientMetrics NONE = new ClientMetrics() {
+    };
+
+    public static ClientMetrics none() {
+        return NONE;
+    }
+
+    /**
+     * A connection to the node was opened in connectNanos.
+     */
+    public void connectionCreated(String node, long connectNanos) {
+    }
+
+    public void connectFailed(String node, long connectNanos) {
+    }
+
+    public void connectionClosed(String node) {
+    }
+
+    /**
+     * An idle connection of the pool was closed, because it expired or was closed by the node.
+     */
+    public void connectionEvicted(String node) {
+    }
+
+    /**
+     * A request waits for a connection of the pool.
+     */
+    public void acquireStarted(String node) {
+    }
+
+    /**
+     * A request got a connection after waiting for acquireNanos, either an idle one of the pool or a new one.
+     */
+    public void acquireSucceeded(String node, long acquireNanos) {
+    }
+
+    public void acquireFailed(String node, long acquireNanos) {
+    }
+
+    /**
+     * A connection was given back to the pool after its request completed.
+     */
+    public void connectionReleased(String node) {
+    }
+
+    /**
+     * A request of the action got the headers of its response, or failed, after latencyNanos.
+     */
+    public void requestCompleted(String node, String action, long latencyNanos, boolean failed) {
+    }
+}
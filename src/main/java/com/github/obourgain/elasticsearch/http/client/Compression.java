@@ -0,0 +1,132 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+
+/**
+ * Whether the responses are requested compressed, and which request bodies are gzipped, those of the bulks and multi
+ * searches at least as large as a minimum size.
+ * <p>
+ * The nodes compress their responses only with http.compression enabled, they always accept compressed requests.
+ *
+ * @author olivier bourgain
+ */
+public class Compression {
+
+    public static final ByteSizeValue DEFAULT_MIN_SIZE = new ByteSizeValue(1024);
+
+    private static final Compression NONE = new Compression(false, Deflater.DEFAULT_COMPRESSION, Long.MAX_VALUE);
+
+    private final boolean acceptCompressedResponses;
+    private final int level;
+    private final long minSize;
+
+    private Compression(boolean acceptCompressedResponses, int level, long minSize) {
+        this.acceptCompressedResponses = acceptCompressedResponses;
+        this.level = level;
+        this.minSize = minSize;
+    }
+
+    /**
+     * Neither the requests nor the responses are compressed.
+     */
+    public static Compression none() {
+        return NONE;
+    }
+
+    /**
+     * Accepts compressed responses, and gzips the request bodies of at least 1kb with the default level.
+     */
+    public static Compression gzip() {
+        return gzip(Deflater.DEFAULT_COMPRESSION, DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * Accepts compressed responses, and gzips the request bodies of at least minSize.
+     *
+     * @param level from 1 (fastest) to 9 (smallest), or -1 for the default level
+     */
+    public static Compression gzip(int level, ByteSizeValue minSize) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between 1 and 9, or -1, but was " + level);
+        }
+        return new Compression(true, level, minSize.bytes());
+    }
+
+    /**
+     * Accepts compressed responses but sends the requests as is.
+     */
+    public static Compression responsesOnly() {
+        return new Compression(true, Deflater.DEFAULT_COMPRESSION, Long.MAX_VALUE);
+    }
+
+    public boolean acceptCompressedResponses() {
+        return acceptCompressedResponses;
+    }
+
+    /**
+     * @param size the size of the body, or an estimation if it is encoded lazily
+     */
+    public boolean compress(long size) {
+        return size >= minSize;
+    }
+
+    /**
+     * Sets the body of the request, gzipped if large enough.
+     */
+    public HttpClientRequest<ByteBuf> withContent(HttpClientRequest<ByteBuf> request, byte[] body) {
+        if (!compress(body.length)) {
+            return request.withContent(body);
+        }
+        BytesStreamOutput compressed = new BytesStreamOutput(body.length / 4);
+        try (OutputStream gzip = gzip(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return request.withHeader(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.GZIP)
+                .withContent(compressed.bytes().toBytes());
+    }
+
+    /**
+     * Gzips the content, which is released.
+     */
+    public ByteBuf gzip(ByteBuf content, ByteBufAllocator allocator) {
+        ByteBuf compressed = allocator.buffer(content.readableBytes() / 4);
+        try (OutputStream gzip = gzip(new ByteBufOutputStream(compressed))) {
+            content.readBytes(gzip, content.readableBytes());
+        } catch (IOException e) {
+            compressed.release();
+            throw new RuntimeException(e);
+        } finally {
+            content.release();
+        }
+        return compressed;
+    }
+
+    private OutputStream gzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "Compression{" +
+                "acceptCompressedResponses=" + acceptCompressedResponses +
+                ", level=" + level +
+                ", minSize=" + minSize +
+                '}';
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+
+/**
+ * The encoding of the bodies of the search, multi search, multi get and bulk requests, and of the responses of the
+ * get, multi get, search, multi search and bulk requests.
+ * <p>
+ * The nodes answer in the type of the Content-Type header of the request. The responses are parsed whatever their
+ * type, the sources and raw parts are still exposed as JSON.
+ * CBOR has no stream separator, so the bodies of the bulks and multi searches stay in JSON with CBOR, and so do
+ * their responses.
+ *
+ * @author olivier bourgain
+ */
+public class ContentType {
+
+    private static final ContentType JSON = new ContentType(XContentType.JSON);
+    private static final ContentType SMILE = new ContentType(XContentType.SMILE);
+    private static final ContentType CBOR = new ContentType(XContentType.CBOR);
+
+    private final XContentType type;
+
+    private ContentType(XContentType type) {
+        this.type = type;
+    }
+
+    public static ContentType json() {
+        return JSON;
+    }
+
+    public static ContentType smile() {
+        return SMILE;
+    }
+
+    public static ContentType cbor() {
+        return CBOR;
+    }
+
+    public XContentType type() {
+        return type;
+    }
+
+    /**
+     * The type of the bodies made of several documents separated by a marker, like bulks and multi searches.
+     */
+    public ContentType multiDocument() {
+        return type == XContentType.CBOR ? JSON : this;
+    }
+
+    /**
+     * The marker following each document of a bulk or multi search.
+     */
+    public byte separator() {
+        return type.xContent().streamSeparator();
+    }
+
+    public XContentBuilder builder() throws IOException {
+        return XContentFactory.contentBuilder(type);
+    }
+
+    public XContentBuilder builder(OutputStream out) throws IOException {
+        return XContentFactory.contentBuilder(type, out);
+    }
+
+    /**
+     * Encodes the content in this type if it is in another one. With JSON, the content is left as is.
+     */
+    public BytesReference convert(BytesReference content) {
+        if (type == XContentType.JSON || content.length() == 0 || type == XContentFactory.xContentType(content)) {
+            return content;
+        }
+        try (XContentParser parser = XContentHelper.createParser(content);
+             XContentBuilder builder = builder()) {
+            parser.nextToken();
+            builder.copyCurrentStructure(parser);
+            return builder.bytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sets the Content-Type header, so that the node answers in this type. JSON is the default of the nodes, no header
+     * is set for it.
+     */
+    public HttpClientRequest<ByteBuf> withContentType(HttpClientRequest<ByteBuf> request) {
+        if (type != XContentType.JSON) {
+            request.withHeader(HttpHeaders.Names.CONTENT_TYPE, type.restContentType());
+        }
+        return request;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentType{" + type + '}';
+    }
+}
@@ -0,0 +1,377 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+import com.github.obourgain.elasticsearch.http.concurrent.ForwardingListener;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.Either;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.Eithers;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetActionHandler;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponseError;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Caches the documents found by the gets and multi gets, evicting the least recently used documents above a maximum
+ * number of documents, and the documents cached for longer than a time to live.
+ * <p>
+ * A document is cached per routing, fields and source filtering. It is invalidated when the client indexes, updates
+ * or deletes it, and a get of a document being written is not cached, so that the client reads its own writes.
+ * The writes of other clients are seen once the cached document expires. A get of a specific version is served from
+ * the cache only if the cached document has this version.
+ * <p>
+ * The cached responses are shared by the callers, they must not be modified.
+ *
+ * @author olivier bourgain
+ */
+public class DocumentCache {
+
+    // index/type/id -> routing/fields/source -> response
+    private final Cache<String, ConcurrentMap<String, GetResponse>> documents;
+    // the sequence number of the last invalidation of the recently written documents
+    private final Cache<String, Long> invalidations;
+    private final AtomicLong sequence = new AtomicLong();
+    // the highest sequence number of the invalidations evicted, to stay safe after an eviction
+    private final AtomicLong evictedInvalidations = new AtomicLong();
+
+    public DocumentCache(long maxDocuments, TimeValue timeToLive) {
+        this.documents = CacheBuilder.newBuilder()
+                .maximumSize(maxDocuments)
+                .expireAfterWrite(timeToLive.millis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.invalidations = CacheBuilder.newBuilder()
+                .maximumSize(maxDocuments)
+                .removalListener(new RemovalListener<String, Long>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Long> notification) {
+                        if (!notification.wasEvicted()) {
+                            return;
+                        }
+                        long evicted;
+                        do {
+                            evicted = evictedInvalidations.get();
+                        } while (notification.getValue() > evicted && !evictedInvalidations.compareAndSet(evicted, notification.getValue()));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return the cached document, or null if it is not cached or can not be served from the cache
+     */
+    @Nullable
+    public GetResponse get(GetRequest request) {
+        if (!isCacheable(request.index(), request.type(), request.id()) || request.refresh() || transformsSource(request.fetchSourceContext())) {
+            return null;
+        }
+        ConcurrentMap<String, GetResponse> variants = documents.getIfPresent(documentKey(request.index(), request.type(), request.id()));
+        if (variants == null) {
+            return null;
+        }
+        GetResponse cached = variants.get(variantKey(request.routing(), request.fields(), request.fetchSourceContext()));
+        if (cached == null || !hasVersion(cached, request.version(), request.versionType())) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * @return a listener caching the document before passing it to the given listener
+     */
+    public ActionListener<GetResponse> cacheOnResponse(final GetRequest request, final ActionListener<GetResponse> listener) {
+        if (!isCacheable(request.index(), request.type(), request.id()) || transformsSource(request.fetchSourceContext())) {
+            return listener;
+        }
+        final long startSequence = sequence.get();
+        return new ForwardingListener<GetResponse>(listener) {
+            @Override
+            public void onResponse(GetResponse response) {
+                put(request.index(), request.type(), request.id(), variantKey(request.routing(), request.fields(), request.fetchSourceContext()), response, startSequence);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        };
+    }
+
+    /**
+     * Answers the items of the multi get from the cache, and gets the others with a multi get.
+     */
+    public void multiGet(final MultiGetRequest request, MultiGetActionHandler multiGetActionHandler, final ActionListener<MultiGetResponse> listener) {
+        final List<MultiGetRequest.Item> items = request.getItems();
+        final GetResponse[] cached = new GetResponse[items.size()];
+        MultiGetRequest misses = new MultiGetRequest().preference(request.preference()).realtime(request.realtime()).refresh(request.refresh());
+        misses.ignoreErrorsOnGeneratedFields(request.ignoreErrorsOnGeneratedFields);
+        for (int i = 0; i < items.size(); i++) {
+            cached[i] = request.refresh() ? null : get(items.get(i));
+            if (cached[i] == null) {
+                misses.add(items.get(i));
+            }
+        }
+        if (misses.getItems().isEmpty()) {
+            listener.onResponse(merge(cached, null));
+            return;
+        }
+        final long startSequence = sequence.get();
+        multiGetActionHandler.execute(misses, new ForwardingListener<MultiGetResponse>(listener) {
+            @Override
+            public void onResponse(MultiGetResponse response) {
+                int miss = 0;
+                for (Either<MultiGetResponseError, GetResponse> either : response.all()) {
+                    while (miss < cached.length && cached[miss] != null) {
+                        miss++;
+                    }
+                    if (miss < cached.length && either.isRight() && either.right().isFound()) {
+                        MultiGetRequest.Item item = items.get(miss);
+                        if (isCacheable(item.index(), item.type(), item.id()) && !transformsSource(item.fetchSourceContext())) {
+                            put(item.index(), item.type(), item.id(), variantKey(item.routing(), item.fields(), item.fetchSourceContext()), either.right(), startSequence);
+                        }
+                    }
+                    miss++;
+                }
+                listener.onResponse(merge(cached, response));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * Invalidates the document now, and returns a listener invalidating it again when the write completes.
+     */
+    public <T> ActionListener<T> invalidateOnResponse(final String index, final String type, @Nullable final String id, ActionListener<T> listener) {
+        if (id == null) {
+            // a new document with a generated id
+            return listener;
+        }
+        return invalidateOnCompletion(new Action0() {
+            @Override
+            public void call() {
+                invalidate(index, type, id);
+            }
+        }, listener);
+    }
+
+    /**
+     * Invalidates the documents written by the bulk now, and returns a listener invalidating them again when the bulk
+     * completes.
+     */
+    public <T> ActionListener<T> invalidateOnResponse(BulkRequest request, ActionListener<T> listener) {
+        final Set<String> keys = new LinkedHashSet<>();
+        for (ActionRequest item : request.requests()) {
+            if (item instanceof IndexRequest) {
+                IndexRequest index = (IndexRequest) item;
+                addDocumentKey(keys, index.index(), index.type(), index.id());
+            } else if (item instanceof UpdateRequest) {
+                UpdateRequest update = (UpdateRequest) item;
+                addDocumentKey(keys, update.index(), update.type(), update.id());
+            } else if (item instanceof DeleteRequest) {
+                DeleteRequest delete = (DeleteRequest) item;
+                addDocumentKey(keys, delete.index(), delete.type(), delete.id());
+            }
+        }
+        if (keys.isEmpty()) {
+            return listener;
+        }
+        return invalidateOnCompletion(new Action0() {
+            @Override
+            public void call() {
+                invalidate(keys);
+            }
+        }, listener);
+    }
+
+    /**
+     * Invalidates all the documents now, and returns a listener invalidating them again when the write completes, e.g.
+     * for a delete by query.
+     */
+    public <T> ActionListener<T> invalidateAllOnResponse(ActionListener<T> listener) {
+        return invalidateOnCompletion(new Action0() {
+            @Override
+            public void call() {
+                invalidateAll();
+            }
+        }, listener);
+    }
+
+    public void invalidate(String index, String type, String id) {
+        String key = documentKey(index, type, id);
+        invalidations.put(key, sequence.incrementAndGet());
+        documents.invalidate(key);
+    }
+
+    // the documents are invalidated with a single sequence number
+    private void invalidate(Set<String> keys) {
+        long invalidated = sequence.incrementAndGet();
+        for (String key : keys) {
+            invalidations.put(key, invalidated);
+        }
+        documents.invalidateAll(keys);
+    }
+
+    public void invalidateAll() {
+        long invalidated = sequence.incrementAndGet();
+        long evicted;
+        do {
+            evicted = evictedInvalidations.get();
+        } while (invalidated > evicted && !evictedInvalidations.compareAndSet(evicted, invalidated));
+        documents.invalidateAll();
+    }
+
+    public long size() {
+        return documents.size();
+    }
+
+    @Nullable
+    private GetResponse get(MultiGetRequest.Item item) {
+        if (!isCacheable(item.index(), item.type(), item.id()) || transformsSource(item.fetchSourceContext())) {
+            return null;
+        }
+        ConcurrentMap<String, GetResponse> variants = documents.getIfPresent(documentKey(item.index(), item.type(), item.id()));
+        if (variants == null) {
+            return null;
+        }
+        GetResponse cached = variants.get(variantKey(item.routing(), item.fields(), item.fetchSourceContext()));
+        if (cached == null || !hasVersion(cached, item.version(), item.versionType())) {
+            return null;
+        }
+        return cached;
+    }
+
+    private void put(String index, String type, String id, String variantKey, GetResponse response, long startSequence) {
+        if (!response.isFound()) {
+            return;
+        }
+        String key = documentKey(index, type, id);
+        Long invalidation = invalidations.getIfPresent(key);
+        if ((invalidation != null && invalidation > startSequence) || evictedInvalidations.get() > startSequence) {
+            // written since the get was sent, the response may be stale
+            return;
+        }
+        ConcurrentMap<String, GetResponse> variants;
+        try {
+            variants = documents.get(key, new Callable<ConcurrentMap<String, GetResponse>>() {
+                @Override
+                public ConcurrentMap<String, GetResponse> call() {
+                    return new ConcurrentHashMap<>();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        GetResponse previous = variants.putIfAbsent(variantKey, response);
+        // keep the most recent version when concurrent gets return different versions
+        while (previous != null && previous.getVersion() < response.getVersion() && !variants.replace(variantKey, previous, response)) {
+            previous = variants.putIfAbsent(variantKey, response);
+        }
+    }
+
+    private static MultiGetResponse merge(GetResponse[] cached, @Nullable MultiGetResponse response) {
+        Eithers<MultiGetResponseError, GetResponse> docs = new Eithers<>();
+        List<Either<MultiGetResponseError, GetResponse>> fetched = new ArrayList<>();
+        if (response != null) {
+            for (Either<MultiGetResponseError, GetResponse> either : response.all()) {
+                fetched.add(either);
+            }
+        }
+        int miss = 0;
+        for (GetResponse hit : cached) {
+            if (hit != null) {
+                docs.add(Either.<MultiGetResponseError, GetResponse>right(hit));
+            } else if (miss < fetched.size()) {
+                docs.add(fetched.get(miss++));
+            }
+        }
+        return new MultiGetResponse(docs);
+    }
+
+    private static boolean isCacheable(String index, @Nullable String type, @Nullable String id) {
+        // a get on all the types can not be matched to the writes on a type
+        return index != null && id != null && type != null && !"_all".equals(type);
+    }
+
+    private static boolean transformsSource(@Nullable FetchSourceContext fetchSourceContext) {
+        return fetchSourceContext != null && fetchSourceContext.transformSource();
+    }
+
+    private static boolean hasVersion(GetResponse cached, long version, VersionType versionType) {
+        return version == Versions.MATCH_ANY || (versionType == VersionType.INTERNAL && cached.getVersion() == version);
+    }
+
+    /**
+     * Runs the invalidation now, and again when the write completes or is given up by the caller, as a cancelled write
+     * may still be applied by the node.
+     */
+    private static <T> ActionListener<T> invalidateOnCompletion(final Action0 invalidation, ActionListener<T> listener) {
+        invalidation.call();
+        ForwardingListener<T> invalidating = new ForwardingListener<T>(listener) {
+            @Override
+            public void onResponse(T response) {
+                invalidation.call();
+                this.listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                invalidation.call();
+                this.listener.onFailure(e);
+            }
+        };
+        invalidating.add(Subscriptions.create(invalidation));
+        return invalidating;
+    }
+
+    private static void addDocumentKey(Set<String> keys, String index, String type, @Nullable String id) {
+        // a new document with a generated id is not cached
+        if (id != null) {
+            keys.add(documentKey(index, type, id));
+        }
+    }
+
+    private static String documentKey(String index, String type, String id) {
+        return index + '\0' + type + '\0' + id;
+    }
+
+    private static String variantKey(@Nullable String routing, @Nullable String[] fields, @Nullable FetchSourceContext fetchSourceContext) {
+        StringBuilder key = new StringBuilder().append(routing).append('\0').append(Arrays.toString(fields));
+        if (fetchSourceContext != null) {
+            key.append('\0').append(fetchSourceContext.fetchSource())
+                    .append(Arrays.toString(fetchSourceContext.includes()))
+                    .append(Arrays.toString(fetchSourceContext.excludes()));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import org.elasticsearch.common.unit.TimeValue;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.reactivex.netty.client.PoolExhaustedException;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+/**
+ * Sends a request a second time when it has not been answered after a delay, and uses the first response received.
+ * The other request is cancelled. A node failure, like a connection failure, a timeout or a 5xx status code, is held
+ * back until the other request failed too, so that a request failing fast does not cancel a healthy one, and the call
+ * fails only when both requests failed. Other failures, like a 4xx status code, fail the call right away.
+ * <p>
+ * The duplicate goes through the node selection again, so it is sent to the next node in round robin, and avoids
+ * the node busy with the first request with the least outstanding requests load balancing.
+ * Only idempotent requests should be hedged.
+ *
+ * @author olivier bourgain
+ */
+public abstract class HedgingPolicy {
+
+    /**
+     * Never hedge.
+     */
+    public static HedgingPolicy none() {
+        return new HedgingPolicy() {
+            @Override
+            protected long delayMillis(String action) {
+                return -1;
+            }
+        };
+    }
+
+    /**
+     * Hedge the requests not answered after {@code delay}.
+     */
+    public static HedgingPolicy fixedDelay(final TimeValue delay) {
+        return new HedgingPolicy() {
+            @Override
+            protected long delayMillis(String action) {
+                return delay.millis();
+            }
+        };
+    }
+
+    /**
+     * Hedge the requests slower than the given percentile of the latency of the last requests of the same action,
+     * e.g. 0.95 hedges about 5% of the requests. The delay is at least {@code minDelay}. No request is hedged until
+     * enough latencies are known.
+     */
+    public static HedgingPolicy percentile(double percentile, TimeValue minDelay) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile must be between 0 and 1 but was " + percentile);
+        }
+        return new PercentileHedgingPolicy(percentile, minDelay.millis());
+    }
+
+    /**
+     * @param action the name of the action, the latencies are tracked per action
+     * @param request a cold observable, sending the request on each subscription
+     */
+    public <T> Observable<T> hedge(final String action, final Observable<T> request) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                long delay = delayMillis(action);
+                Observable<T> timed = timed(action, request);
+                if (delay < 0) {
+                    return timed;
+                }
+                final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+                Func1<Throwable, Observable<T>> holdFirstFailure = new Func1<Throwable, Observable<T>>() {
+                    @Override
+                    public Observable<T> call(Throwable e) {
+                        if (!isNodeFailure(e)) {
+                            // would fail on the other node too, e.g. a malformed query
+                            return Observable.error(e);
+                        }
+                        if (firstFailure.compareAndSet(null, e)) {
+                            // emits nothing, so the other request wins
+                            return Observable.never();
+                        }
+                        return Observable.error(firstFailure.get());
+                    }
+                };
+                return Observable.amb(timed.onErrorResumeNext(holdFirstFailure), timed.delaySubscription(delay, TimeUnit.MILLISECONDS).onErrorResumeNext(holdFirstFailure));
+            }
+        });
+    }
+
+    // another node may answer
+    private static boolean isNodeFailure(Throwable e) {
+        if (e instanceof ElasticsearchHttpException) {
+            return ((ElasticsearchHttpException) e).getStatusCode() >= 500;
+        }
+        return e instanceof IOException || e instanceof ReadTimeoutException || e instanceof TimeoutException || e instanceof PoolExhaustedException;
+    }
+
+    /**
+     * @return the delay before sending the duplicate request, negative to not hedge
+     */
+    protected abstract long delayMillis(String action);
+
+    protected void onLatency(String action, long millis) {
+    }
+
+    private <T> Observable<T> timed(final String action, final Observable<T> request) {
+        return Observable.defer(new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                final long start = System.nanoTime();
+                final AtomicLong recorded = new AtomicLong();
+                return request.doOnNext(new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        if (recorded.compareAndSet(0, 1)) {
+                            onLatency(action, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static class PercentileHedgingPolicy extends HedgingPolicy {
+
+        private static final int SAMPLES = 128;
+        private static final int MIN_SAMPLES = 16;
+
+        private final double percentile;
+        private final long minDelayMillis;
+        private final ConcurrentMap<String, Latencies> latencies = new ConcurrentHashMap<>();
+
+        private PercentileHedgingPolicy(double percentile, long minDelayMillis) {
+            this.percentile = percentile;
+            this.minDelayMillis = minDelayMillis;
+        }
+
+        @Override
+        protected long delayMillis(String action) {
+            Latencies actionLatencies = latencies.get(action);
+            if (actionLatencies == null) {
+                return -1;
+            }
+            long[] samples = actionLatencies.samples();
+            if (samples.length < MIN_SAMPLES) {
+                return -1;
+            }
+            Arrays.sort(samples);
+            return Math.max(minDelayMillis, samples[(int) (percentile * (samples.length - 1))]);
+        }
+
+        @Override
+        protected void onLatency(String action, long millis) {
+            Latencies actionLatencies = latencies.get(action);
+            if (actionLatencies == null) {
+                Latencies newLatencies = new Latencies();
+                actionLatencies = latencies.putIfAbsent(action, newLatencies);
+                if (actionLatencies == null) {
+                    actionLatencies = newLatencies;
+                }
+            }
+            actionLatencies.add(millis);
+        }
+    }
+
+    /**
+     * The last latencies, in a ring buffer.
+     */
+    private static class Latencies {
+
+        private final AtomicLongArray samples = new AtomicLongArray(PercentileHedgingPolicy.SAMPLES);
+        private final AtomicLong count = new AtomicLong();
+
+        void add(long millis) {
+            samples.set((int) (count.getAndIncrement() % samples.length()), millis);
+        }
+
+        long[] samples() {
+            int size = (int) Math.min(count.get(), samples.length());
+            long[] copy = new long[size];
+            for (int i = 0; i < size; i++) {
+                copy[i] = samples.get(i);
+            }
+            return copy;
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.github.obourgain.elasticsearch.http.client;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.count.CountRequest;
 import org.elasticsearch.action.delete.DeleteRequest;
@@ -24,19 +31,26 @@ import org.elasticsearch.action.search.MultiSearchRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.suggest.SuggestRequest;
-import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.action.termvector.TermVectorRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.concurrent.CancellableActionFuture;
 import com.github.obourgain.elasticsearch.http.concurrent.SnapshotableCopyOnWriteArray;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BackoffPolicy;
 import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkStreamer;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.RetryingBulkActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.document.delete.DeleteActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.document.delete.DeleteResponse;
 import com.github.obourgain.elasticsearch.http.handler.document.deleteByQuery.DeleteByQueryActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.document.deleteByQuery.DeleteByQueryResponse;
 import com.github.obourgain.elasticsearch.http.handler.document.get.GetActionHandler;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetBatcher;
 import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
 import com.github.obourgain.elasticsearch.http.handler.document.index.IndexActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.document.index.IndexResponse;
@@ -59,18 +73,28 @@ import com.github.obourgain.elasticsearch.http.handler.search.multipercolate.Mul
 import com.github.obourgain.elasticsearch.http.handler.search.multipercolate.MultiPercolateResponse;
 import com.github.obourgain.elasticsearch.http.handler.search.percolate.PercolateActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.search.percolate.PercolateResponse;
+import com.github.obourgain.elasticsearch.http.handler.search.search.HitsScroller;
 import com.github.obourgain.elasticsearch.http.handler.search.search.MultiSearchActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.search.search.MultiSearchResponse;
 import com.github.obourgain.elasticsearch.http.handler.search.search.SearchActionHandler;
+import com.github.obourgain.elasticsearch.http.handler.search.search.SearchCoalescer;
+import com.github.obourgain.elasticsearch.http.handler.search.search.SearchResponseCache;
 import com.github.obourgain.elasticsearch.http.handler.search.search.SearchResponse;
 import com.github.obourgain.elasticsearch.http.handler.search.search.SearchScrollActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.search.suggest.SuggestActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.search.suggest.SuggestResponse;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
 import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.buffer.ByteBuf;
-import io.reactivex.netty.RxNetty;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.logging.LogLevel;
 import io.reactivex.netty.client.RxClient;
 import io.reactivex.netty.protocol.http.client.HttpClientBuilder;
+import rx.Observable;
 
 /**
  * @author olivier bourgain
@@ -79,16 +103,36 @@ public class HttpClient {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpClient.class);
 
-    private static final int DEFAULT_MAX_CONNECTIONS = 10;
-    private static final int DEFAULT_TIMEOUT_MILLIS = 30 * 1000 * 1000;
-
-    private SnapshotableCopyOnWriteArray<io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf>> clients;
+    static final int DEFAULT_MAX_CONNECTIONS = 10;
+    static final TimeValue DEFAULT_CONNECT_TIMEOUT = TimeValue.timeValueSeconds(10);
+    static final TimeValue DEFAULT_READ_TIMEOUT = TimeValue.timeValueSeconds(30);
+    static final TimeValue DEFAULT_IDLE_CONNECTION_TIMEOUT = TimeValue.timeValueSeconds(30);
+
+    private SnapshotableCopyOnWriteArray<Node> clients;
+    private NodeSelectingHttpClient nodeSelectingHttpClient;
+    private volatile PreferencePolicy preferencePolicy = PreferencePolicy.none();
+    private volatile HedgingPolicy hedgingPolicy = HedgingPolicy.none();
+    private volatile Compression compression = Compression.none();
+    private volatile ContentType contentType = ContentType.json();
+    private volatile ClientMetrics metrics = ClientMetrics.none();
     private Supplier<io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf>> clientSupplier;
 
-    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
-    private int timeOut = DEFAULT_TIMEOUT_MILLIS;
+    private final int maxConnections;
+    private final TimeValue connectTimeout;
+    private final TimeValue readTimeout;
+    private final TimeValue idleConnectionTimeout;
     private HttpAdminClient httpAdminClient;
 
+    // guarded by this, the clients keyed by host:port
+    private final Map<String, Node> clientsByNode = new LinkedHashMap<>();
+    private Sniffer sniffer;
+    // runs the flushes of the search coalescer and get batcher
+    private ScheduledExecutorService batchScheduler;
+    private volatile SearchCoalescer searchCoalescer;
+    private volatile GetBatcher getBatcher;
+    private volatile DocumentCache documentCache;
+    private boolean closed;
+
     private IndexActionHandler indexActionHandler = new IndexActionHandler(this);
     private GetActionHandler getActionHandler = new GetActionHandler(this);
     private MultiGetActionHandler multiGetActionHandler = new MultiGetActionHandler(this);
@@ -106,41 +150,285 @@ public class HttpClient {
     private MoreLikeThisActionHandler moreLikeThisActionHandler = new MoreLikeThisActionHandler(this);
     private ClearScrollActionHandler clearScrollActionHandler = new ClearScrollActionHandler(this);
     private SearchScrollActionHandler searchScrollActionHandler = new SearchScrollActionHandler(this);
+    private HitsScroller hitsScroller = new HitsScroller(this, searchActionHandler, searchScrollActionHandler, clearScrollActionHandler);
     private BulkActionHandler bulkActionHandler = new BulkActionHandler(this);
+    private RetryingBulkActionHandler retryingBulkActionHandler = new RetryingBulkActionHandler(bulkActionHandler);
+    private BulkStreamer bulkStreamer = new BulkStreamer(this);
     private SuggestActionHandler suggestActionHandler = new SuggestActionHandler(this);
 
+    public static Builder builder() {
+        return new Builder();
+    }
+
     public HttpClient(String ... nodes) {
         this(Arrays.asList(nodes));
     }
 
     public HttpClient(Collection<String> nodes) {
+        this(builder().nodes(nodes));
+    }
+
+    private HttpClient(Builder builder) {
         // searchShard
         // search template
+        this.maxConnections = builder.maxConnections;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+        this.idleConnectionTimeout = builder.idleConnectionTimeout;
 
-        List<io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf>> clientsTemp = new ArrayList<>();
         // expect something like "http://%s:%d"
-        for (String node : nodes) {
+        for (String node : builder.nodes) {
             String[] next = node.split(":");
             // indices admin
             String host = next[1].substring(2); // remove the // of http://
             int port = Integer.parseInt(next[2]);
-            HttpClientBuilder<ByteBuf, ByteBuf> clientBuilder = RxNetty.newHttpClientBuilder(host, port);
-            clientBuilder.config(new RxClient.ClientConfig.Builder().readTimeout(timeOut, MILLISECONDS).build());
-            clientBuilder.withMaxConnections(maxConnections);
-            clientsTemp.add(clientBuilder.build());
-            logger.info("adding host {}:{}", host, port);
+            String address = host + ":" + port;
+            clientsByNode.put(address, new Node(address, createClient(host, port)));
         }
-        this.clients = new SnapshotableCopyOnWriteArray<>(clientsTemp);
+        this.clients = new SnapshotableCopyOnWriteArray<>(clientsByNode.values());
 
-        clientSupplier = new RoundRobinSupplier<>(clients);
+        nodeSelectingHttpClient = new NodeSelectingHttpClient(clients);
+        nodeSelectingHttpClient.setRequestTimeout(builder.requestTimeout);
+        clientSupplier = Suppliers.<io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf>>ofInstance(nodeSelectingHttpClient);
 
         this.httpAdminClient = new HttpAdminClient(clientSupplier);
     }
 
-    public void close() {
-        // TODO prevent servers to be added while here
-        for (io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf> client : clients.snapshot()) {
-            client.shutdown();
+    private io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf> createClient(String host, int port) {
+        // same defaults as RxNetty.newHttpClientBuilder, but the requests given up free their connection
+        HttpClientBuilder<ByteBuf, ByteBuf> clientBuilder = new CancellableHttpClientImpl.Builder<ByteBuf, ByteBuf>(host, port).enableWireLogging(LogLevel.DEBUG);
+        clientBuilder.pipelineConfigurator(new SelectiveAggregationConfigurator(new Supplier<Compression>() {
+            @Override
+            public Compression get() {
+                return compression;
+            }
+        }));
+        clientBuilder.config(new RxClient.ClientConfig.Builder().readTimeout(Ints.saturatedCast(readTimeout.millis()), MILLISECONDS).build());
+        clientBuilder.channelOption(ChannelOption.CONNECT_TIMEOUT_MILLIS, Ints.saturatedCast(connectTimeout.millis()));
+        clientBuilder.withMaxConnections(maxConnections);
+        clientBuilder.withIdleConnectionsTimeoutMillis(idleConnectionTimeout.millis());
+        logger.info("adding host {}:{}", host, port);
+        io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf> client = clientBuilder.build();
+        client.subscribe(new PoolMetricsListener(host + ":" + port, new Supplier<ClientMetrics>() {
+            @Override
+            public ClientMetrics get() {
+                return metrics;
+            }
+        }));
+        return client;
+    }
+
+    /**
+     * Chooses how requests are spread over the healthy nodes, round robin by default.
+     */
+    public void setLoadBalancing(LoadBalancing loadBalancing) {
+        nodeSelectingHttpClient.setLoadBalancing(loadBalancing);
+    }
+
+    /**
+     * Sets the preference of the search, multi search and get requests which have none, {@link PreferencePolicy#none()}
+     * by default.
+     */
+    public void setPreferencePolicy(PreferencePolicy preferencePolicy) {
+        this.preferencePolicy = preferencePolicy;
+    }
+
+    public PreferencePolicy getPreferencePolicy() {
+        return preferencePolicy;
+    }
+
+    /**
+     * Sets when the get, multi get, search and multi search requests are sent a second time to another node,
+     * {@link HedgingPolicy#none()} by default.
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets whether the responses are requested compressed and which request bodies are compressed,
+     * {@link Compression#none()} by default.
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the encoding of the bodies and responses of the gets, multi gets, searches, multi searches and bulks,
+     * {@link ContentType#json()} by default.
+     */
+    public void setContentType(ContentType contentType) {
+        this.contentType = contentType;
+    }
+
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Sets where the events of the connection pools and the latencies of the requests are reported,
+     * {@link ClientMetrics#none()} by default.
+     *
+     * @see StatsClientMetrics
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+        nodeSelectingHttpClient.setMetrics(metrics);
+    }
+
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Periodically sniffs the nodes of the cluster to add the clients of the nodes joining it and remove the ones of
+     * the nodes leaving it.
+     */
+    public synchronized void enableSniffing(TimeValue interval) {
+        if (sniffer != null) {
+            throw new IllegalStateException("sniffing is already enabled");
+        }
+        sniffer = new Sniffer(this, interval);
+        sniffer.start();
+    }
+
+    /**
+     * Buffers the searches during the window, or up to maxSearches, and sends them in one multi search.
+     *
+     * @see SearchCoalescer
+     */
+    public synchronized void enableSearchCoalescing(TimeValue window, int maxSearches) {
+        if (searchCoalescer != null) {
+            throw new IllegalStateException("search coalescing is already enabled");
+        }
+        searchCoalescer = new SearchCoalescer(searchActionHandler, multiSearchActionHandler, batchScheduler(), window, maxSearches);
+    }
+
+    /**
+     * Buffers the gets during the window, or up to maxGets, and sends them in one multi get.
+     *
+     * @see GetBatcher
+     */
+    public synchronized void enableGetBatching(TimeValue window, int maxGets) {
+        if (getBatcher != null) {
+            throw new IllegalStateException("get batching is already enabled");
+        }
+        getBatcher = new GetBatcher(getActionHandler, multiGetActionHandler, batchScheduler(), window, maxGets);
+    }
+
+    // must hold the lock
+    private ScheduledExecutorService batchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("batcher-%d").build());
+        }
+        return batchScheduler;
+    }
+
+    /**
+     * Caches the documents read by the gets and multi gets, up to maxDocuments and for the time to live.
+     *
+     * @see DocumentCache
+     */
+    public synchronized void enableDocumentCache(long maxDocuments, TimeValue timeToLive) {
+        if (documentCache != null) {
+            throw new IllegalStateException("document cache is already enabled");
+        }
+        documentCache = new DocumentCache(maxDocuments, timeToLive);
+    }
+
+    @Nullable
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * Caches the responses of the searches, up to maxSize bytes of responses and for the time to live. The searches
+     * coalesced in multi searches are served from the cache, but their responses are not put in it.
+     *
+     * @see SearchResponseCache
+     */
+    public synchronized void enableSearchCache(ByteSizeValue maxSize, TimeValue timeToLive) {
+        if (searchActionHandler.getResponseCache() != null) {
+            throw new IllegalStateException("search cache is already enabled");
+        }
+        searchActionHandler.setResponseCache(new SearchResponseCache(maxSize, timeToLive));
+    }
+
+    @Nullable
+    public SearchResponseCache getSearchCache() {
+        return searchActionHandler.getResponseCache();
+    }
+
+    /**
+     * @return the nodes requests are sent to, as host:port
+     */
+    public synchronized Set<String> getNodes() {
+        return new HashSet<>(clientsByNode.keySet());
+    }
+
+    synchronized Node getNode(String address) {
+        return clientsByNode.get(address);
+    }
+
+    /**
+     * Replaces the nodes requests are sent to. The clients of the removed nodes are shut down, in flight requests are
+     * completed before their connections are closed.
+     *
+     * @param nodes addresses as host:port
+     */
+    synchronized void setNodes(Collection<String> nodes) {
+        if (closed) {
+            return;
+        }
+        if (nodes.isEmpty()) {
+            // most likely a transient failure, it is better to keep the nodes we know about
+            logger.warn("no node found, keeping nodes {}", clientsByNode.keySet());
+            return;
+        }
+        for (String node : nodes) {
+            if (!clientsByNode.containsKey(node)) {
+                int separator = node.lastIndexOf(':');
+                Node added = new Node(node, createClient(node.substring(0, separator), Integer.parseInt(node.substring(separator + 1))));
+                clientsByNode.put(node, added);
+                clients.add(added);
+            }
+        }
+        Set<String> retained = new HashSet<>(nodes);
+        for (Iterator<Map.Entry<String, Node>> iterator = clientsByNode.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Node> entry = iterator.next();
+            if (!retained.contains(entry.getKey())) {
+                logger.info("removing host {}", entry.getKey());
+                iterator.remove();
+                clients.remove(entry.getValue());
+                entry.getValue().getClient().shutdown();
+            }
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (sniffer != null) {
+            sniffer.close();
+        }
+        if (searchCoalescer != null) {
+            searchCoalescer.close();
+        }
+        if (getBatcher != null) {
+            getBatcher.close();
+        }
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        for (Node node : clients.snapshot()) {
+            node.getClient().shutdown();
         }
     }
 
@@ -153,61 +441,96 @@ public class HttpClient {
     }
 
     public void index(IndexRequest request, ActionListener<IndexResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateOnResponse(request.index(), request.type(), request.id(), listener);
+        }
         indexActionHandler.execute(request, listener);
     }
 
     public Future<IndexResponse> index(IndexRequest request) {
-        PlainActionFuture<IndexResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<IndexResponse> future = CancellableActionFuture.newFuture();
         index(request, future);
         return future;
     }
 
     public void get(GetRequest request, ActionListener<GetResponse> listener) {
-        getActionHandler.execute(request, listener);
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            GetResponse cached = cache.get(request);
+            if (cached != null) {
+                listener.onResponse(cached);
+                return;
+            }
+            listener = cache.cacheOnResponse(request, listener);
+        }
+        GetBatcher batcher = getBatcher;
+        if (batcher != null) {
+            batcher.execute(request, listener);
+        } else {
+            getActionHandler.execute(request, listener);
+        }
     }
 
     public Future<GetResponse> get(GetRequest request) {
-        PlainActionFuture<GetResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<GetResponse> future = CancellableActionFuture.newFuture();
         get(request, future);
         return future;
     }
 
     public void multiGet(MultiGetRequest request, ActionListener<MultiGetResponse> listener) {
-        multiGetActionHandler.execute(request, listener);
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            cache.multiGet(request, multiGetActionHandler, listener);
+        } else {
+            multiGetActionHandler.execute(request, listener);
+        }
     }
 
     public Future<MultiGetResponse> multiGet(MultiGetRequest request) {
-        PlainActionFuture<MultiGetResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<MultiGetResponse> future = CancellableActionFuture.newFuture();
         multiGet(request, future);
         return future;
     }
 
     public void delete(DeleteRequest request, ActionListener<DeleteResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateOnResponse(request.index(), request.type(), request.id(), listener);
+        }
         deleteActionHandler.execute(request, listener);
     }
 
     public Future<DeleteResponse> delete(DeleteRequest request) {
-        PlainActionFuture<DeleteResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<DeleteResponse> future = CancellableActionFuture.newFuture();
         delete(request, future);
         return future;
     }
 
     public void update(UpdateRequest request, ActionListener<UpdateResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateOnResponse(request.index(), request.type(), request.id(), listener);
+        }
         updateActionHandler.execute(request, listener);
     }
 
     public Future<UpdateResponse> update(UpdateRequest request) {
-        PlainActionFuture<UpdateResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<UpdateResponse> future = CancellableActionFuture.newFuture();
         update(request, future);
         return future;
     }
 
     public void deleteByQuery(DeleteByQueryRequest request, ActionListener<DeleteByQueryResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateAllOnResponse(listener);
+        }
         deleteByQueryActionHandler.execute(request, listener);
     }
 
     public Future<DeleteByQueryResponse> deleteByQuery(DeleteByQueryRequest request) {
-        PlainActionFuture<DeleteByQueryResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<DeleteByQueryResponse> future = CancellableActionFuture.newFuture();
         deleteByQuery(request, future);
         return future;
     }
@@ -217,27 +540,53 @@ public class HttpClient {
     }
 
     public Future<TermVectorResponse> termVectors(TermVectorRequest request) {
-        PlainActionFuture<TermVectorResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<TermVectorResponse> future = CancellableActionFuture.newFuture();
         termVectors(request, future);
         return future;
     }
 
     public void search(SearchRequest request, ActionListener<SearchResponse> listener) {
-        searchActionHandler.execute(request, listener);
+        SearchCoalescer coalescer = searchCoalescer;
+        if (coalescer != null) {
+            coalescer.execute(request, listener);
+        } else {
+            searchActionHandler.execute(request, listener);
+        }
     }
 
     public Future<SearchResponse> search(SearchRequest request) {
-        PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<SearchResponse> future = CancellableActionFuture.newFuture();
         search(request, future);
         return future;
     }
 
+    /**
+     * Searches, parsing the aggregations with the given schema instead of the one read from the request, e.g. to
+     * parse some buckets as columns.
+     */
+    public void search(SearchRequest request, AggregationSchema aggregationSchema, ActionListener<SearchResponse> listener) {
+        searchActionHandler.execute(request, aggregationSchema, listener);
+    }
+
+    public Future<SearchResponse> search(SearchRequest request, AggregationSchema aggregationSchema) {
+        CancellableActionFuture<SearchResponse> future = CancellableActionFuture.newFuture();
+        search(request, aggregationSchema, future);
+        return future;
+    }
+
+    /**
+     * Emits the hits of the search as soon as they are received, the search is executed on subscription.
+     */
+    public Observable<Hit> searchHits(SearchRequest request) {
+        return searchActionHandler.streamHits(request);
+    }
+
     public void multiSearch(MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) {
         multiSearchActionHandler.execute(request, listener);
     }
 
     public Future<MultiSearchResponse> multiSearch(MultiSearchRequest request) {
-        PlainActionFuture<MultiSearchResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<MultiSearchResponse> future = CancellableActionFuture.newFuture();
         multiSearch(request, future);
         return future;
     }
@@ -247,7 +596,7 @@ public class HttpClient {
     }
 
     public Future<CountResponse> count(CountRequest request) {
-        PlainActionFuture<CountResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<CountResponse> future = CancellableActionFuture.newFuture();
         count(request, future);
         return future;
     }
@@ -257,7 +606,7 @@ public class HttpClient {
     }
 
     public Future<ExistsResponse> exists(ExistsRequest request) {
-        PlainActionFuture<ExistsResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<ExistsResponse> future = CancellableActionFuture.newFuture();
         exists(request, future);
         return future;
     }
@@ -267,7 +616,7 @@ public class HttpClient {
     }
 
     public Future<ExplainResponse> explain(ExplainRequest request) {
-        PlainActionFuture<ExplainResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<ExplainResponse> future = CancellableActionFuture.newFuture();
         explain(request, future);
         return future;
     }
@@ -277,7 +626,7 @@ public class HttpClient {
     }
 
     public Future<PercolateResponse> percolate(PercolateRequest request) {
-        PlainActionFuture<PercolateResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<PercolateResponse> future = CancellableActionFuture.newFuture();
         percolate(request, future);
         return future;
     }
@@ -287,7 +636,7 @@ public class HttpClient {
     }
 
     public Future<MultiPercolateResponse> multiPercolate(MultiPercolateRequest request) {
-        PlainActionFuture<MultiPercolateResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<MultiPercolateResponse> future = CancellableActionFuture.newFuture();
         multiPercolate(request, future);
         return future;
     }
@@ -297,7 +646,7 @@ public class HttpClient {
     }
 
     public Future<SearchResponse> moreLikeThis(MoreLikeThisRequest request) {
-        PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<SearchResponse> future = CancellableActionFuture.newFuture();
         moreLikeThis(request, future);
         return future;
     }
@@ -307,39 +656,198 @@ public class HttpClient {
     }
 
     public Future<SearchResponse> searchScroll(SearchScrollRequest request) {
-        PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<SearchResponse> future = CancellableActionFuture.newFuture();
         searchScroll(request, future);
         return future;
     }
 
+    /**
+     * Emits all the hits of the scroll, the next page being fetched while the current one is consumed.
+     * The scroll is cleared once done, or on unsubscription. Use {@code toBlocking().getIterator()} to iterate on the hits.
+     */
+    public Observable<Hit> scrollAll(SearchRequest request) {
+        return scrollAll(request, HitsScroller.DEFAULT_PREFETCH);
+    }
+
+    /**
+     * @param prefetch the number of pages to fetch ahead of the one consumed
+     */
+    public Observable<Hit> scrollAll(SearchRequest request, int prefetch) {
+        return hitsScroller.scrollAll(request, prefetch);
+    }
+
+    /**
+     * Emits all the hits of the search, scrolling the shards of the indices at the same time.
+     * Each shard is scrolled as with {@link #scrollAll(SearchRequest)}. At most half of the connections to the nodes
+     * are used, so as to not exhaust the connection pools.
+     */
+    public Observable<Hit> scrollAllParallel(SearchRequest request) {
+        return scrollAllParallel(request, HitsScroller.DEFAULT_PREFETCH, Math.max(1, getNodes().size() * maxConnections / 2));
+    }
+
+    /**
+     * @param prefetch the number of pages to fetch ahead for each shard
+     * @param maxConcurrentShards the maximum number of shards scrolled at the same time
+     */
+    public Observable<Hit> scrollAllParallel(SearchRequest request, int prefetch, int maxConcurrentShards) {
+        return hitsScroller.scrollAllParallel(request, prefetch, maxConcurrentShards);
+    }
+
     public void clearScroll(ClearScrollRequest request, ActionListener<ClearScrollResponse> listener) {
         clearScrollActionHandler.execute(request, listener);
     }
 
     public Future<ClearScrollResponse> clearScroll(ClearScrollRequest request) {
-        PlainActionFuture<ClearScrollResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<ClearScrollResponse> future = CancellableActionFuture.newFuture();
         clearScroll(request, future);
         return future;
     }
 
     public void bulk(BulkRequest request, ActionListener<BulkResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateOnResponse(request, listener);
+        }
         bulkActionHandler.execute(request, listener);
     }
 
     public Future<BulkResponse> bulk(BulkRequest request) {
-        PlainActionFuture<BulkResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<BulkResponse> future = CancellableActionFuture.newFuture();
         bulk(request, future);
         return future;
     }
 
+    /**
+     * Executes the bulk and resubmits the rejected items following the backoff policy.
+     */
+    public void bulk(BulkRequest request, BackoffPolicy backoffPolicy, ActionListener<BulkResponse> listener) {
+        DocumentCache cache = documentCache;
+        if (cache != null) {
+            listener = cache.invalidateOnResponse(request, listener);
+        }
+        retryingBulkActionHandler.execute(request, backoffPolicy, listener);
+    }
+
+    public Future<BulkResponse> bulk(BulkRequest request, BackoffPolicy backoffPolicy) {
+        CancellableActionFuture<BulkResponse> future = CancellableActionFuture.newFuture();
+        bulk(request, backoffPolicy, future);
+        return future;
+    }
+
+    /**
+     * Sends the actions as bulks of at most maxActions actions and maxSize bytes, with at most concurrency bulks in
+     * flight. The actions are requested from the source as the bulks are sent, so that it is read in constant memory.
+     * The bulks are sent on subscription and the responses are emitted as they complete, in no particular order.
+     */
+    public Observable<BulkResponse> bulk(Observable<? extends ActionRequest> actions, int maxActions, ByteSizeValue maxSize, int concurrency) {
+        return bulkStreamer.bulk(actions, maxActions, maxSize, concurrency);
+    }
+
+    /**
+     * Same as {@link #bulk(Observable, int, ByteSizeValue, int)}, the returned observable can be subscribed only once.
+     */
+    public Observable<BulkResponse> bulk(final Iterator<? extends ActionRequest> actions, int maxActions, ByteSizeValue maxSize, int concurrency) {
+        return bulk(Observable.from(new Iterable<ActionRequest>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<ActionRequest> iterator() {
+                return (Iterator<ActionRequest>) actions;
+            }
+        }), maxActions, maxSize, concurrency);
+    }
+
     public void suggest(SuggestRequest request, ActionListener<SuggestResponse> listener) {
         suggestActionHandler.execute(request, listener);
     }
 
     public Future<SuggestResponse> suggest(SuggestRequest request) {
-        PlainActionFuture<SuggestResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<SuggestResponse> future = CancellableActionFuture.newFuture();
         suggest(request, future);
         return future;
     }
 
+    /**
+     * Configures the connection pools and timeouts of the clients of the nodes, which can not be changed once built.
+     */
+    public static class Builder {
+
+        private final Set<String> nodes = new LinkedHashSet<>();
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private TimeValue connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private TimeValue readTimeout = DEFAULT_READ_TIMEOUT;
+        private TimeValue idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+        private TimeValue requestTimeout;
+
+        private Builder() {
+        }
+
+        /**
+         * @param nodes urls like http://host:port
+         */
+        public Builder nodes(String... nodes) {
+            return nodes(Arrays.asList(nodes));
+        }
+
+        public Builder nodes(Collection<String> nodes) {
+            this.nodes.addAll(nodes);
+            return this;
+        }
+
+        /**
+         * The connections pooled for each node, 10 by default. The requests to a node having as many requests in flight
+         * fail with a {@link io.reactivex.netty.client.PoolExhaustedException}.
+         */
+        public Builder maxConnectionsPerNode(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("maxConnections must be at least 1 but was " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * The time to open a connection, 10 seconds by default.
+         */
+        public Builder connectTimeout(TimeValue connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * The time without reading anything from a connection awaiting a response or its content, 30 seconds by default,
+         * so that a stuck request always fails. The request then fails, and the node is taken out of the rotation, see
+         * {@link Node}.
+         */
+        public Builder readTimeout(TimeValue readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * The time a pooled connection stays open without being used, 30 seconds by default.
+         */
+        public Builder idleConnectionTimeout(TimeValue idleConnectionTimeout) {
+            this.idleConnectionTimeout = idleConnectionTimeout;
+            return this;
+        }
+
+        /**
+         * The time to get the status and headers of the response of each request to a node, none by default. Unlike the
+         * read timeout, it bounds the slow requests the nodes keep busy with, and the node is then taken out of the
+         * rotation, see {@link Node}. Reading the content is still bounded by the read timeout only.
+         *
+         * @see com.github.obourgain.elasticsearch.http.concurrent.DeadlineListener for a deadline of a single call
+         */
+        public Builder requestTimeout(@Nullable TimeValue requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public HttpClient build() {
+            if (nodes.isEmpty()) {
+                throw new IllegalStateException("no node configured");
+            }
+            return new HttpClient(this);
+        }
+    }
 }
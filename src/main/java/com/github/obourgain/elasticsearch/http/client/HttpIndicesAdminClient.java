@@ -18,9 +18,9 @@ import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
 import org.elasticsearch.action.admin.indices.validate.query.ValidateQueryRequest;
-import org.elasticsearch.action.support.PlainActionFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.concurrent.CancellableActionFuture;
 import com.github.obourgain.elasticsearch.http.handler.admin.indices.CreateIndexActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.admin.indices.GetMappingsActionHandler;
 import com.github.obourgain.elasticsearch.http.handler.admin.indices.GetTemplatesActionHandler;
@@ -98,7 +98,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<ValidateQueryResponse> validateQuery(ValidateQueryRequest request) {
-        PlainActionFuture<ValidateQueryResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<ValidateQueryResponse> future = CancellableActionFuture.newFuture();
         validateQuery(request, future);
         return future;
     }
@@ -108,7 +108,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<CreateIndexResponse> createIndex(CreateIndexRequest request) {
-        PlainActionFuture<CreateIndexResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<CreateIndexResponse> future = CancellableActionFuture.newFuture();
         createIndex(request, future);
         return future;
     }
@@ -118,7 +118,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<DeleteIndexResponse> deleteIndex(DeleteIndexRequest request) {
-        PlainActionFuture<DeleteIndexResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<DeleteIndexResponse> future = CancellableActionFuture.newFuture();
         deleteIndex(request, future);
         return future;
     }
@@ -128,7 +128,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<RefreshResponse> refresh(RefreshRequest request) {
-        PlainActionFuture<RefreshResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<RefreshResponse> future = CancellableActionFuture.newFuture();
         refresh(request, future);
         return future;
     }
@@ -138,7 +138,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<FlushResponse> flush(FlushRequest request) {
-        PlainActionFuture<FlushResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<FlushResponse> future = CancellableActionFuture.newFuture();
         flush(request, future);
         return future;
     }
@@ -148,7 +148,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<OptimizeResponse> optimize(OptimizeRequest request) {
-        PlainActionFuture<OptimizeResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<OptimizeResponse> future = CancellableActionFuture.newFuture();
         optimize(request, future);
         return future;
     }
@@ -158,7 +158,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<OpenIndexResponse> open(OpenIndexRequest request) {
-        PlainActionFuture<OpenIndexResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<OpenIndexResponse> future = CancellableActionFuture.newFuture();
         open(request, future);
         return future;
     }
@@ -168,7 +168,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<CloseIndexResponse> close(CloseIndexRequest request) {
-        PlainActionFuture<CloseIndexResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<CloseIndexResponse> future = CancellableActionFuture.newFuture();
         close(request, future);
         return future;
     }
@@ -178,7 +178,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<GetAliasesResponse> getAliases(GetAliasesRequest request) {
-        PlainActionFuture<GetAliasesResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<GetAliasesResponse> future = CancellableActionFuture.newFuture();
         getAliases(request, future);
         return future;
     }
@@ -188,7 +188,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<IndicesAliasesResponse> aliases(IndicesAliasesRequest request) {
-        PlainActionFuture<IndicesAliasesResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<IndicesAliasesResponse> future = CancellableActionFuture.newFuture();
         aliases(request, future);
         return future;
     }
@@ -198,7 +198,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<PutMappingResponse> putMapping(PutMappingRequest request) {
-        PlainActionFuture<PutMappingResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<PutMappingResponse> future = CancellableActionFuture.newFuture();
         putMapping(request, future);
         return future;
     }
@@ -208,7 +208,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<PutIndexTemplateResponse> putIndexTemplate(PutIndexTemplateRequest request) {
-        PlainActionFuture<PutIndexTemplateResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<PutIndexTemplateResponse> future = CancellableActionFuture.newFuture();
         putIndexTemplate(request, future);
         return future;
     }
@@ -218,7 +218,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<IndicesExistsResponse> indicesExists(IndicesExistsRequest request) {
-        PlainActionFuture<IndicesExistsResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<IndicesExistsResponse> future = CancellableActionFuture.newFuture();
         indicesExists(request, future);
         return future;
     }
@@ -228,7 +228,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<GetMappingsResponse> getMappings(GetMappingsRequest request) {
-        PlainActionFuture<GetMappingsResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<GetMappingsResponse> future = CancellableActionFuture.newFuture();
         getMappings(request, future);
         return future;
     }
@@ -238,7 +238,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<GetSettingsResponse> getSettings(GetSettingsRequest request) {
-        PlainActionFuture<GetSettingsResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<GetSettingsResponse> future = CancellableActionFuture.newFuture();
         getSettings(request, future);
         return future;
     }
@@ -248,7 +248,7 @@ public class HttpIndicesAdminClient {
     }
 
     public Future<UpdateSettingsResponse> updateSettings(UpdateSettingsRequest request) {
-        PlainActionFuture<UpdateSettingsResponse> future = PlainActionFuture.newFuture();
+        CancellableActionFuture<UpdateSettingsResponse> future = CancellableActionFuture.newFuture();
         updateSettings(request, future);
         return future;
     }
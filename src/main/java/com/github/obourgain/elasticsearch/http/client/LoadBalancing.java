@@ -0,0 +1,35 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+/**
+ * How the node a request is sent to is chosen among the healthy nodes.
+ * <p>
+ * Except for round robin, two random nodes are compared and the least loaded one is chosen (power of two choices).
+ * This is cheap and avoids sending all the requests to the same node between two updates of the load.
+ *
+ * @author olivier bourgain
+ */
+public enum LoadBalancing {
+
+    ROUND_ROBIN {
+        @Override
+        boolean isBetter(Node node, Node other) {
+            return false;
+        }
+    },
+
+    LEAST_OUTSTANDING_REQUESTS {
+        @Override
+        boolean isBetter(Node node, Node other) {
+            return node.getInFlight() < other.getInFlight();
+        }
+    },
+
+    LOWEST_LATENCY {
+        @Override
+        boolean isBetter(Node node, Node other) {
+            return node.getLatencyNanos() < other.getLatencyNanos();
+        }
+    };
+
+    abstract boolean isBetter(Node node, Node other);
+}
@@ -0,0 +1,126 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import io.netty.buffer.ByteBuf;
+import lombok.Getter;
+
+/**
+ * A node of the cluster and the client sending requests to it.
+ * <p>
+ * A node failing to answer is taken out of the rotation for a delay doubling with each consecutive failure. Once the
+ * delay expired, a single request is sent to the node as a resurrection probe, the node is back in the rotation only
+ * once the probe succeeded.
+ * <p>
+ * The requests in flight and an exponentially weighted moving average of the latency are tracked for the load
+ * balancing, see {@link LoadBalancing}.
+ *
+ * @author olivier bourgain
+ */
+public class Node {
+
+    static final long MIN_DEAD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final long MAX_DEAD_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @Getter
+    private final String address;
+    @Getter
+    private final io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf> client;
+
+    private volatile int failures;
+    private volatile long deadUntil;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    public Node(String address, io.reactivex.netty.protocol.http.client.HttpClient<ByteBuf, ByteBuf> client) {
+        this.address = address;
+        this.client = client;
+    }
+
+    public boolean isAlive() {
+        return failures == 0;
+    }
+
+    /**
+     * @return true if the node is dead, its delay expired and it is not being probed
+     */
+    boolean canProbe(long now) {
+        return failures != 0 && deadUntil - now <= 0 && !probing.get();
+    }
+
+    /**
+     * @return true if the caller got the single probe of the node and must call {@link #probeEnded()}
+     */
+    boolean tryProbe(long now) {
+        return failures != 0 && deadUntil - now <= 0 && probing.compareAndSet(false, true);
+    }
+
+    void probeEnded() {
+        probing.set(false);
+    }
+
+    int getFailures() {
+        return failures;
+    }
+
+    long getDeadUntil() {
+        return deadUntil;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the moving average of the latency of the requests, 0 if no request completed yet
+     */
+    public long getLatencyNanos() {
+        return latencyNanos.get();
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestEnded() {
+        inFlight.decrementAndGet();
+    }
+
+    void recordLatency(long nanos) {
+        while (true) {
+            long current = latencyNanos.get();
+            // weight of 1/5 for the new sample, the first one initializes the average
+            long next = current == 0 ? nanos : current + (nanos - current) / 5;
+            if (latencyNanos.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    void markAlive() {
+        if (failures != 0) {
+            failures = 0;
+        }
+    }
+
+    void markDead() {
+        markDead(System.nanoTime());
+    }
+
+    synchronized void markDead(long now) {
+        int failures = this.failures + 1;
+        // 1s, 2s, 4s ... up to 1 minute
+        long delay = Math.min(MIN_DEAD_NANOS << Math.min(failures - 1, 16), MAX_DEAD_NANOS);
+        this.deadUntil = now + delay;
+        this.failures = failures;
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+}
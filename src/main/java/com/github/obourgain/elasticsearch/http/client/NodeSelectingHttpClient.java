@@ -0,0 +1,323 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.concurrent.SnapshotableCopyOnWriteArray;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.reactivex.netty.channel.ObservableConnection;
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.client.RxClient;
+import io.reactivex.netty.metrics.MetricEventsListener;
+import io.reactivex.netty.protocol.http.client.HttpClient;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientRequestAccessor;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Sends each request to a healthy node, chosen according to the {@link LoadBalancing}, round robin by default.
+ * <p>
+ * Connection failures and timeouts take a node out of the rotation, see {@link Node}, so that a node down or stuck in
+ * a long GC pause is avoided. Once its delay expired, a dead node gets a single request as a probe, and is back in the
+ * rotation when the probe succeeded. A request failing to connect, and so never sent, is retried on the next healthy
+ * node, with a new request. The timed out requests are not retried as they may have been processed by the node.
+ * When all nodes are dead, the one which should be resurrected first is tried.
+ *
+ * @author olivier bourgain
+ */
+public class NodeSelectingHttpClient implements HttpClient<ByteBuf, ByteBuf> {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeSelectingHttpClient.class);
+
+    private final SnapshotableCopyOnWriteArray<Node> nodes;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
+    private volatile ClientMetrics metrics = ClientMetrics.none();
+    // 0 for none
+    private volatile long requestTimeoutMillis;
+
+    public NodeSelectingHttpClient(SnapshotableCopyOnWriteArray<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    @Override
+    public Observable<HttpClientResponse<ByteBuf>> submit(HttpClientRequest<ByteBuf> request) {
+        return submit(request, null);
+    }
+
+    /**
+     * The request is never sent itself, each attempt sends a copy of it, see {@link #submit(Func0, RxClient.ClientConfig)}.
+     * Its content source is shared by the copies, this is safe as a request is sent again only when it could not be
+     * sent, as the node refused the connection.
+     */
+    @Override
+    public Observable<HttpClientResponse<ByteBuf>> submit(final HttpClientRequest<ByteBuf> request, final RxClient.ClientConfig config) {
+        return submit(new Func0<HttpClientRequest<ByteBuf>>() {
+            @Override
+            public HttpClientRequest<ByteBuf> call() {
+                return HttpClientRequestAccessor.copy(request);
+            }
+        }, config);
+    }
+
+    public Observable<HttpClientResponse<ByteBuf>> submit(Func0<HttpClientRequest<ByteBuf>> requestFactory) {
+        return submit(requestFactory, null);
+    }
+
+    /**
+     * @param requestFactory creates the request sent by each attempt, as sending a request sets its Host header and may
+     *                       consume its content
+     */
+    public Observable<HttpClientResponse<ByteBuf>> submit(final Func0<HttpClientRequest<ByteBuf>> requestFactory, @Nullable final RxClient.ClientConfig config) {
+        return Observable.defer(new Func0<Observable<HttpClientResponse<ByteBuf>>>() {
+            @Override
+            public Observable<HttpClientResponse<ByteBuf>> call() {
+                return submit(requestFactory, config, select(System.nanoTime()), 0);
+            }
+        });
+    }
+
+    private Observable<HttpClientResponse<ByteBuf>> submit(final Func0<HttpClientRequest<ByteBuf>> requestFactory, final RxClient.ClientConfig config, final List<Node> candidates, final int index) {
+        final Node node = candidates.get(index);
+        final long start = System.nanoTime();
+        // a dead node gets a single request at a time once its delay expired, and stays dead until it succeeded
+        boolean dead = !node.isAlive();
+        final boolean probe = dead && node.tryProbe(start);
+        if (dead && !probe && index + 1 < candidates.size()) {
+            // another request is already probing it
+            return submit(requestFactory, config, candidates, index + 1);
+        }
+        final AtomicBoolean ended = new AtomicBoolean();
+        Action0 end = new Action0() {
+            @Override
+            public void call() {
+                if (ended.compareAndSet(false, true)) {
+                    node.requestEnded();
+                }
+            }
+        };
+        final AtomicBoolean probeEnded = new AtomicBoolean(!probe);
+        final Action0 endProbe = new Action0() {
+            @Override
+            public void call() {
+                if (probeEnded.compareAndSet(false, true)) {
+                    node.probeEnded();
+                }
+            }
+        };
+        HttpClientRequest<ByteBuf> request = requestFactory.call();
+        final String action = action(request.getMethod().name(), request.getUri());
+        node.requestStarted();
+        Observable<HttpClientResponse<ByteBuf>> response = config == null ? node.getClient().submit(request) : node.getClient().submit(request, config);
+        long timeout = requestTimeoutMillis;
+        if (timeout > 0) {
+            // only the wait for the response, reading its content is bounded by the read timeout
+            response = response.timeout(timer(timeout), new Func1<HttpClientResponse<ByteBuf>, Observable<Long>>() {
+                @Override
+                public Observable<Long> call(HttpClientResponse<ByteBuf> response) {
+                    return Observable.never();
+                }
+            });
+        }
+        return response
+                .doOnNext(new Action1<HttpClientResponse<ByteBuf>>() {
+                    @Override
+                    public void call(HttpClientResponse<ByteBuf> response) {
+                        long latency = System.nanoTime() - start;
+                        node.markAlive();
+                        endProbe.call();
+                        node.recordLatency(latency);
+                        metrics.requestCompleted(node.getAddress(), action, latency, false);
+                    }
+                })
+                .doOnTerminate(end)
+                .doOnUnsubscribe(end)
+                .doOnUnsubscribe(endProbe)
+                .onErrorResumeNext(new Func1<Throwable, Observable<HttpClientResponse<ByteBuf>>>() {
+                    @Override
+                    public Observable<HttpClientResponse<ByteBuf>> call(Throwable e) {
+                        metrics.requestCompleted(node.getAddress(), action, System.nanoTime() - start, true);
+                        if (!isNodeFailure(e)) {
+                            endProbe.call();
+                            return Observable.error(e);
+                        }
+                        node.markDead();
+                        endProbe.call();
+                        logger.warn("node {} failed, taking it out of rotation", node, e);
+                        if (isConnectFailure(e) && index + 1 < candidates.size()) {
+                            return submit(requestFactory, config, candidates, index + 1);
+                        }
+                        return Observable.error(e);
+                    }
+                });
+    }
+
+    public void setLoadBalancing(LoadBalancing loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Fails the requests not getting their response in time with a {@link java.util.concurrent.TimeoutException}, and
+     * takes the node out of the rotation. Their connection is closed, see {@link CancellableHttpClientImpl}.
+     */
+    public void setRequestTimeout(@Nullable TimeValue requestTimeout) {
+        this.requestTimeoutMillis = requestTimeout == null ? 0 : requestTimeout.millis();
+    }
+
+    private static Func0<Observable<Long>> timer(final long millis) {
+        return new Func0<Observable<Long>>() {
+            @Override
+            public Observable<Long> call() {
+                return Observable.timer(millis, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    /**
+     * Names the action of a request after its endpoint, the first path segment starting with an underscore, like
+     * {@code _search} or {@code _bulk}. The cluster and scroll endpoints keep their second segment, like
+     * {@code _cluster/health} or {@code _search/scroll}. The requests without endpoint are named after their method, {@code get}, {@code index},
+     * {@code delete} or {@code exists} for a document, {@code create_index}, {@code delete_index} or
+     * {@code indices_exists} for an index. The names of the indices, types and ids are never part of the action.
+     */
+    static String action(String method, String uri) {
+        int end = uri.indexOf('?');
+        String path = end < 0 ? uri : uri.substring(0, end);
+        String[] segments = path.split("/");
+        int nonEmpty = 0;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.startsWith("_") && !segment.equals("_all")) {
+                if ((segment.equals("_cluster") || segment.equals("_search")) && i + 1 < segments.length && !segments[i + 1].isEmpty()) {
+                    return segment + "/" + segments[i + 1];
+                }
+                return segment;
+            }
+            nonEmpty++;
+        }
+        boolean document = nonEmpty >= 2;
+        switch (method) {
+            case "GET":
+                return document ? "get" : "get_index";
+            case "PUT":
+            case "POST":
+                return document ? "index" : "create_index";
+            case "DELETE":
+                return document ? "delete" : "delete_index";
+            case "HEAD":
+                return document ? "exists" : "indices_exists";
+            default:
+                return method.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * @return the healthy nodes starting from the one chosen by the load balancing, the others following in rotation
+     * order, preceded by a dead node to probe if one can be, or the node to be resurrected first if none is healthy
+     */
+    List<Node> select(long now) {
+        List<Node> snapshot = nodes.snapshot();
+        if (snapshot.isEmpty()) {
+            throw new IllegalStateException("no client available");
+        }
+        int size = snapshot.size();
+        int start = (int) (sequence.getAndIncrement() % size);
+        List<Node> alive = new ArrayList<>(size + 1);
+        Node toProbe = null;
+        Node nextToResurrect = null;
+        for (int i = 0; i < size; i++) {
+            Node node = snapshot.get((start + i) % size);
+            if (node.isAlive()) {
+                alive.add(node);
+            } else if (toProbe == null && node.canProbe(now)) {
+                toProbe = node;
+            } else if (nextToResurrect == null || node.getDeadUntil() - nextToResurrect.getDeadUntil() < 0) {
+                nextToResurrect = node;
+            }
+        }
+        if (alive.size() > 1 && loadBalancing != LoadBalancing.ROUND_ROBIN) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(alive.size());
+            int second = (first + 1 + random.nextInt(alive.size() - 1)) % alive.size();
+            Collections.swap(alive, 0, loadBalancing.isBetter(alive.get(second), alive.get(first)) ? second : first);
+        }
+        if (toProbe != null) {
+            // the healthy nodes follow in case the probe is refused
+            alive.add(0, toProbe);
+        } else if (alive.isEmpty()) {
+            alive.add(nextToResurrect);
+        }
+        return alive;
+    }
+
+    private static boolean isNodeFailure(Throwable e) {
+        return isConnectFailure(e) || e instanceof ReadTimeoutException || e instanceof TimeoutException;
+    }
+
+    // the request was not sent, netty's connect timeout is a ConnectException too
+    private static boolean isConnectFailure(Throwable e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException;
+    }
+
+    @Override
+    public Observable<ObservableConnection<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>>> connect() {
+        return Observable.defer(new Func0<Observable<ObservableConnection<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>>>>() {
+            @Override
+            public Observable<ObservableConnection<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>>> call() {
+                List<Node> candidates = select(System.nanoTime());
+                // the probes are left to the requests
+                return candidates.get(candidates.size() > 1 && !candidates.get(0).isAlive() ? 1 : 0).getClient().connect();
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        for (Node node : nodes.snapshot()) {
+            node.getClient().shutdown();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "elasticsearch-http";
+    }
+
+    @Override
+    public Subscription subscribe(MetricEventsListener<? extends ClientMetricsEvent<?>> listener) {
+        // only the nodes known at the time of the subscription are listened to
+        final CompositeSubscription subscriptions = new CompositeSubscription();
+        for (Node node : nodes.snapshot()) {
+            subscriptions.add(node.getClient().subscribe(listener));
+        }
+        return subscriptions;
+    }
+}
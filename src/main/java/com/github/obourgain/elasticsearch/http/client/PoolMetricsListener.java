@@ -0,0 +1,74 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.concurrent.TimeUnit;
+import com.google.common.base.Supplier;
+import io.reactivex.netty.metrics.HttpClientMetricEventsListener;
+
+/**
+ * Forwards the connection and pool events published by the RxNetty client of a node to the {@link ClientMetrics}
+ * currently set on the client.
+ *
+ * @author olivier bourgain
+ */
+class PoolMetricsListener extends HttpClientMetricEventsListener {
+
+    private final String node;
+    private final Supplier<ClientMetrics> metrics;
+
+    PoolMetricsListener(String node, Supplier<ClientMetrics> metrics) {
+        this.node = node;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void onConnectSuccess(long duration, TimeUnit timeUnit) {
+        metrics.get().connectionCreated(node, timeUnit.toNanos(duration));
+    }
+
+    @Override
+    protected void onConnectFailed(long duration, TimeUnit timeUnit, Throwable throwable) {
+        metrics.get().connectFailed(node, timeUnit.toNanos(duration));
+    }
+
+    @Override
+    protected void onConnectionCloseSuccess(long duration, TimeUnit timeUnit) {
+        metrics.get().connectionClosed(node);
+    }
+
+    @Override
+    protected void onConnectionCloseFailed(long duration, TimeUnit timeUnit, Throwable throwable) {
+        // the channel is closed anyway
+        metrics.get().connectionClosed(node);
+    }
+
+    @Override
+    protected void onPooledConnectionEviction() {
+        metrics.get().connectionEvicted(node);
+    }
+
+    @Override
+    protected void onPoolAcquireStart() {
+        metrics.get().acquireStarted(node);
+    }
+
+    @Override
+    protected void onPoolAcquireSuccess(long duration, TimeUnit timeUnit) {
+        metrics.get().acquireSucceeded(node, timeUnit.toNanos(duration));
+    }
+
+    @Override
+    protected void onPoolAcquireFailed(long duration, TimeUnit timeUnit, Throwable throwable) {
+        metrics.get().acquireFailed(node, timeUnit.toNanos(duration));
+    }
+
+    @Override
+    protected void onPoolReleaseSuccess(long duration, TimeUnit timeUnit) {
+        metrics.get().connectionReleased(node);
+    }
+
+    @Override
+    protected void onPoolReleaseFailed(long duration, TimeUnit timeUnit, Throwable throwable) {
+        // a connection failing to be released is closed, it is not in use anymore
+        metrics.get().connectionReleased(node);
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.IOException;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Sets the preference of the requests which have none, so that the same requests are routed to the same shard copies
+ * and hit their caches (shard request cache, filesystem cache ...).
+ * <p>
+ * A preference set on a request is always kept.
+ *
+ * @author olivier bourgain
+ */
+public abstract class PreferencePolicy {
+
+    /**
+     * Leaves the preference of the requests untouched.
+     */
+    public static PreferencePolicy none() {
+        return new PreferencePolicy() {
+            @Override
+            protected String searchPreference(SearchRequest request) {
+                return null;
+            }
+
+            @Override
+            protected String getPreference(GetRequest request) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Uses the id of the session of the user as preference, typically read from a thread local. Requests without a
+     * session, when the supplier returns null, have no preference.
+     */
+    public static PreferencePolicy session(final Supplier<String> sessionId) {
+        return new PreferencePolicy() {
+            @Override
+            protected String searchPreference(SearchRequest request) {
+                return custom(sessionId.get());
+            }
+
+            @Override
+            protected String getPreference(GetRequest request) {
+                return custom(sessionId.get());
+            }
+        };
+    }
+
+    /**
+     * Uses a hash of the request as preference. The from and size of the search source are ignored, so that all the
+     * pages of a query are sent to the same shard copies.
+     */
+    public static PreferencePolicy queryHash() {
+        return new PreferencePolicy() {
+            @Override
+            protected String searchPreference(SearchRequest request) {
+                Hasher hasher = Hashing.murmur3_128().newHasher();
+                putStrings(hasher, request.indices());
+                putStrings(hasher, request.types());
+                putString(hasher, request.routing());
+                putSource(hasher, request.source());
+                return hasher.hash().toString();
+            }
+
+            @Override
+            protected String getPreference(GetRequest request) {
+                Hasher hasher = Hashing.murmur3_128().newHasher();
+                putString(hasher, request.index());
+                putString(hasher, request.type());
+                putString(hasher, request.id());
+                return hasher.hash().toString();
+            }
+        };
+    }
+
+    /**
+     * @return the preference of the request if any, else the one given by this policy
+     */
+    @Nullable
+    public String preference(SearchRequest request) {
+        return request.preference() != null ? request.preference() : searchPreference(request);
+    }
+
+    /**
+     * @return the preference of the request if any, else the one given by this policy
+     */
+    @Nullable
+    public String preference(GetRequest request) {
+        return request.preference() != null ? request.preference() : getPreference(request);
+    }
+
+    @Nullable
+    protected abstract String searchPreference(SearchRequest request);
+
+    @Nullable
+    protected abstract String getPreference(GetRequest request);
+
+    private static String custom(@Nullable String preference) {
+        if (Strings.isEmpty(preference)) {
+            return null;
+        }
+        // preferences starting with _ are reserved to the predefined ones, like _local
+        return preference.charAt(0) == '_' ? "session" + preference : preference;
+    }
+
+    private static void putStrings(Hasher hasher, @Nullable String[] strings) {
+        if (strings != null) {
+            for (String string : strings) {
+                putString(hasher, string);
+            }
+        }
+        hasher.putInt(0);
+    }
+
+    private static void putString(Hasher hasher, @Nullable String string) {
+        if (string != null) {
+            hasher.putString(string, Charsets.UTF_8);
+        }
+        hasher.putInt(0);
+    }
+
+    private static void putSource(Hasher hasher, @Nullable BytesReference source) {
+        if (source == null || source.length() == 0) {
+            return;
+        }
+        try (XContentParser parser = XContentHelper.createParser(source)) {
+            int depth = 0;
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == XContentParser.Token.FIELD_NAME && depth == 1 && isPagination(parser.currentName())) {
+                    parser.nextToken();
+                    parser.skipChildren();
+                    continue;
+                }
+                if (token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY) {
+                    depth++;
+                } else if (token == XContentParser.Token.END_OBJECT || token == XContentParser.Token.END_ARRAY) {
+                    depth--;
+                }
+                hasher.putInt(token.ordinal());
+                if (token == XContentParser.Token.FIELD_NAME || token.isValue()) {
+                    putString(hasher, parser.text());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean isPagination(String field) {
+        return "from".equals(field) || "size".equals(field);
+    }
+}
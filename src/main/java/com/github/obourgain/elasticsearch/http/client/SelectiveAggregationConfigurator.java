@@ -0,0 +1,120 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpContentDecoder;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.AttributeKey;
+import io.reactivex.netty.pipeline.PipelineConfigurator;
+import io.reactivex.netty.protocol.http.HttpObjectAggregationConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClientPipelineConfigurator;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+
+/**
+ * Same pipeline as the default one of RxNetty, except that the content of a response is not aggregated in a single
+ * buffer when its request carries the {@link #STREAM_RESPONSE_HEADER} header. The chunks of such responses are
+ * emitted as they are received. The header is removed before the request is sent.
+ * <p>
+ * The compressed responses are decompressed before being aggregated, and the requests accept compressed responses
+ * when the {@link Compression} says so.
+ *
+ * @author olivier bourgain
+ */
+public class SelectiveAggregationConfigurator implements PipelineConfigurator<HttpClientResponse<ByteBuf>, HttpClientRequest<ByteBuf>> {
+
+    public static final String STREAM_RESPONSE_HEADER = "X-Stream-Response";
+
+    private static final String ACCEPT_ENCODING = HttpHeaders.Values.GZIP + "," + HttpHeaders.Values.DEFLATE;
+
+    private static final AttributeKey<Boolean> STREAM_RESPONSE = AttributeKey.valueOf("stream-response");
+
+    private final HttpClientPipelineConfigurator<ByteBuf, ByteBuf> httpConfigurator = new HttpClientPipelineConfigurator<>();
+    private final Supplier<Compression> compression;
+
+    public SelectiveAggregationConfigurator() {
+        this(Suppliers.ofInstance(Compression.none()));
+    }
+
+    public SelectiveAggregationConfigurator(Supplier<Compression> compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public void configureNewPipeline(ChannelPipeline pipeline) {
+        httpConfigurator.configureNewPipeline(pipeline);
+        pipeline.addLast("decompressor", new Decompressor());
+        pipeline.addLast(HttpObjectAggregationConfigurator.AGGREGATOR_HANDLER_NAME, new Aggregator(HttpObjectAggregationConfigurator.DEFAULT_CHUNK_SIZE));
+        pipeline.addLast("stream-response-marker", new StreamResponseMarker(compression));
+    }
+
+    private static class Aggregator extends HttpObjectAggregator {
+
+        private Aggregator(int maxContentLength) {
+            super(maxContentLength);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (Boolean.TRUE.equals(ctx.channel().attr(STREAM_RESPONSE).get())) {
+                ctx.fireChannelRead(msg);
+            } else {
+                super.channelRead(ctx, msg);
+            }
+        }
+    }
+
+    /**
+     * The decompressor of Netty relies on JZlib, decode with the zlib of the JDK instead.
+     */
+    private static class Decompressor extends HttpContentDecoder {
+
+        @Override
+        protected EmbeddedChannel newContentDecoder(String contentEncoding) throws Exception {
+            if (HttpHeaders.Values.GZIP.equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)) {
+                return new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.GZIP));
+            }
+            if (HttpHeaders.Values.DEFLATE.equalsIgnoreCase(contentEncoding) || "x-deflate".equalsIgnoreCase(contentEncoding)) {
+                return new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.ZLIB));
+            }
+            // identity or unknown, passed as is
+            return null;
+        }
+    }
+
+    private static class StreamResponseMarker extends ChannelOutboundHandlerAdapter {
+
+        private final Supplier<Compression> compression;
+
+        private StreamResponseMarker(Supplier<Compression> compression) {
+            this.compression = compression;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof HttpRequest) {
+                HttpRequest request = (HttpRequest) msg;
+                boolean stream = request.headers().contains(STREAM_RESPONSE_HEADER);
+                if (stream) {
+                    request.headers().remove(STREAM_RESPONSE_HEADER);
+                }
+                // HTTP 1.1 without pipelining, the next response is the one of this request
+                ctx.channel().attr(STREAM_RESPONSE).set(stream);
+                if (compression.get().acceptCompressedResponses() && !request.headers().contains(HttpHeaders.Names.ACCEPT_ENCODING)) {
+                    request.headers().set(HttpHeaders.Names.ACCEPT_ENCODING, ACCEPT_ENCODING);
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+}
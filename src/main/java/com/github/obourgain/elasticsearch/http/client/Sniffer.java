@@ -0,0 +1,132 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.buffer.ByteBufBytesReference;
+import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.buffer.ByteBuf;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+import rx.Observable;
+import rx.functions.Func1;
+
+/**
+ * Periodically fetches the http addresses of the nodes of the cluster with the nodes info API, and updates the nodes
+ * the {@link HttpClient} sends requests to.
+ *
+ * @author olivier bourgain
+ */
+public class Sniffer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Sniffer.class);
+
+    private final HttpClient httpClient;
+    private final TimeValue interval;
+    private final ScheduledExecutorService scheduler;
+
+    public Sniffer(HttpClient httpClient, TimeValue interval) {
+        this.httpClient = httpClient;
+        this.interval = interval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sniffer-%d").build());
+    }
+
+    /**
+     * Sniffs the nodes now, then after each interval.
+     */
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sniff();
+                } catch (Exception e) {
+                    // keep the current nodes, they may be reachable again at the next run
+                    logger.warn("failed to sniff nodes", e);
+                }
+            }
+        }, 0, interval.millis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the http addresses of the nodes and replaces the nodes of the client.
+     */
+    public void sniff() {
+        List<String> addresses = sniffNodes().toBlocking().single();
+        logger.debug("sniffed nodes {}", addresses);
+        httpClient.setNodes(addresses);
+    }
+
+    public Observable<List<String>> sniffNodes() {
+        return httpClient.getHttpClient().submit(HttpClientRequest.createGet("/_nodes/http"))
+                .flatMap(ErrorHandler.AS_FUNC)
+                .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<List<String>>>() {
+                    @Override
+                    public Observable<List<String>> call(HttpClientResponse<ByteBuf> response) {
+                        return response.getContent().map(new Func1<ByteBuf, List<String>>() {
+                            @Override
+                            public List<String> call(ByteBuf byteBuf) {
+                                return parseHttpAddresses(new ByteBufBytesReference(byteBuf));
+                            }
+                        });
+                    }
+                })
+                .timeout(interval.millis(), TimeUnit.MILLISECONDS)
+                .single();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return the http addresses as host:port of the nodes having http enabled
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> parseHttpAddresses(BytesReference content) {
+        try (XContentParser parser = XContentHelper.createParser(content)) {
+            Map<String, Object> nodes = (Map<String, Object>) parser.map().get("nodes");
+            List<String> addresses = new ArrayList<>();
+            if (nodes == null) {
+                return addresses;
+            }
+            for (Object node : nodes.values()) {
+                Object httpAddress = ((Map<String, Object>) node).get("http_address");
+                if (httpAddress != null) {
+                    addresses.add(parseAddress(httpAddress.toString()));
+                }
+            }
+            return addresses;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses addresses like inet[/127.0.0.1:9200] or inet[hostname/127.0.0.1:9200] to 127.0.0.1:9200.
+     */
+    static String parseAddress(String address) {
+        String result = address;
+        if (result.startsWith("inet[") && result.endsWith("]")) {
+            result = result.substring("inet[".length(), result.length() - 1);
+        }
+        int slash = result.indexOf('/');
+        if (slash >= 0) {
+            result = result.substring(slash + 1);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the state of the connection pool of each node and the latency of the requests of each action in memory, to be
+ * read by a reporter. The counters of connections created, closed and evicted are cumulative, the rates are their
+ * difference between two reads.
+ *
+ * @author olivier bourgain
+ */
+public class StatsClientMetrics extends ClientMetrics {
+
+    private final ConcurrentMap<String, NodeStats> nodes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> actions = new ConcurrentHashMap<>();
+
+    /**
+     * @return the stats of the nodes, keyed by host:port, the nodes removed from the client included
+     */
+    public Map<String, NodeStats> getNodeStats() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    /**
+     * @return the latencies of the requests of the actions, keyed by action
+     */
+    public Map<String, LatencyHistogram> getRequestLatencies() {
+        return Collections.unmodifiableMap(actions);
+    }
+
+    private NodeStats node(String node) {
+        NodeStats stats = nodes.get(node);
+        if (stats == null) {
+            NodeStats created = new NodeStats();
+            stats = nodes.putIfAbsent(node, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private LatencyHistogram action(String action) {
+        LatencyHistogram latencies = actions.get(action);
+        if (latencies == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            latencies = actions.putIfAbsent(action, created);
+            if (latencies == null) {
+                latencies = created;
+            }
+        }
+        return latencies;
+    }
+
+    @Override
+    public void connectionCreated(String node, long connectNanos) {
+        node(node).created.incrementAndGet();
+    }
+
+    @Override
+    public void connectFailed(String node, long connectNanos) {
+        node(node).connectFailures.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(String node) {
+        node(node).closed.incrementAndGet();
+    }
+
+    @Override
+    public void connectionEvicted(String node) {
+        node(node).evicted.incrementAndGet();
+    }
+
+    @Override
+    public void acquireStarted(String node) {
+        node(node).pendingAcquires.incrementAndGet();
+    }
+
+    @Override
+    public void acquireSucceeded(String node, long acquireNanos) {
+        NodeStats stats = node(node);
+        stats.pendingAcquires.decrementAndGet();
+        stats.active.incrementAndGet();
+        stats.acquireLatency.record(acquireNanos);
+    }
+
+    @Override
+    public void acquireFailed(String node, long acquireNanos) {
+        NodeStats stats = node(node);
+        stats.pendingAcquires.decrementAndGet();
+        stats.acquireFailures.incrementAndGet();
+    }
+
+    @Override
+    public void connectionReleased(String node) {
+        node(node).active.decrementAndGet();
+    }
+
+    @Override
+    public void requestCompleted(String node, String action, long latencyNanos, boolean failed) {
+        action(action).record(latencyNanos);
+        if (failed) {
+            node(node).failedRequests.incrementAndGet();
+        }
+    }
+
+    /**
+     * The connection pool of a node.
+     */
+    public static class NodeStats {
+
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong connectFailures = new AtomicLong();
+        private final AtomicLong closed = new AtomicLong();
+        private final AtomicLong evicted = new AtomicLong();
+        private final AtomicLong active = new AtomicLong();
+        private final AtomicLong pendingAcquires = new AtomicLong();
+        private final AtomicLong acquireFailures = new AtomicLong();
+        private final AtomicLong failedRequests = new AtomicLong();
+        private final LatencyHistogram acquireLatency = new LatencyHistogram();
+
+        /**
+         * @return the connections used by a request
+         */
+        public long getActiveConnections() {
+            return active.get();
+        }
+
+        /**
+         * @return the open connections waiting in the pool for a request
+         */
+        public long getIdleConnections() {
+            return Math.max(0, created.get() - closed.get() - active.get());
+        }
+
+        /**
+         * @return the requests waiting for a connection, growing when the pool is saturated
+         */
+        public long getPendingAcquires() {
+            return pendingAcquires.get();
+        }
+
+        public long getConnectionsCreated() {
+            return created.get();
+        }
+
+        public long getConnectFailures() {
+            return connectFailures.get();
+        }
+
+        public long getConnectionsClosed() {
+            return closed.get();
+        }
+
+        public long getConnectionsEvicted() {
+            return evicted.get();
+        }
+
+        public long getAcquireFailures() {
+            return acquireFailures.get();
+        }
+
+        public long getFailedRequests() {
+            return failedRequests.get();
+        }
+
+        public LatencyHistogram getAcquireLatency() {
+            return acquireLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "NodeStats{active=" + getActiveConnections() + ", idle=" + getIdleConnections() + ", pendingAcquires=" + getPendingAcquires()
+                    + ", created=" + getConnectionsCreated() + ", evicted=" + getConnectionsEvicted() + ", acquireLatency=" + acquireLatency + '}';
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers items during a time window, or up to a number of items, and sends them together. The window starts with the
+ * first item buffered.
+ * <p>
+ * The flushes are run by the given scheduler, which may be shared between batchers and is not shut down by
+ * {@link #close()}. Once closed, the items are sent right away.
+ *
+ * @author olivier bourgain
+ */
+public abstract class Batcher<T> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Batcher.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final TimeValue window;
+    private final int maxItems;
+
+    // guarded by this
+    private List<T> pending = new ArrayList<>();
+    private boolean closed;
+
+    protected Batcher(ScheduledExecutorService scheduler, TimeValue window, int maxItems) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("the maximum number of items must be at least 1 but was " + maxItems);
+        }
+        this.scheduler = scheduler;
+        this.window = window;
+        this.maxItems = maxItems;
+    }
+
+    public void add(T item) {
+        List<T> toFlush = null;
+        synchronized (this) {
+            if (closed) {
+                toFlush = Collections.singletonList(item);
+            } else {
+                pending.add(item);
+                if (pending.size() >= maxItems) {
+                    toFlush = takePending();
+                } else if (pending.size() == 1) {
+                    scheduleFlush();
+                }
+            }
+        }
+        if (toFlush != null) {
+            send(toFlush);
+        }
+    }
+
+    /**
+     * Sends the buffered items now.
+     */
+    public void flush() {
+        List<T> toFlush;
+        synchronized (this) {
+            toFlush = takePending();
+        }
+        if (!toFlush.isEmpty()) {
+            send(toFlush);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+    }
+
+    /**
+     * @param items the items buffered, at least one
+     */
+    protected abstract void send(List<T> items);
+
+    // must hold the lock
+    private void scheduleFlush() {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, window.millis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // the scheduler is shut down, the item is sent by the flush of close()
+            logger.debug("failed to schedule the flush of the items", e);
+        }
+    }
+
+    // must hold the lock
+    private List<T> takePending() {
+        List<T> taken = pending;
+        pending = new ArrayList<>();
+        return taken;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import org.elasticsearch.action.support.PlainActionFuture;
+import rx.Subscription;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * A future whose cancellation unsubscribes the call completing it, instead of letting it run for an answer nobody
+ * reads.
+ *
+ * @author olivier bourgain
+ */
+public class CancellableActionFuture<T> extends PlainActionFuture<T> implements CancellableListener<T> {
+
+    private final CompositeSubscription subscriptions = new CompositeSubscription();
+
+    public static <T> CancellableActionFuture<T> newFuture() {
+        return new CancellableActionFuture<>();
+    }
+
+    @Override
+    public void add(Subscription subscription) {
+        subscriptions.add(subscription);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            subscriptions.unsubscribe();
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import org.elasticsearch.action.ActionListener;
+import rx.Subscription;
+
+/**
+ * A listener of a call which can be given up by the caller. The subscriptions serving the call are registered, and
+ * unsubscribed when the caller cancels or the deadline passes, which stops the handlers and frees the connections.
+ *
+ * @author olivier bourgain
+ */
+public interface CancellableListener<T> extends ActionListener<T> {
+
+    /**
+     * Registers a subscription serving the call, unsubscribed right away if the call was already given up.
+     */
+    void add(Subscription subscription);
+}
@@ -0,0 +1,72 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.unit.TimeValue;
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Completes a listener with an {@link ElasticsearchTimeoutException} if the call did not complete before its deadline,
+ * whatever the handler. The call is then unsubscribed, and the response or failure coming after the deadline dropped.
+ * <p>
+ * The deadline covers the whole call, retries, hedged requests and reading of the responses included, and applies on
+ * top of the request timeout of the client, see {@link com.github.obourgain.elasticsearch.http.client.HttpClient.Builder#requestTimeout(TimeValue)}.
+ *
+ * @author olivier bourgain
+ */
+public class DeadlineListener<T> extends ForwardingListener<T> {
+
+    private final TimeValue timeout;
+    private final CompositeSubscription subscriptions = new CompositeSubscription();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final Subscription timer;
+
+    private DeadlineListener(ActionListener<T> listener, final TimeValue timeout) {
+        super(listener);
+        this.timeout = timeout;
+        this.timer = Observable.timer(timeout.millis(), TimeUnit.MILLISECONDS).subscribe(new Action1<Long>() {
+            @Override
+            public void call(Long ignored) {
+                expire();
+            }
+        });
+    }
+
+    public static <T> DeadlineListener<T> withDeadline(ActionListener<T> listener, TimeValue timeout) {
+        return new DeadlineListener<>(listener, timeout);
+    }
+
+    @Override
+    public void add(Subscription subscription) {
+        subscriptions.add(subscription);
+        super.add(subscription);
+    }
+
+    private void expire() {
+        if (completed.compareAndSet(false, true)) {
+            subscriptions.unsubscribe();
+            listener.onFailure(new ElasticsearchTimeoutException("no response after " + timeout));
+        }
+    }
+
+    @Override
+    public void onResponse(T response) {
+        if (completed.compareAndSet(false, true)) {
+            timer.unsubscribe();
+            listener.onResponse(response);
+        }
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+        if (completed.compareAndSet(false, true)) {
+            timer.unsubscribe();
+            listener.onFailure(e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import org.elasticsearch.action.ActionListener;
+import rx.Subscription;
+
+/**
+ * Base of the listeners wrapping the listener of the caller, which keep the call cancellable by the caller.
+ *
+ * @author olivier bourgain
+ */
+public abstract class ForwardingListener<T> implements CancellableListener<T> {
+
+    protected final ActionListener<T> listener;
+
+    protected ForwardingListener(ActionListener<T> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void add(Subscription subscription) {
+        if (listener instanceof CancellableListener) {
+            ((CancellableListener<T>) listener).add(subscription);
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.github.obourgain.elasticsearch.http.concurrent;
 
 import org.elasticsearch.action.ActionListener;
-import rx.Observer;
+import rx.Subscriber;
 
-public class ListenerCompleterObserver<T> implements Observer<T> {
+/**
+ * Completes the listener with the result of the observable. A {@link CancellableListener} gets the subscription, so
+ * that the caller giving up unsubscribes the chain serving it.
+ */
+public class ListenerCompleterObserver<T> extends Subscriber<T> {
 
     private final ActionListener<T> listener;
 
     public ListenerCompleterObserver(ActionListener<T> listener) {
         this.listener = listener;
+        if (listener instanceof CancellableListener) {
+            ((CancellableListener<T>) listener).add(this);
+        }
     }
 
     @Override
@@ -25,4 +32,4 @@ public class ListenerCompleterObserver<T> implements Observer<T> {
     public void onNext(T response) {
         listener.onResponse(response);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * Provides the delays to wait before each retry of the rejected items of a bulk.
+ * The number of delays returned by the iterator is the maximum number of retries.
+ *
+ * @author olivier bourgain
+ */
+public abstract class BackoffPolicy implements Iterable<TimeValue> {
+
+    /**
+     * Never retry.
+     */
+    public static BackoffPolicy noBackoff() {
+        return new ExponentialBackoff(TimeValue.timeValueMillis(0), 0);
+    }
+
+    /**
+     * Retry up to {@code maxNumberOfRetries} times, the delay starts at {@code initialDelay} and doubles on each retry.
+     */
+    public static BackoffPolicy exponentialBackoff(TimeValue initialDelay, int maxNumberOfRetries) {
+        if (initialDelay.millis() < 0) {
+            throw new IllegalArgumentException("initialDelay must be >= 0 but was " + initialDelay);
+        }
+        if (maxNumberOfRetries < 0) {
+            throw new IllegalArgumentException("maxNumberOfRetries must be >= 0 but was " + maxNumberOfRetries);
+        }
+        return new ExponentialBackoff(initialDelay, maxNumberOfRetries);
+    }
+
+    /**
+     * Retry up to 8 times, starting with a 50ms delay, for about 12.7s of total wait.
+     */
+    public static BackoffPolicy exponentialBackoff() {
+        return exponentialBackoff(TimeValue.timeValueMillis(50), 8);
+    }
+
+    private static class ExponentialBackoff extends BackoffPolicy {
+
+        private final long initialDelayMillis;
+        private final int maxNumberOfRetries;
+
+        private ExponentialBackoff(TimeValue initialDelay, int maxNumberOfRetries) {
+            this.initialDelayMillis = initialDelay.millis();
+            this.maxNumberOfRetries = maxNumberOfRetries;
+        }
+
+        @Override
+        public Iterator<TimeValue> iterator() {
+            return new Iterator<TimeValue>() {
+                private int retries = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return retries < maxNumberOfRetries;
+                }
+
+                @Override
+                public TimeValue next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException("only up to " + maxNumberOfRetries + " retries allowed");
+                    }
+                    // cap the shift to not overflow with large retry numbers
+                    long delay = initialDelayMillis << Math.min(retries, 30);
+                    retries++;
+                    return TimeValue.timeValueMillis(delay);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
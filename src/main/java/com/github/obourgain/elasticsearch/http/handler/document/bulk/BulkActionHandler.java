@@ -3,19 +3,22 @@ package com.github.obourgain.elasticsearch.http.handler.document.bulk;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.bulk.BulkAction;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.common.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.Compression;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
 import rx.Subscriber;
-import rx.functions.Action1;
 import rx.functions.Func1;
 
 /**
@@ -52,8 +55,16 @@ public class BulkActionHandler {
             uriBuilder.addQueryParameter("timeout", request.timeout().toString());
             uriBuilder.addConsistencyLevel(request.consistencyLevel());
 
-            httpClient.getHttpClient().submit(HttpClientRequest.createPost(uriBuilder.toString())
-                    .withContentSource(Observable.create(new ByteBufOnSubscribe(request))))
+            // the body is encoded on subscription, the estimated size tells whether to compress it
+            Compression compression = httpClient.getCompression();
+            boolean compress = compression.compress(request.estimatedSizeInBytes());
+            ContentType contentType = httpClient.getContentType().multiDocument();
+            HttpClientRequest<ByteBuf> post = contentType.withContentType(HttpClientRequest.<ByteBuf>createPost(uriBuilder.toString()));
+            if (compress) {
+                post.withHeader(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.GZIP);
+            }
+            httpClient.getHttpClient().submit(post
+                    .withContentSource(Observable.create(new ByteBufOnSubscribe(request, contentType, compress ? compression : null))))
                     .flatMap(ErrorHandler.AS_FUNC)
                     .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<BulkResponse>>() {
                         @Override
@@ -75,24 +86,30 @@ public class BulkActionHandler {
 
     private static class ByteBufOnSubscribe implements Observable.OnSubscribe<ByteBuf> {
         private final BulkRequest request;
+        private final ContentType contentType;
+        @Nullable
+        private final Compression compression;
 
-        public ByteBufOnSubscribe(BulkRequest request) {
+        public ByteBufOnSubscribe(BulkRequest request, ContentType contentType, @Nullable Compression compression) {
             this.request = request;
+            this.contentType = contentType;
+            this.compression = compression;
         }
 
         @Override
         public void call(final Subscriber<? super ByteBuf> subscriber) {
             subscriber.onStart();
-
-            Observable<byte[]> actions = BulkActionMarshaller.lazyConvertToBytes(request.requests());
-            actions.forEach(new Action1<byte[]>() {
-                @Override
-                public void call(byte[] bytes) {
-                    subscriber.onNext(PooledByteBufAllocator.DEFAULT.buffer().writeBytes(bytes));
+            ByteBuf content;
+            try {
+                content = BulkActionMarshaller.encode(request.requests(), contentType, PooledByteBufAllocator.DEFAULT);
+                if (compression != null) {
+                    content = compression.gzip(content, PooledByteBufAllocator.DEFAULT);
                 }
-            });
-
-            // TODO may I reuse the buffer here ? could be a nice optimization
+            } catch (Exception e) {
+                subscriber.onError(e);
+                return;
+            }
+            subscriber.onNext(content);
             subscriber.onCompleted();
         }
     }
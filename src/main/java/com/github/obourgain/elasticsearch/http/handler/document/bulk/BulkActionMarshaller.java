@@ -9,111 +9,178 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.VersionType;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.handler.document.update.UpdateHelper;
-import com.google.common.base.Charsets;
-import rx.Observable;
-import rx.functions.Func1;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 
 public class BulkActionMarshaller {
 
-    public static final byte[] LINE_BREAK = "\n".getBytes(Charsets.US_ASCII);
-
-    public static Observable<byte[]> lazyConvertToBytes(List<ActionRequest> actions) {
-        return Observable.from(actions)
-                .flatMap(new Func1<ActionRequest, Observable<byte[]>>() {
-                    @Override
-                    public Observable<byte[]> call(ActionRequest actionRequest) {
-                        try {
-                            if (actionRequest instanceof IndexRequest) {
-                                IndexRequest indexRequest = (IndexRequest) actionRequest;
-                                return Observable.just(buildIndexCommand(indexRequest), LINE_BREAK, indexRequest.source().toBytes(), LINE_BREAK);
-
-                            } else if (actionRequest instanceof DeleteRequest) {
-                                DeleteRequest deleteRequest = (DeleteRequest) actionRequest;
-                                return Observable.just(buildDeleteCommand(deleteRequest), LINE_BREAK);
-
-                            } else if (actionRequest instanceof UpdateRequest) {
-                                UpdateRequest updateRequest = (UpdateRequest) actionRequest;
-                                return Observable.just(buildUpdateCommand(updateRequest), LINE_BREAK, UpdateHelper.buildRequestBody(updateRequest), LINE_BREAK);
-                            } else {
-                                throw new IllegalArgumentException("action type " + actionRequest.getClass().getName() + " not supported");
-                            }
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
-                });
+    // rough size of an action line, used to size the buffer receiving the action lines
+    private static final int ESTIMATED_ACTION_LINE_SIZE = 128;
+
+    /**
+     * Encodes the actions in a single buffer.
+     * The action lines, update bodies and line breaks are written sequentially in one buffer from the allocator,
+     * the sources of index requests are wrapped without being copied.
+     * The returned buffer is a composite of slices of the action lines buffer and of the wrapped sources.
+     */
+    public static ByteBuf encode(List<ActionRequest> actions, ByteBufAllocator allocator) {
+        return encode(actions, ContentType.json(), allocator);
     }
 
-    private static byte[] buildIndexCommand(IndexRequest indexRequest) throws IOException {
-        try (XContentBuilder builder = XContentFactory.jsonBuilder().startObject()) {
-            addCommonOptions(builder, "index", indexRequest.index(), indexRequest.type(), indexRequest.id(),
-                    indexRequest.version(), indexRequest.versionType(), indexRequest.routing(),
-                    indexRequest.consistencyLevel(), indexRequest.refresh());
-            String parent = indexRequest.parent();
-            String timestamp = indexRequest.timestamp();
-            long ttl = indexRequest.ttl();
-            if (parent != null) {
-                builder.field("_parent", parent);
+    /**
+     * Same as {@link #encode(List, ByteBufAllocator)} with the action lines in the content type, followed by its
+     * separator rather than a line break. The sources and update bodies are left in their own type, the nodes detect
+     * it for each document.
+     */
+    public static ByteBuf encode(List<ActionRequest> actions, ContentType contentType, ByteBufAllocator allocator) {
+        // use the max number of components to prevent the composite buffer from consolidating, which would copy everything
+        CompositeByteBuf composite = allocator.compositeBuffer(Integer.MAX_VALUE);
+        ByteBuf actionLines = allocator.buffer(actions.size() * ESTIMATED_ACTION_LINE_SIZE);
+        try {
+            int pendingFrom = 0;
+            for (ActionRequest action : actions) {
+                BytesReference source = write(action, contentType, actionLines);
+                if (source != null && source.length() > 0) {
+                    addComponent(composite, actionLines.slice(pendingFrom, actionLines.writerIndex() - pendingFrom).retain());
+                    addComponent(composite, wrap(source));
+                    // the line break following the source starts the next pending slice
+                    pendingFrom = actionLines.writerIndex();
+                    actionLines.writeByte(contentType.separator());
+                }
+            }
+            if (actionLines.writerIndex() > pendingFrom) {
+                addComponent(composite, actionLines.slice(pendingFrom, actionLines.writerIndex() - pendingFrom).retain());
             }
-            if (timestamp != null) {
-                builder.field("_timestamp", timestamp);
+            return composite;
+        } catch (IOException | RuntimeException e) {
+            composite.release();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        } finally {
+            // the slices hold their own reference
+            actionLines.release();
+        }
+    }
+
+    /**
+     * Writes the action line and, if any, the body of the action that does not come from the user, and the line breaks.
+     * @return the source of the action if it should be appended as is, followed by a line break
+     */
+    private static BytesReference write(ActionRequest actionRequest, ContentType contentType, ByteBuf out) throws IOException {
+        byte separator = contentType.separator();
+        if (actionRequest instanceof IndexRequest) {
+            IndexRequest indexRequest = (IndexRequest) actionRequest;
+            try (XContentBuilder builder = contentType.builder(new ByteBufOutputStream(out))) {
+                writeIndexCommand(builder, indexRequest);
             }
-            if (ttl != -1) {
-                builder.field("_ttl", ttl);
+            out.writeByte(separator);
+            BytesReference source = indexRequest.source();
+            if (source == null || source.length() == 0) {
+                out.writeByte(separator);
             }
-            if (indexRequest.opType() != null) {
-                builder.field("op_type", indexRequest.opType().toString().toLowerCase());
+            return source;
+        } else if (actionRequest instanceof DeleteRequest) {
+            try (XContentBuilder builder = contentType.builder(new ByteBufOutputStream(out))) {
+                writeDeleteCommand(builder, (DeleteRequest) actionRequest);
             }
-            if (indexRequest.parent() != null) {
-                builder.field("op_type", indexRequest.parent());
+            out.writeByte(separator);
+            return null;
+        } else if (actionRequest instanceof UpdateRequest) {
+            UpdateRequest updateRequest = (UpdateRequest) actionRequest;
+            try (XContentBuilder builder = contentType.builder(new ByteBufOutputStream(out))) {
+                writeUpdateCommand(builder, updateRequest);
             }
-            return builder.bytes().toBytes();
+            out.writeByte(separator);
+            UpdateHelper.writeRequestBody(updateRequest, new ByteBufOutputStream(out));
+            out.writeByte(separator);
+            return null;
+        } else {
+            throw new IllegalArgumentException("action type " + actionRequest.getClass().getName() + " not supported");
+        }
+    }
+
+    private static ByteBuf wrap(BytesReference source) {
+        if (source.hasArray()) {
+            return Unpooled.wrappedBuffer(source.array(), source.arrayOffset(), source.length());
         }
+        return Unpooled.wrappedBuffer(source.toBytes());
+    }
+
+    private static void addComponent(CompositeByteBuf composite, ByteBuf component) {
+        composite.addComponent(component);
+        // adding a component does not move the writer index with this version of netty
+        composite.writerIndex(composite.writerIndex() + component.readableBytes());
     }
 
-    private static byte[] buildDeleteCommand(DeleteRequest deleteRequest) throws IOException {
-        try(XContentBuilder builder = XContentFactory.jsonBuilder().startObject()) {
-            addCommonOptions(builder, "delete", deleteRequest.index(), deleteRequest.type(), deleteRequest.id(),
-                    deleteRequest.version(), deleteRequest.versionType(), deleteRequest.routing(),
-                    deleteRequest.consistencyLevel(), deleteRequest.refresh());
-            return builder.bytes().toBytes();
+    private static void writeIndexCommand(XContentBuilder builder, IndexRequest indexRequest) throws IOException {
+        builder.startObject();
+        addCommonOptions(builder, "index", indexRequest.index(), indexRequest.type(), indexRequest.id(),
+                indexRequest.version(), indexRequest.versionType(), indexRequest.routing(),
+                indexRequest.consistencyLevel(), indexRequest.refresh());
+        String parent = indexRequest.parent();
+        String timestamp = indexRequest.timestamp();
+        long ttl = indexRequest.ttl();
+        if (parent != null) {
+            builder.field("_parent", parent);
+        }
+        if (timestamp != null) {
+            builder.field("_timestamp", timestamp);
+        }
+        if (ttl != -1) {
+            builder.field("_ttl", ttl);
         }
+        if (indexRequest.opType() != null) {
+            builder.field("op_type", indexRequest.opType().toString().toLowerCase());
+        }
+        if (indexRequest.parent() != null) {
+            builder.field("op_type", indexRequest.parent());
+        }
+        builder.endObject().endObject();
     }
 
+    private static void writeDeleteCommand(XContentBuilder builder, DeleteRequest deleteRequest) throws IOException {
+        builder.startObject();
+        addCommonOptions(builder, "delete", deleteRequest.index(), deleteRequest.type(), deleteRequest.id(),
+                deleteRequest.version(), deleteRequest.versionType(), deleteRequest.routing(),
+                deleteRequest.consistencyLevel(), deleteRequest.refresh());
+        builder.endObject().endObject();
+    }
 
-    private static byte[] buildUpdateCommand(UpdateRequest updateRequest) throws IOException {
-        try (XContentBuilder builder = XContentFactory.jsonBuilder().startObject()) {
-            addCommonOptions(builder, "update", updateRequest.index(), updateRequest.type(), updateRequest.id(),
-                    updateRequest.version(), updateRequest.versionType(), updateRequest.routing(),
-                    updateRequest.consistencyLevel(), updateRequest.refresh());
+    private static void writeUpdateCommand(XContentBuilder builder, UpdateRequest updateRequest) throws IOException {
+        builder.startObject();
+        addCommonOptions(builder, "update", updateRequest.index(), updateRequest.type(), updateRequest.id(),
+                updateRequest.version(), updateRequest.versionType(), updateRequest.routing(),
+                updateRequest.consistencyLevel(), updateRequest.refresh());
 
-            String timestamp = updateRequest.doc() != null ? updateRequest.doc().timestamp() : null;
-            long ttl = updateRequest.doc() != null ? updateRequest.doc().ttl() : -1;
+        String timestamp = updateRequest.doc() != null ? updateRequest.doc().timestamp() : null;
+        long ttl = updateRequest.doc() != null ? updateRequest.doc().ttl() : -1;
 
-            if (timestamp != null) {
-                builder.field("_timestamp", timestamp);
-            }
-            if (ttl != -1) {
-                builder.field("_ttl", ttl);
-            }
-            if (updateRequest.retryOnConflict() != -1) {
-                builder.field("_retry_on_conflict", updateRequest.retryOnConflict());
-            }
-            if (updateRequest.fields() != null && updateRequest.fields().length > 0) {
-                builder.field("_fields", Strings.arrayToCommaDelimitedString(updateRequest.fields()));
-            }
-            if (updateRequest.doc() != null && updateRequest.doc().parent() != null) {
-                builder.field("_parent", updateRequest.doc().parent());
-            } else if (updateRequest.routing() != null) {
-                builder.field("_parent", updateRequest.routing());
-            }
-            return builder.bytes().toBytes();
+        if (timestamp != null) {
+            builder.field("_timestamp", timestamp);
+        }
+        if (ttl != -1) {
+            builder.field("_ttl", ttl);
+        }
+        if (updateRequest.retryOnConflict() != -1) {
+            builder.field("_retry_on_conflict", updateRequest.retryOnConflict());
+        }
+        if (updateRequest.fields() != null && updateRequest.fields().length > 0) {
+            builder.field("_fields", Strings.arrayToCommaDelimitedString(updateRequest.fields()));
+        }
+        if (updateRequest.doc() != null && updateRequest.doc().parent() != null) {
+            builder.field("_parent", updateRequest.doc().parent());
+        } else if (updateRequest.routing() != null) {
+            builder.field("_parent", updateRequest.routing());
         }
+        builder.endObject().endObject();
     }
 
     private static void addCommonOptions(XContentBuilder builder, String command, String index, String type, String id,
@@ -0,0 +1,325 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Accumulates index, update and delete requests and sends them as bulk requests through the {@link HttpClient}.
+ * A bulk is flushed when the number of actions, the estimated size of the bulk or the time since the last flush
+ * reach the configured thresholds.
+ * <p>
+ * At most {@code concurrentRequests} bulks are in flight at the same time, {@link #add(ActionRequest)} blocks
+ * the caller when this limit is reached. With {@code concurrentRequests} set to 0, bulks are executed synchronously.
+ *
+ * @author olivier bourgain
+ */
+public class BulkProcessor implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkProcessor.class);
+
+    public interface Listener {
+
+        void beforeBulk(long executionId, BulkRequest request);
+
+        void afterBulk(long executionId, BulkRequest request, BulkResponse response);
+
+        void afterBulk(long executionId, BulkRequest request, Throwable failure);
+    }
+
+    public static class Builder {
+
+        private final HttpClient httpClient;
+        private final Listener listener;
+
+        private String name;
+        private int concurrentRequests = 1;
+        private int bulkActions = 1000;
+        private ByteSizeValue bulkSize = new ByteSizeValue(5, ByteSizeUnit.MB);
+        private TimeValue flushInterval = null;
+        private BackoffPolicy backoffPolicy = BackoffPolicy.noBackoff();
+
+        private Builder(HttpClient httpClient, Listener listener) {
+            this.httpClient = httpClient;
+            this.listener = listener;
+        }
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Number of bulks allowed to be in flight while accumulating new actions, defaults to 1.
+         * 0 means that the bulk is executed synchronously by the thread triggering the flush.
+         */
+        public Builder setConcurrentRequests(int concurrentRequests) {
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+
+        /**
+         * Flush when this number of actions is reached, defaults to 1000, -1 to disable.
+         */
+        public Builder setBulkActions(int bulkActions) {
+            this.bulkActions = bulkActions;
+            return this;
+        }
+
+        /**
+         * Flush when the estimated size of the bulk reaches this size, defaults to 5mb, -1 to disable.
+         */
+        public Builder setBulkSize(ByteSizeValue bulkSize) {
+            this.bulkSize = bulkSize;
+            return this;
+        }
+
+        /**
+         * Flush at this interval whatever the number of actions or size of the bulk, disabled by default.
+         */
+        public Builder setFlushInterval(TimeValue flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * Policy used to resubmit the items rejected by the nodes, by default rejected items are not retried.
+         */
+        public Builder setBackoffPolicy(BackoffPolicy backoffPolicy) {
+            if (backoffPolicy == null) {
+                throw new NullPointerException("The backoff policy must not be null");
+            }
+            this.backoffPolicy = backoffPolicy;
+            return this;
+        }
+
+        public BulkProcessor build() {
+            return new BulkProcessor(httpClient, listener, name, concurrentRequests, bulkActions, bulkSize, flushInterval, backoffPolicy);
+        }
+    }
+
+    public static Builder builder(HttpClient httpClient, Listener listener) {
+        if (httpClient == null) {
+            throw new NullPointerException("The http client must not be null");
+        }
+        if (listener == null) {
+            throw new NullPointerException("The listener must not be null");
+        }
+        return new Builder(httpClient, listener);
+    }
+
+    private final HttpClient httpClient;
+    private final Listener listener;
+    private final int concurrentRequests;
+    private final int bulkActions;
+    private final long bulkSize;
+    private final BackoffPolicy backoffPolicy;
+
+    private final Semaphore semaphore;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledFuture<?> scheduledFlush;
+
+    private final AtomicLong executionIdGen = new AtomicLong();
+
+    private BulkRequest bulkRequest;
+
+    private volatile boolean closed = false;
+
+    BulkProcessor(HttpClient httpClient, Listener listener, @Nullable String name, int concurrentRequests, int bulkActions,
+                  ByteSizeValue bulkSize, @Nullable TimeValue flushInterval, BackoffPolicy backoffPolicy) {
+        this.httpClient = httpClient;
+        this.listener = listener;
+        this.concurrentRequests = concurrentRequests;
+        this.bulkActions = bulkActions;
+        this.bulkSize = bulkSize.bytes();
+        this.backoffPolicy = backoffPolicy;
+        this.semaphore = new Semaphore(concurrentRequests > 0 ? concurrentRequests : 1);
+        this.bulkRequest = new BulkRequest();
+
+        if (flushInterval != null) {
+            String nameFormat = "bulk-processor" + (name != null ? "-" + name : "") + "-%d";
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat(nameFormat).build());
+            this.scheduledFlush = scheduler.scheduleWithFixedDelay(new Flush(), flushInterval.millis(), flushInterval.millis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+            this.scheduledFlush = null;
+        }
+    }
+
+    public BulkProcessor add(IndexRequest request) {
+        return add((ActionRequest) request);
+    }
+
+    public BulkProcessor add(UpdateRequest request) {
+        return add((ActionRequest) request);
+    }
+
+    public BulkProcessor add(DeleteRequest request) {
+        return add((ActionRequest) request);
+    }
+
+    public synchronized BulkProcessor add(ActionRequest request) {
+        ensureOpen();
+        bulkRequest.add(request);
+        executeIfNeeded();
+        return this;
+    }
+
+    /**
+     * Sends the pending actions, if any.
+     */
+    public synchronized void flush() {
+        ensureOpen();
+        if (bulkRequest.numberOfActions() > 0) {
+            execute();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            awaitClose(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the pending actions and waits for the in flight bulks to complete, up to the given timeout.
+     *
+     * @return true if all bulks completed before the timeout, false otherwise
+     */
+    public synchronized boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        if (closed) {
+            return true;
+        }
+        closed = true;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduler.shutdown();
+        }
+        if (bulkRequest.numberOfActions() > 0) {
+            execute();
+        }
+        if (concurrentRequests <= 0) {
+            return true;
+        }
+        if (semaphore.tryAcquire(concurrentRequests, timeout, unit)) {
+            semaphore.release(concurrentRequests);
+            return true;
+        }
+        return false;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("bulk processor already closed");
+        }
+    }
+
+    private void executeIfNeeded() {
+        if (bulkActions != -1 && bulkRequest.numberOfActions() >= bulkActions) {
+            execute();
+        } else if (bulkSize != -1 && bulkRequest.estimatedSizeInBytes() >= bulkSize) {
+            execute();
+        }
+    }
+
+    // must be called while holding the monitor
+    private void execute() {
+        final BulkRequest request = this.bulkRequest;
+        final long executionId = executionIdGen.incrementAndGet();
+        this.bulkRequest = new BulkRequest();
+
+        if (concurrentRequests <= 0) {
+            executeSynchronously(request, executionId);
+        } else {
+            executeAsynchronously(request, executionId);
+        }
+    }
+
+    private void executeSynchronously(BulkRequest request, long executionId) {
+        listener.beforeBulk(executionId, request);
+        BulkResponse response;
+        try {
+            response = httpClient.bulk(request, backoffPolicy).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.afterBulk(executionId, request, e);
+            return;
+        } catch (Throwable t) {
+            listener.afterBulk(executionId, request, t.getCause() != null ? t.getCause() : t);
+            return;
+        }
+        listener.afterBulk(executionId, request, response);
+    }
+
+    private void executeAsynchronously(final BulkRequest request, final long executionId) {
+        boolean acquired = false;
+        try {
+            listener.beforeBulk(executionId, request);
+            semaphore.acquire();
+            acquired = true;
+            httpClient.bulk(request, backoffPolicy, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    try {
+                        listener.afterBulk(executionId, request, response);
+                    } finally {
+                        semaphore.release();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        listener.afterBulk(executionId, request, e);
+                    } finally {
+                        semaphore.release();
+                    }
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.afterBulk(executionId, request, e);
+        } catch (Throwable t) {
+            logger.warn("failed to execute bulk request {}", executionId, t);
+            listener.afterBulk(executionId, request, t);
+            if (acquired) {
+                semaphore.release();
+            }
+        }
+    }
+
+    private class Flush implements Runnable {
+        @Override
+        public void run() {
+            synchronized (BulkProcessor.this) {
+                if (closed) {
+                    return;
+                }
+                if (bulkRequest.numberOfActions() > 0) {
+                    execute();
+                }
+            }
+        }
+    }
+}
@@ -19,6 +19,15 @@ public class BulkResponse {
     private boolean errors;
     private List<BulkItem> items;
 
+    BulkResponse() {
+    }
+
+    BulkResponse(long took, boolean errors, List<BulkItem> items) {
+        this.took = took;
+        this.errors = errors;
+        this.items = items;
+    }
+
     public static Observable<BulkResponse> parse(ByteBuf content) {
         return Observable.just(new BulkResponse().doParse(new ByteBufBytesReference(content)));
     }
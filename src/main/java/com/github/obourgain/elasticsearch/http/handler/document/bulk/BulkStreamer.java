@@ -0,0 +1,218 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Func1;
+
+/**
+ * Sends the actions of an observable as bulks of bounded number of actions and size, with a bounded number of bulks in
+ * flight. The actions are requested from the source one at a time, as long as the bulk being filled is not full, and
+ * no more actions are requested while a full bulk waits to be sent. Besides the bulks in flight, one bulk is queued to
+ * be sent and one is filled, so a source of any size can be streamed in constant memory, provided it honours the
+ * backpressure.
+ * <p>
+ * The bodies of the bulks are encoded when they are sent. The responses are emitted as the bulks complete, not
+ * necessarily in the order of the actions. A failed bulk fails the observable, and the actions left in the source are
+ * not requested.
+ *
+ * @author olivier bourgain
+ */
+public class BulkStreamer {
+
+    private final HttpClient httpClient;
+
+    public BulkStreamer(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public Observable<BulkResponse> bulk(Observable<? extends ActionRequest> actions, final int maxActions, final ByteSizeValue maxSize, int concurrency) {
+        if (maxActions < 1) {
+            throw new IllegalArgumentException("maxActions must be at least 1 but was " + maxActions);
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1 but was " + concurrency);
+        }
+        Observable<BulkRequest> bulks = actions.lift(new Observable.Operator<BulkRequest, ActionRequest>() {
+            @Override
+            public Subscriber<? super ActionRequest> call(Subscriber<? super BulkRequest> child) {
+                final Batching batching = new Batching(child, maxActions, maxSize.bytes());
+                child.add(batching);
+                child.setProducer(new Producer() {
+                    @Override
+                    public void request(long n) {
+                        batching.requestBulks(n);
+                    }
+                });
+                return batching;
+            }
+        });
+        return Observable.merge(bulks.map(new Func1<BulkRequest, Observable<BulkResponse>>() {
+            @Override
+            public Observable<BulkResponse> call(BulkRequest request) {
+                return execute(request);
+            }
+        }), concurrency);
+    }
+
+    private Observable<BulkResponse> execute(final BulkRequest request) {
+        return Observable.create(new Observable.OnSubscribe<BulkResponse>() {
+            @Override
+            public void call(final Subscriber<? super BulkResponse> subscriber) {
+                httpClient.bulk(request, new ActionListener<BulkResponse>() {
+                    @Override
+                    public void onResponse(BulkResponse response) {
+                        subscriber.onNext(response);
+                        subscriber.onCompleted();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        subscriber.onError(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Fills a bulk with the actions of the source, and emits it when full and requested. One bulk is filled ahead.
+     * The requests, actions and terminal events may come from different threads, the emissions are serialized by
+     * the thread draining.
+     */
+    private static class Batching extends Subscriber<ActionRequest> {
+
+        private final Subscriber<? super BulkRequest> child;
+        private final int maxActions;
+        private final long maxBytes;
+
+        // guarded by this
+        private long requested;
+        private BulkRequest filling = new BulkRequest();
+        private BulkRequest full;
+        private boolean pulling;
+        private boolean done;
+        private Throwable error;
+        private boolean draining;
+        private boolean missed;
+
+        private Batching(Subscriber<? super BulkRequest> child, int maxActions, long maxBytes) {
+            this.child = child;
+            this.maxActions = maxActions;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onStart() {
+            // the actions are requested by drain()
+            request(0);
+        }
+
+        private void requestBulks(long n) {
+            if (n <= 0) {
+                return;
+            }
+            synchronized (this) {
+                requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(ActionRequest action) {
+            synchronized (this) {
+                pulling = false;
+                filling.add(action);
+                if (filling.numberOfActions() >= maxActions || filling.estimatedSizeInBytes() >= maxBytes) {
+                    full = filling;
+                    filling = new BulkRequest();
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                pulling = false;
+                done = true;
+                if (filling.numberOfActions() > 0) {
+                    // nothing is pulled while a full bulk waits, so there is none
+                    full = filling;
+                    filling = new BulkRequest();
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            synchronized (this) {
+                error = e;
+            }
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (draining) {
+                    missed = true;
+                    return;
+                }
+                draining = true;
+            }
+            for (; ; ) {
+                BulkRequest bulk = null;
+                Throwable failure = null;
+                boolean complete = false;
+                boolean pull = false;
+                synchronized (this) {
+                    if (error != null) {
+                        failure = error;
+                    } else if (full != null) {
+                        if (requested > 0) {
+                            bulk = full;
+                            full = null;
+                            if (requested != Long.MAX_VALUE) {
+                                requested--;
+                            }
+                        }
+                    } else if (done) {
+                        complete = true;
+                    } else if (!pulling) {
+                        pulling = true;
+                        pull = true;
+                    }
+                    if (bulk == null && failure == null && !complete && !pull) {
+                        if (!missed) {
+                            draining = false;
+                            return;
+                        }
+                        missed = false;
+                        continue;
+                    }
+                }
+                // stays draining once terminated, so that nothing else is emitted
+                if (failure != null) {
+                    child.onError(failure);
+                    return;
+                }
+                if (complete) {
+                    child.onCompleted();
+                    return;
+                }
+                if (bulk != null) {
+                    child.onNext(bulk);
+                }
+                if (pull) {
+                    request(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+import rx.Observable;
+import rx.functions.Action1;
+
+/**
+ * Executes a bulk and resubmits only the items rejected by the nodes, with the delays given by a {@link BackoffPolicy}.
+ * The items of the final response are in the order of the actions of the original request, each one being the outcome
+ * of the last attempt of its action.
+ *
+ * @author olivier bourgain
+ */
+public class RetryingBulkActionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryingBulkActionHandler.class);
+
+    private final BulkActionHandler bulkActionHandler;
+
+    public RetryingBulkActionHandler(BulkActionHandler bulkActionHandler) {
+        this.bulkActionHandler = bulkActionHandler;
+    }
+
+    public void execute(BulkRequest request, BackoffPolicy backoffPolicy, ActionListener<BulkResponse> listener) {
+        try {
+            new Attempts(request, backoffPolicy.iterator(), listener).submit(allPositions(request.numberOfActions()));
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    static boolean isRetryable(int status) {
+        return status == RestStatus.TOO_MANY_REQUESTS.getStatus();
+    }
+
+    private static int[] allPositions(int size) {
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    private class Attempts implements ActionListener<BulkResponse> {
+
+        private final BulkRequest original;
+        private final Iterator<TimeValue> backoff;
+        private final ActionListener<BulkResponse> listener;
+
+        // outcome of the last attempt of each action, indexed by the position of the action in the original request
+        private final BulkItem[] items;
+        private long took;
+
+        // positions in the original request of the actions of the bulk in flight
+        private volatile int[] pending;
+
+        private Attempts(BulkRequest original, Iterator<TimeValue> backoff, ActionListener<BulkResponse> listener) {
+            this.original = original;
+            this.backoff = backoff;
+            this.listener = listener;
+            this.items = new BulkItem[original.numberOfActions()];
+        }
+
+        private void submit(int[] positions) {
+            this.pending = positions;
+            if (positions.length == original.numberOfActions()) {
+                bulkActionHandler.execute(original, this);
+                return;
+            }
+            BulkRequest retry = new BulkRequest();
+            retry.refresh(original.refresh());
+            retry.timeout(original.timeout());
+            retry.consistencyLevel(original.consistencyLevel());
+            List<ActionRequest> actions = original.requests();
+            for (int position : positions) {
+                retry.add(actions.get(position));
+            }
+            bulkActionHandler.execute(retry, this);
+        }
+
+        @Override
+        public void onResponse(BulkResponse response) {
+            int[] positions = pending;
+            List<BulkItem> responseItems = response.getItems();
+            if (responseItems == null || responseItems.size() != positions.length) {
+                listener.onFailure(new IllegalStateException("expected " + positions.length + " items in bulk response but got "
+                        + (responseItems == null ? 0 : responseItems.size())));
+                return;
+            }
+            took += response.getTook();
+            int[] rejected = new int[positions.length];
+            int rejectedCount = 0;
+            for (int i = 0; i < positions.length; i++) {
+                BulkItem item = responseItems.get(i);
+                items[positions[i]] = item;
+                if (item.isFailed() && isRetryable(item.getStatus())) {
+                    rejected[rejectedCount++] = positions[i];
+                }
+            }
+            if (rejectedCount > 0 && backoff.hasNext()) {
+                retryLater(Arrays.copyOf(rejected, rejectedCount));
+            } else {
+                complete();
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            // the whole bulk may be rejected when the node is overloaded
+            if (e instanceof ElasticsearchHttpException && isRetryable(((ElasticsearchHttpException) e).getStatusCode()) && backoff.hasNext()) {
+                retryLater(pending);
+            } else {
+                listener.onFailure(e);
+            }
+        }
+
+        private void retryLater(final int[] positions) {
+            TimeValue delay = backoff.next();
+            logger.debug("retrying {} rejected bulk actions in {}", positions.length, delay);
+            Observable.timer(delay.millis(), TimeUnit.MILLISECONDS).subscribe(new Action1<Long>() {
+                @Override
+                public void call(Long ignored) {
+                    try {
+                        submit(positions);
+                    } catch (Exception e) {
+                        listener.onFailure(e);
+                    }
+                }
+            });
+        }
+
+        private void complete() {
+            boolean errors = false;
+            for (BulkItem item : items) {
+                errors |= item.isFailed();
+            }
+            listener.onResponse(new BulkResponse(took, errors, new ArrayList<>(Arrays.asList(items))));
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.obourgain.elasticsearch.http.handler.document.delete;
 
-import java.net.URLEncoder;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.delete.DeleteAction;
 import org.elasticsearch.action.delete.DeleteRequest;
@@ -11,7 +10,6 @@ import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
-import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -38,7 +36,7 @@ public class DeleteActionHandler {
     public void execute(final DeleteRequest request, final ActionListener<DeleteResponse> listener) {
         logger.debug("delete request " + request);
         try {
-            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), URLEncoder.encode(request.id(), Charsets.UTF_8.displayName()));
+            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), RequestUriBuilder.encode(request.id()));
 
             uriBuilder.addQueryParameterIfNotZero("version", request.version());
             uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
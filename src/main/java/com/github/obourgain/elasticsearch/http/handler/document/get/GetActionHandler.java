@@ -1,6 +1,5 @@
 package com.github.obourgain.elasticsearch.http.handler.document.get;
 
-import java.net.URLEncoder;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.get.GetAction;
 import org.elasticsearch.action.get.GetRequest;
@@ -8,15 +7,16 @@ import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
-import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 /**
@@ -40,7 +40,7 @@ public class GetActionHandler {
         logger.debug("get request {}", request);
         try {
             // encode to handle the case where the id got a space/special char
-            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), URLEncoder.encode(request.id(), Charsets.UTF_8.displayName()));
+            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), RequestUriBuilder.encode(request.id()));
             uriBuilder.addIndicesOptions(request);
 
             FetchSourceContext fetchSourceContext = request.fetchSourceContext();
@@ -60,32 +60,40 @@ public class GetActionHandler {
 
             if (request.version() != Versions.MATCH_ANY) {
                 uriBuilder.addQueryParameter("version", request.version());
-                uriBuilder.addQueryParameter("version_type", request.versionType().toString().toLowerCase());
+                uriBuilder.addVersionType(request.versionType());
             }
             if (request.fields() != null) {
                 uriBuilder.addQueryParameterArrayAsCommaDelimited("fields", request.fields());
             }
             uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
-            uriBuilder.addQueryParameterIfNotNull("preference", request.preference());
+            uriBuilder.addQueryParameterIfNotNull("preference", httpClient.getPreferencePolicy().preference(request));
             if (request.refresh()) {
                 uriBuilder.addQueryParameter("refresh", request.refresh());
             }
             if (request.realtime()) {
                 uriBuilder.addQueryParameter("realtime", request.realtime());
             }
-            httpClient.getHttpClient().submit(HttpClientRequest.createGet(uriBuilder.toString()))
-                    .flatMap(ErrorHandler.AS_FUNC)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<GetResponse>>() {
-                        @Override
-                        public Observable<GetResponse> call(HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<GetResponse>>() {
+            final String uri = uriBuilder.toString();
+            final ContentType contentType = httpClient.getContentType();
+            Observable<GetResponse> get = Observable.defer(new Func0<Observable<GetResponse>>() {
+                @Override
+                public Observable<GetResponse> call() {
+                    return httpClient.getHttpClient().submit(contentType.withContentType(HttpClientRequest.<ByteBuf>createGet(uri)))
+                            .flatMap(ErrorHandler.AS_FUNC)
+                            .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<GetResponse>>() {
                                 @Override
-                                public Observable<GetResponse> call(ByteBuf byteBuf) {
-                                    return GetResponse.parse(byteBuf);
+                                public Observable<GetResponse> call(HttpClientResponse<ByteBuf> response) {
+                                    return response.getContent().flatMap(new Func1<ByteBuf, Observable<GetResponse>>() {
+                                        @Override
+                                        public Observable<GetResponse> call(ByteBuf byteBuf) {
+                                            return GetResponse.parse(byteBuf);
+                                        }
+                                    });
                                 }
                             });
-                        }
-                    })
+                }
+            });
+            httpClient.getHedgingPolicy().hedge("get", get)
                     .single()
                     .subscribe(new ListenerCompleterObserver<>(listener));
 
@@ -0,0 +1,187 @@
+package com.github.obourgain.elasticsearch.http.handler.document.get;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.concurrent.Batcher;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.Either;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetActionHandler;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponseError;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+/**
+ * Buffers the gets during a time window, or up to a number of gets, and sends them in one multi get. The gets of the
+ * same document are sent once.
+ * <p>
+ * The gets with a routing, a version, a source transform or a refresh are executed right away, as well as the gets
+ * of the documents in error in the multi get response, so that they fail like a plain get. Only the preference set on
+ * the requests is sent, the preference policy of the client does not apply to the batched gets.
+ *
+ * @author olivier bourgain
+ */
+public class GetBatcher implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GetBatcher.class);
+
+    private final GetActionHandler getActionHandler;
+    private final MultiGetActionHandler multiGetActionHandler;
+    private final Batcher<PendingGet> batcher;
+
+    /**
+     * @param scheduler runs the flushes at the end of the windows, not shut down on close
+     */
+    public GetBatcher(GetActionHandler getActionHandler, MultiGetActionHandler multiGetActionHandler, ScheduledExecutorService scheduler, TimeValue window, int maxGets) {
+        this.getActionHandler = getActionHandler;
+        this.multiGetActionHandler = multiGetActionHandler;
+        this.batcher = new Batcher<PendingGet>(scheduler, window, maxGets) {
+            @Override
+            protected void send(List<PendingGet> gets) {
+                GetBatcher.this.send(gets);
+            }
+        };
+    }
+
+    public void execute(GetRequest request, ActionListener<GetResponse> listener) {
+        if (!canBatch(request)) {
+            getActionHandler.execute(request, listener);
+            return;
+        }
+        batcher.add(new PendingGet(request, listener));
+    }
+
+    /**
+     * Sends the buffered gets now.
+     */
+    public void flush() {
+        batcher.flush();
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    static boolean canBatch(GetRequest request) {
+        FetchSourceContext fetchSourceContext = request.fetchSourceContext();
+        return request.routing() == null
+                && request.version() == Versions.MATCH_ANY
+                && !request.refresh()
+                && (fetchSourceContext == null || !fetchSourceContext.transformSource());
+    }
+
+    private void send(List<PendingGet> gets) {
+        // the preference and realtime flag are for the whole multi get
+        Map<String, Map<String, List<PendingGet>>> batches = new LinkedHashMap<>();
+        for (PendingGet get : gets) {
+            String batchKey = get.request.preference() + '\0' + get.request.realtime();
+            Map<String, List<PendingGet>> batch = batches.get(batchKey);
+            if (batch == null) {
+                batch = new LinkedHashMap<>();
+                batches.put(batchKey, batch);
+            }
+            String documentKey = documentKey(get.request);
+            List<PendingGet> sameDocument = batch.get(documentKey);
+            if (sameDocument == null) {
+                sameDocument = new ArrayList<>();
+                batch.put(documentKey, sameDocument);
+            }
+            sameDocument.add(get);
+        }
+        for (Map<String, List<PendingGet>> batch : batches.values()) {
+            sendBatch(new ArrayList<>(batch.values()));
+        }
+    }
+
+    private void sendBatch(final List<List<PendingGet>> documents) {
+        if (documents.size() == 1 && documents.get(0).size() == 1) {
+            PendingGet get = documents.get(0).get(0);
+            getActionHandler.execute(get.request, get.listener);
+            return;
+        }
+        logger.debug("batching gets of {} documents", documents.size());
+        GetRequest first = documents.get(0).get(0).request;
+        MultiGetRequest multiGetRequest = new MultiGetRequest().preference(first.preference()).realtime(first.realtime());
+        for (List<PendingGet> sameDocument : documents) {
+            GetRequest request = sameDocument.get(0).request;
+            multiGetRequest.add(new MultiGetRequest.Item(request.index(), request.type(), request.id())
+                    .fields(request.fields())
+                    .fetchSourceContext(request.fetchSourceContext()));
+        }
+        multiGetActionHandler.execute(multiGetRequest, new ActionListener<MultiGetResponse>() {
+            @Override
+            public void onResponse(MultiGetResponse response) {
+                List<Either<MultiGetResponseError, GetResponse>> items = new ArrayList<>();
+                for (Either<MultiGetResponseError, GetResponse> item : response.all()) {
+                    items.add(item);
+                }
+                for (int i = 0; i < documents.size(); i++) {
+                    for (PendingGet get : documents.get(i)) {
+                        if (i >= items.size()) {
+                            get.listener.onFailure(new IllegalStateException("no response for the get in the multi get"));
+                        } else if (items.get(i).isLeft()) {
+                            // a plain get fails with the same error but a meaningful status code
+                            getActionHandler.execute(get.request, get.listener);
+                        } else if (!items.get(i).right().isFound()) {
+                            get.listener.onFailure(notFound(items.get(i).right()));
+                        } else {
+                            get.listener.onResponse(items.get(i).right());
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                for (List<PendingGet> sameDocument : documents) {
+                    for (PendingGet get : sameDocument) {
+                        get.listener.onFailure(e);
+                    }
+                }
+            }
+        });
+    }
+
+    private static String documentKey(GetRequest request) {
+        StringBuilder key = new StringBuilder()
+                .append(request.index()).append('\0')
+                .append(request.type()).append('\0')
+                .append(request.id()).append('\0')
+                .append(Arrays.toString(request.fields()));
+        FetchSourceContext fetchSourceContext = request.fetchSourceContext();
+        if (fetchSourceContext != null) {
+            key.append('\0').append(fetchSourceContext.fetchSource())
+                    .append(Arrays.toString(fetchSourceContext.includes()))
+                    .append(Arrays.toString(fetchSourceContext.excludes()));
+        }
+        return key.toString();
+    }
+
+    // the same error as the 404 of a plain get
+    private static ElasticsearchHttpException notFound(GetResponse response) {
+        return new ElasticsearchHttpException("{\"_index\":\"" + response.getIndex() + "\",\"_type\":\"" + response.getType()
+                + "\",\"_id\":\"" + response.getId() + "\",\"found\":false}", 404);
+    }
+
+    private static class PendingGet {
+        private final GetRequest request;
+        private final ActionListener<GetResponse> listener;
+
+        private PendingGet(GetRequest request, ActionListener<GetResponse> listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.obourgain.elasticsearch.http.handler.document.index;
 
-import java.net.URLEncoder;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.index.IndexAction;
 import org.elasticsearch.action.index.IndexRequest;
@@ -12,7 +11,6 @@ import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
-import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -46,7 +44,7 @@ public class IndexActionHandler {
                 uriBuilder = new RequestUriBuilder(request.index(), request.type());
             } else {
                 method = "PUT";
-                uriBuilder = new RequestUriBuilder(request.index(), request.type(), URLEncoder.encode(request.id(), Charsets.UTF_8.displayName()));
+                uriBuilder = new RequestUriBuilder(request.index(), request.type(), RequestUriBuilder.encode(request.id()));
             }
 
             if (request.version() != Versions.MATCH_ANY) {
@@ -70,18 +70,7 @@ public class MoreLikeThisActionHandler {
                 uriBuilder.addQueryParameter("include", request.include());
             }
             uriBuilder.addQueryParameterArrayAsCommaDelimitedIfNotNullNorEmpty("mlt_fields", request.fields());
-            switch (request.searchType()) {
-                case COUNT:
-                case QUERY_AND_FETCH:
-                case QUERY_THEN_FETCH:
-                case DFS_QUERY_AND_FETCH:
-                case DFS_QUERY_THEN_FETCH:
-                case SCAN:
-                    uriBuilder.addQueryParameter("search_type", request.searchType().name().toLowerCase());
-                    break;
-                default:
-                    throw new IllegalStateException("search_type " + request.searchType() + " is not supported");
-            }
+            uriBuilder.addSearchType(request.searchType());
 
             uriBuilder.addIndicesOptions(request.indicesOptions());
 
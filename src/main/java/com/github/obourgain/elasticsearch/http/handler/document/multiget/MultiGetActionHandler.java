@@ -6,11 +6,11 @@ import org.elasticsearch.action.get.GetAction;
 import org.elasticsearch.action.get.MultiGetRequest;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
@@ -19,6 +19,7 @@ import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 /**
@@ -48,27 +49,35 @@ public class MultiGetActionHandler {
             uriBuilder.addQueryParameterIfNotNull("refresh", request.refresh());
             uriBuilder.addQueryParameterIfNotNull("realtime", request.realtime());
 
-            XContentBuilder builder = XContentFactory.jsonBuilder();
+            final ContentType contentType = httpClient.getContentType();
+            XContentBuilder builder = contentType.builder();
             builder.startObject().field("docs").startArray();
             for (MultiGetRequest.Item item : request.getItems()) {
                 writeItem(builder, item);
             }
             builder.endArray().endObject();
 
-            httpClient.getHttpClient().submit(HttpClientRequest.createPost(uriBuilder.toString())
-                    .withContent(builder.bytes().toBytes()))
-                    .flatMap(ErrorHandler.AS_FUNC)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<MultiGetResponse>>() {
-                        @Override
-                        public Observable<MultiGetResponse> call(HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<MultiGetResponse>>() {
+            final String uri = uriBuilder.toString();
+            final byte[] body = builder.bytes().toBytes();
+            Observable<MultiGetResponse> multiGet = Observable.defer(new Func0<Observable<MultiGetResponse>>() {
+                @Override
+                public Observable<MultiGetResponse> call() {
+                    return httpClient.getHttpClient().submit(contentType.withContentType(HttpClientRequest.<ByteBuf>createPost(uri)).withContent(body))
+                            .flatMap(ErrorHandler.AS_FUNC)
+                            .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<MultiGetResponse>>() {
                                 @Override
-                                public Observable<MultiGetResponse> call(ByteBuf byteBuf) {
-                                    return MultiGetResponse.parse(byteBuf);
+                                public Observable<MultiGetResponse> call(HttpClientResponse<ByteBuf> response) {
+                                    return response.getContent().flatMap(new Func1<ByteBuf, Observable<MultiGetResponse>>() {
+                                        @Override
+                                        public Observable<MultiGetResponse> call(ByteBuf byteBuf) {
+                                            return MultiGetResponse.parse(byteBuf);
+                                        }
+                                    });
                                 }
                             });
-                        }
-                    })
+                }
+            });
+            httpClient.getHedgingPolicy().hedge("multi_get", multiGet)
                     .single()
                     .subscribe(new ListenerCompleterObserver<>(listener));
 
@@ -13,7 +13,15 @@ import rx.Observable;
 
 public class MultiGetResponse {
 
-    private Eithers<MultiGetResponseError, GetResponse> docs = new Eithers<>();
+    private Eithers<MultiGetResponseError, GetResponse> docs;
+
+    public MultiGetResponse() {
+        this(new Eithers<MultiGetResponseError, GetResponse>());
+    }
+
+    public MultiGetResponse(Eithers<MultiGetResponseError, GetResponse> docs) {
+        this.docs = docs;
+    }
 
     public List<MultiGetResponseError> errors() {
         return docs.lefts();
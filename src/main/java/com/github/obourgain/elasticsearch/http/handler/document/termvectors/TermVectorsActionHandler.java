@@ -1,6 +1,5 @@
 package com.github.obourgain.elasticsearch.http.handler.document.termvectors;
 
-import java.net.URLEncoder;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.termvector.TermVectorAction;
 import org.elasticsearch.action.termvector.TermVectorRequest;
@@ -10,7 +9,6 @@ import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
-import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -37,7 +35,7 @@ public class TermVectorsActionHandler {
     public void execute(TermVectorRequest request, final ActionListener<TermVectorResponse> listener) {
         logger.debug("term vector request {}", request);
         try {
-            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), URLEncoder.encode(request.id(), Charsets.UTF_8.displayName()))
+            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), RequestUriBuilder.encode(request.id()))
                     .addEndpoint("_termvector");
 
             uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
@@ -1,6 +1,5 @@
 package com.github.obourgain.elasticsearch.http.handler.document.update;
 
-import java.net.URLEncoder;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
 import org.elasticsearch.action.update.UpdateAction;
@@ -12,7 +11,6 @@ import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
-import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -40,7 +38,7 @@ public class UpdateActionHandler {
         // TODO scripted_upsert
         logger.debug("update request {}", request);
         try {
-            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), URLEncoder.encode(request.id(), Charsets.UTF_8.displayName())).addEndpoint("_update");
+            RequestUriBuilder uriBuilder = new RequestUriBuilder(request.index(), request.type(), RequestUriBuilder.encode(request.id())).addEndpoint("_update");
 
 
             buildRequest(request, uriBuilder);
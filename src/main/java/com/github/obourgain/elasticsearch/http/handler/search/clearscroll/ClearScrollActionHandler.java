@@ -37,23 +37,7 @@ public class ClearScrollActionHandler {
     public void execute(ClearScrollRequest request, final ActionListener<ClearScrollResponse> listener) {
         logger.debug("clear scroll request {}", request);
         try {
-            RequestUriBuilder uriBuilder = new RequestUriBuilder()
-                    .addEndpoint("_search/scroll");
-
-            uriBuilder.addQueryParameter("scroll_id", Strings.collectionToCommaDelimitedString(request.getScrollIds()));
-            httpClient.getHttpClient().submit(HttpClientRequest.createDelete(uriBuilder.toString()))
-                    .flatMap(HANDLES_404)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<ClearScrollResponse>>() {
-                        @Override
-                        public Observable<ClearScrollResponse> call(final HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<ClearScrollResponse>>() {
-                                @Override
-                                public Observable<ClearScrollResponse> call(ByteBuf byteBuf) {
-                                    return ClearScrollResponse.parse(response.getStatus().code());
-                                }
-                            });
-                        }
-                    })
+            clear(request)
                     .single()
                     .subscribe(new ListenerCompleterObserver<>(listener));
         } catch (Exception e) {
@@ -61,4 +45,27 @@ public class ClearScrollActionHandler {
         }
     }
 
+    /**
+     * Clears the scrolls on subscription.
+     */
+    public Observable<ClearScrollResponse> clear(ClearScrollRequest request) {
+        RequestUriBuilder uriBuilder = new RequestUriBuilder()
+                .addEndpoint("_search/scroll");
+
+        uriBuilder.addQueryParameter("scroll_id", Strings.collectionToCommaDelimitedString(request.getScrollIds()));
+        return httpClient.getHttpClient().submit(HttpClientRequest.createDelete(uriBuilder.toString()))
+                .flatMap(HANDLES_404)
+                .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<ClearScrollResponse>>() {
+                    @Override
+                    public Observable<ClearScrollResponse> call(final HttpClientResponse<ByteBuf> response) {
+                        return response.getContent().flatMap(new Func1<ByteBuf, Observable<ClearScrollResponse>>() {
+                            @Override
+                            public Observable<ClearScrollResponse> call(ByteBuf byteBuf) {
+                                return ClearScrollResponse.parse(response.getStatus().code());
+                            }
+                        });
+                    }
+                });
+    }
+
 }
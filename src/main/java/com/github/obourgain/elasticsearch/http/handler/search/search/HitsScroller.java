@@ -0,0 +1,372 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import static com.github.obourgain.elasticsearch.http.request.HttpRequestUtils.indicesOrAll;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.buffer.ByteBufBytesReference;
+import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import com.github.obourgain.elasticsearch.http.handler.search.clearscroll.ClearScrollActionHandler;
+import com.github.obourgain.elasticsearch.http.handler.search.clearscroll.ClearScrollResponse;
+import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
+import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
+import io.netty.buffer.ByteBuf;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+import io.reactivex.netty.protocol.http.client.HttpClientResponse;
+import rx.Observable;
+import rx.Observer;
+import rx.Producer;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.subscriptions.SerialSubscription;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * Emits all the hits of a scroll, fetching the next pages while the current one is consumed.
+ * <p>
+ * At most {@code prefetch} pages are fetched ahead of the one consumed, and no more while the subscriber does not
+ * request hits. The scroll is cleared on completion, error or unsubscription.
+ *
+ * @author olivier bourgain
+ */
+public class HitsScroller {
+
+    private static final Logger logger = LoggerFactory.getLogger(HitsScroller.class);
+
+    public static final int DEFAULT_PREFETCH = 2;
+    public static final TimeValue DEFAULT_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    private final HttpClient httpClient;
+    private final SearchActionHandler searchActionHandler;
+    private final SearchScrollActionHandler searchScrollActionHandler;
+    private final ClearScrollActionHandler clearScrollActionHandler;
+
+    public HitsScroller(HttpClient httpClient, SearchActionHandler searchActionHandler, SearchScrollActionHandler searchScrollActionHandler, ClearScrollActionHandler clearScrollActionHandler) {
+        this.httpClient = httpClient;
+        this.searchActionHandler = searchActionHandler;
+        this.searchScrollActionHandler = searchScrollActionHandler;
+        this.clearScrollActionHandler = clearScrollActionHandler;
+    }
+
+    /**
+     * @param request the search, with a scroll keep alive or {@link #DEFAULT_KEEP_ALIVE} is used, and possibly a scan
+     *                search type, left untouched
+     * @param prefetch the number of pages to fetch ahead
+     */
+    public Observable<Hit> scrollAll(SearchRequest searchRequest, final int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("prefetch must be at least 1 but was " + prefetch);
+        }
+        final SearchRequest request = new SearchRequest(searchRequest, searchRequest);
+        if (request.scroll() == null) {
+            request.scroll(DEFAULT_KEEP_ALIVE);
+        }
+        return Observable.create(new Observable.OnSubscribe<Hit>() {
+            @Override
+            public void call(Subscriber<? super Hit> child) {
+                final Scroll scroll = new Scroll(child, request, prefetch);
+                child.add(scroll.fetch);
+                child.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        scroll.clear();
+                    }
+                }));
+                child.setProducer(scroll);
+            }
+        });
+    }
+
+    /**
+     * Scrolls each shard separately, with a {@code _shards:} preference, and merges the hits of the scrolls.
+     * The shards are those of the indices of the request, or of all the indices.
+     *
+     * @param prefetch the number of pages to fetch ahead for each shard
+     * @param maxConcurrentShards the maximum number of shards scrolled at the same time
+     */
+    public Observable<Hit> scrollAllParallel(final SearchRequest request, final int prefetch, final int maxConcurrentShards) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("prefetch must be at least 1 but was " + prefetch);
+        }
+        if (maxConcurrentShards < 1) {
+            throw new IllegalArgumentException("maxConcurrentShards must be at least 1 but was " + maxConcurrentShards);
+        }
+        return searchShards(request)
+                .flatMap(new Func1<Set<Integer>, Observable<Hit>>() {
+                    @Override
+                    public Observable<Hit> call(Set<Integer> shards) {
+                        // the shards are spread on lanes, scrolled one after the other in each lane
+                        int lanes = Math.min(shards.size(), maxConcurrentShards);
+                        List<List<Observable<Hit>>> scrolls = new ArrayList<>(lanes);
+                        for (int i = 0; i < lanes; i++) {
+                            scrolls.add(new ArrayList<Observable<Hit>>());
+                        }
+                        int i = 0;
+                        for (Integer shard : shards) {
+                            scrolls.get(i++ % lanes).add(scrollAll(shardRequest(request, shard), prefetch));
+                        }
+                        List<Observable<Hit>> merged = new ArrayList<>(lanes);
+                        for (List<Observable<Hit>> lane : scrolls) {
+                            merged.add(Observable.concat(Observable.from(lane)));
+                        }
+                        return Observable.merge(merged);
+                    }
+                });
+    }
+
+    static SearchRequest shardRequest(SearchRequest request, int shard) {
+        String preference = "_shards:" + shard;
+        if (request.preference() != null) {
+            preference += ";" + request.preference();
+        }
+        return new SearchRequest(request, request).preference(preference);
+    }
+
+    /**
+     * @return the ids of the shards of the indices of the request
+     */
+    private Observable<Set<Integer>> searchShards(SearchRequest request) {
+        RequestUriBuilder uriBuilder = new RequestUriBuilder(indicesOrAll(request)).addEndpoint("_search_shards");
+        uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
+        uriBuilder.addIndicesOptions(request);
+        return httpClient.getHttpClient().submit(HttpClientRequest.createGet(uriBuilder.toString()))
+                .flatMap(ErrorHandler.AS_FUNC)
+                .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<Set<Integer>>>() {
+                    @Override
+                    public Observable<Set<Integer>> call(HttpClientResponse<ByteBuf> response) {
+                        return response.getContent().map(new Func1<ByteBuf, Set<Integer>>() {
+                            @Override
+                            public Set<Integer> call(ByteBuf byteBuf) {
+                                return parseShards(new ByteBufBytesReference(byteBuf));
+                            }
+                        });
+                    }
+                })
+                .single();
+    }
+
+    /*
+    parses something like :
+
+    {
+        "nodes" : { ... },
+        "shards" : [
+            [ { "index" : "the_index", "shard" : 0, "node" : "...", ... }, { ... replica ... } ],
+            ...
+        ]
+    }
+     */
+    @SuppressWarnings("unchecked")
+    static Set<Integer> parseShards(BytesReference content) {
+        try (XContentParser parser = XContentHelper.createParser(content)) {
+            Set<Integer> shards = new TreeSet<>();
+            List<Object> groups = (List<Object>) parser.map().get("shards");
+            if (groups == null) {
+                return shards;
+            }
+            for (Object group : groups) {
+                for (Object copy : (List<Object>) group) {
+                    shards.add(((Number) ((Map<String, Object>) copy).get("shard")).intValue());
+                }
+            }
+            return shards;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class Scroll implements Producer {
+
+        private final Subscriber<? super Hit> child;
+        private final SearchRequest request;
+        private final int prefetch;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Queue<List<Hit>> pages = new ConcurrentLinkedQueue<>();
+        private final SerialSubscription fetch = new SerialSubscription();
+        private final AtomicBoolean cleared = new AtomicBoolean();
+
+        // only one page is fetched at a time, so these are written by a single thread at a time
+        private volatile String scrollId;
+        private volatile boolean fetching;
+        private volatile boolean exhausted;
+        private volatile Throwable error;
+        private long received;
+
+        // only accessed in drain
+        private Iterator<Hit> current;
+        private boolean terminated;
+
+        private Scroll(Subscriber<? super Hit> child, SearchRequest request, int prefetch) {
+            this.child = child;
+            this.request = request;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                if (terminated || child.isUnsubscribed()) {
+                    return;
+                }
+                Throwable e = error;
+                if (e != null) {
+                    terminated = true;
+                    clear();
+                    child.onError(e);
+                    return;
+                }
+                while (requested.get() > 0) {
+                    if (current == null || !current.hasNext()) {
+                        List<Hit> page = pages.poll();
+                        if (page == null) {
+                            break;
+                        }
+                        current = page.iterator();
+                        continue;
+                    }
+                    child.onNext(current.next());
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                }
+                if (exhausted && (current == null || !current.hasNext()) && pages.isEmpty()) {
+                    terminated = true;
+                    clear();
+                    child.onCompleted();
+                    return;
+                }
+                if (!fetching && !exhausted && pages.size() < prefetch) {
+                    fetching = true;
+                    fetchNextPage();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void fetchNextPage() {
+            Observable<SearchResponse> page;
+            try {
+                if (scrollId == null) {
+                    page = searchActionHandler.search(request, AggregationSchema.EMPTY);
+                } else {
+                    page = searchScrollActionHandler.scroll(new SearchScrollRequest(scrollId).scroll(request.scroll()));
+                }
+            } catch (Exception e) {
+                page = Observable.error(e);
+            }
+            final boolean first = scrollId == null;
+            Subscription subscription = page.single().subscribe(new Observer<SearchResponse>() {
+
+                private SearchResponse response;
+
+                // the page is handled once the response is complete, unsubscribing before would abort the connection
+                @Override
+                public void onCompleted() {
+                    onPage(response, first);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    error = e;
+                    fetching = false;
+                    drain();
+                }
+
+                @Override
+                public void onNext(SearchResponse response) {
+                    this.response = response;
+                }
+            });
+            // the first search is left running on unsubscription, the scroll it opens is only known from its response
+            if (!first) {
+                fetch.set(subscription);
+            }
+        }
+
+        private void onPage(SearchResponse response, boolean first) {
+            if (response.getScrollId() != null) {
+                scrollId = response.getScrollId();
+            }
+            if (child.isUnsubscribed()) {
+                clear();
+                return;
+            }
+            List<Hit> hits = response.getHits().getHits();
+            received += hits.size();
+            // the first page of a scan has no hits
+            if (scrollId == null || received >= response.getHits().getTotal() || (hits.isEmpty() && !first)) {
+                exhausted = true;
+            }
+            if (!hits.isEmpty()) {
+                pages.offer(hits);
+            }
+            fetching = false;
+            drain();
+        }
+
+        private void clear() {
+            final String id = scrollId;
+            if (id == null || !cleared.compareAndSet(false, true)) {
+                return;
+            }
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(id);
+            clearScrollActionHandler.clear(clearScrollRequest).subscribe(new Observer<ClearScrollResponse>() {
+                @Override
+                public void onCompleted() {
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    logger.debug("failed to clear scroll {}", id, e);
+                }
+
+                @Override
+                public void onNext(ClearScrollResponse clearScrollResponse) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.Observable;
+import rx.Subscriber;
+
+/**
+ * Emits the hits of a search response as soon as they are complete, while the content of the response is still
+ * being received.
+ * <p>
+ * The chunks are scanned byte per byte to find the bounds of the elements of the hits.hits array, so only the bytes
+ * of the hit being received are kept between two chunks. Each complete hit is then parsed with the usual parser.
+ *
+ * @author olivier bourgain
+ */
+public class HitsStreamParser implements Observable.Operator<Hit, ByteBuf> {
+
+    private static final byte[] HITS = "hits".getBytes(Charsets.US_ASCII);
+
+    // the hits.hits array is at depth 3, the objects it contains are at depth 4
+    private static final int HITS_ARRAY_DEPTH = 3;
+    private static final int HIT_DEPTH = HITS_ARRAY_DEPTH + 1;
+
+    @Override
+    public Subscriber<? super ByteBuf> call(final Subscriber<? super Hit> child) {
+        return new Subscriber<ByteBuf>(child) {
+
+            private final Scanner scanner = new Scanner();
+
+            @Override
+            public void onNext(ByteBuf chunk) {
+                List<Hit> hits;
+                try {
+                    hits = scanner.feed(chunk);
+                } catch (Exception e) {
+                    onError(e);
+                    unsubscribe();
+                    return;
+                }
+                for (Hit hit : hits) {
+                    child.onNext(hit);
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                child.onError(e);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (scanner.depth != 0 || scanner.inHit) {
+                    child.onError(new IllegalStateException("search response ended before being complete"));
+                } else {
+                    child.onCompleted();
+                }
+            }
+        };
+    }
+
+    static class Scanner {
+
+        // tracks the keys of the enclosing objects only up to the depth of the hits array
+        private final byte[][] keys = new byte[HITS_ARRAY_DEPTH][];
+        private final byte[] currentString = new byte[HITS.length + 1];
+        private int currentStringLength;
+        private byte[] lastString;
+
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+        private boolean inHitsArray;
+        private boolean inHit;
+
+        // bytes of the current hit received with the previous chunks
+        private ByteBuf pending;
+
+        List<Hit> feed(ByteBuf chunk) throws IOException {
+            List<Hit> hits = null;
+            int start = chunk.readerIndex();
+            int end = chunk.writerIndex();
+            int hitStart = inHit ? start : -1;
+            for (int i = start; i < end; i++) {
+                byte b = chunk.getByte(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                        if (!inHit) {
+                            lastString = currentStringLength <= HITS.length ? Arrays.copyOf(currentString, currentStringLength) : null;
+                        }
+                    } else if (!inHit && currentStringLength < currentString.length) {
+                        currentString[currentStringLength++] = b;
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        currentStringLength = 0;
+                        break;
+                    case ':':
+                        if (depth > 0 && depth < HITS_ARRAY_DEPTH) {
+                            keys[depth] = lastString;
+                        }
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        if (depth == HITS_ARRAY_DEPTH && b == '[' && isHitsPath()) {
+                            inHitsArray = true;
+                        } else if (depth == HIT_DEPTH && b == '{' && inHitsArray) {
+                            inHit = true;
+                            hitStart = i;
+                        }
+                        break;
+                    case '}':
+                    case ']':
+                        if (depth == HIT_DEPTH && inHit) {
+                            inHit = false;
+                            if (hits == null) {
+                                hits = new ArrayList<>();
+                            }
+                            hits.add(parseHit(chunk, hitStart, i + 1));
+                        } else if (depth == HITS_ARRAY_DEPTH && inHitsArray) {
+                            inHitsArray = false;
+                        }
+                        depth--;
+                        if (depth < 0) {
+                            throw new IllegalStateException("unbalanced search response");
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (inHit) {
+                keep(chunk, hitStart, end);
+            }
+            return hits == null ? Collections.<Hit>emptyList() : hits;
+        }
+
+        private boolean isHitsPath() {
+            return Arrays.equals(keys[1], HITS) && Arrays.equals(keys[2], HITS);
+        }
+
+        private void keep(ByteBuf chunk, int from, int to) {
+            if (pending == null) {
+                pending = Unpooled.buffer(Math.max(256, (to - from) * 2));
+            }
+            // the chunk is released once consumed, copy the bytes
+            pending.writeBytes(chunk, from, to - from);
+        }
+
+        private Hit parseHit(ByteBuf chunk, int from, int to) throws IOException {
+            byte[] hitBytes;
+            if (pending != null && pending.isReadable()) {
+                hitBytes = new byte[pending.readableBytes() + to - from];
+                pending.readBytes(hitBytes, 0, pending.readableBytes());
+                chunk.getBytes(from, hitBytes, hitBytes.length - (to - from), to - from);
+            } else {
+                hitBytes = new byte[to - from];
+                chunk.getBytes(from, hitBytes);
+            }
+            try (XContentParser parser = JsonXContent.jsonXContent.createParser(hitBytes)) {
+                parser.nextToken();
+                return new Hit().parse(parser, new BytesArray(hitBytes));
+            } finally {
+                if (pending != null) {
+                    pending.clear();
+                }
+            }
+        }
+    }
+}
@@ -3,22 +3,26 @@ package com.github.obourgain.elasticsearch.http.handler.search.search;
 import static org.elasticsearch.action.search.SearchType.DEFAULT;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.MultiSearchRequest;
 import org.elasticsearch.action.search.SearchAction;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.client.HttpClient;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 /**
@@ -47,28 +51,42 @@ public class MultiSearchActionHandler {
             uriBuilder.addIndicesOptions(request.indicesOptions());
 
             // TODO convert lazily
+            // the sources are left in their own type, the nodes detect it for each search
+            final ContentType contentType = httpClient.getContentType().multiDocument();
             ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             for (SearchRequest searchRequest : request.requests()) {
-                writeHeader(searchRequest, outputStream);
-                outputStream.write(LINE_FEED);
+                writeHeader(searchRequest, contentType, outputStream);
+                outputStream.write(contentType.separator());
                 outputStream.write(searchRequest.source().toBytes());
-                outputStream.write(LINE_FEED);
+                outputStream.write(contentType.separator());
             }
 
-            httpClient.getHttpClient().submit(HttpClientRequest.createPost(uriBuilder.toString())
-                    .withContent(outputStream.toByteArray()))
-                    .flatMap(ErrorHandler.AS_FUNC)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<MultiSearchResponse>>() {
-                        @Override
-                        public Observable<MultiSearchResponse> call(HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<MultiSearchResponse>>() {
+            final String uri = uriBuilder.toString();
+            final byte[] body = outputStream.toByteArray();
+            final List<AggregationSchema> schemas = new ArrayList<>(request.requests().size());
+            for (SearchRequest searchRequest : request.requests()) {
+                schemas.add(AggregationSchema.fromRequest(searchRequest));
+            }
+            Observable<MultiSearchResponse> multiSearch = Observable.defer(new Func0<Observable<MultiSearchResponse>>() {
+                @Override
+                public Observable<MultiSearchResponse> call() {
+                    HttpClientRequest<ByteBuf> post = contentType.withContentType(HttpClientRequest.<ByteBuf>createPost(uri));
+                    return httpClient.getHttpClient().submit(httpClient.getCompression().withContent(post, body))
+                            .flatMap(ErrorHandler.AS_FUNC)
+                            .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<MultiSearchResponse>>() {
                                 @Override
-                                public Observable<MultiSearchResponse> call(ByteBuf byteBuf) {
-                                    return MultiSearchResponse.parse(byteBuf);
+                                public Observable<MultiSearchResponse> call(HttpClientResponse<ByteBuf> response) {
+                                    return response.getContent().flatMap(new Func1<ByteBuf, Observable<MultiSearchResponse>>() {
+                                        @Override
+                                        public Observable<MultiSearchResponse> call(ByteBuf byteBuf) {
+                                            return MultiSearchResponse.parse(byteBuf, schemas);
+                                        }
+                                    });
                                 }
                             });
-                        }
-                    })
+                }
+            });
+            httpClient.getHedgingPolicy().hedge("multi_search", multiSearch)
                     .single()
                     .subscribe(new ListenerCompleterObserver<>(listener));
         } catch (Exception e) {
@@ -76,8 +94,8 @@ public class MultiSearchActionHandler {
         }
     }
 
-    private void writeHeader(SearchRequest request, ByteArrayOutputStream outputStream) {
-        try (XContentBuilder builder = XContentFactory.jsonBuilder(outputStream)) {
+    private void writeHeader(SearchRequest request, ContentType contentType, ByteArrayOutputStream outputStream) {
+        try (XContentBuilder builder = contentType.builder(outputStream)) {
             builder.startObject();
             builder.field("index", request.indices());
             if(request.types() != null && request.types().length != 0) {
@@ -86,8 +104,9 @@ public class MultiSearchActionHandler {
             if(request.searchType() != DEFAULT) {
                 builder.field("search_type", request.searchType().name().toLowerCase());
             }
-            if(request.preference() != null) {
-                builder.field("preference", request.preference());
+            String preference = httpClient.getPreferencePolicy().preference(request);
+            if(preference != null) {
+                builder.field("preference", preference);
             }
             if(request.routing() != null) {
                 builder.field("routing", request.routing());
@@ -3,11 +3,14 @@ package com.github.obourgain.elasticsearch.http.handler.search.search;
 import static org.elasticsearch.common.xcontent.XContentParser.Token.START_ARRAY;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
 import com.github.obourgain.elasticsearch.http.buffer.ByteBufBytesReference;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
 import io.netty.buffer.ByteBuf;
 import lombok.Getter;
 import rx.Observable;
@@ -18,18 +21,39 @@ public class MultiSearchResponse {
     private List<SearchResponse> responses = new ArrayList<>();
 
     public static Observable<MultiSearchResponse> parse(ByteBuf byteBuf) {
-        return Observable.just(new MultiSearchResponse().parse(new ByteBufBytesReference(byteBuf)));
+        return parse(byteBuf, Collections.<AggregationSchema>emptyList());
+    }
+
+    /**
+     * @param aggregationSchemas the schemas of the aggregations of the searches, in the order of the searches, the
+     *                           responses without schema are parsed with {@link AggregationSchema#EMPTY}
+     */
+    public static Observable<MultiSearchResponse> parse(ByteBuf byteBuf, List<AggregationSchema> aggregationSchemas) {
+        BytesReference content = new ByteBufBytesReference(byteBuf.slice());
+        try (XContentParser parser = SearchResponse.createParser(byteBuf, content)) {
+            return Observable.just(new MultiSearchResponse().doParse(parser, content, aggregationSchemas));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     protected MultiSearchResponse parse(BytesReference bytesReference) {
         try (XContentParser parser = XContentHelper.createParser(bytesReference)) {
-            return doParse(parser);
+            return doParse(parser, bytesReference);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     protected MultiSearchResponse doParse(XContentParser parser) throws IOException {
+        return doParse(parser, null);
+    }
+
+    protected MultiSearchResponse doParse(XContentParser parser, @Nullable BytesReference content) throws IOException {
+        return doParse(parser, content, Collections.<AggregationSchema>emptyList());
+    }
+
+    protected MultiSearchResponse doParse(XContentParser parser, @Nullable BytesReference content, List<AggregationSchema> aggregationSchemas) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
@@ -37,19 +61,21 @@ public class MultiSearchResponse {
                 currentFieldName = parser.currentName();
             } else if (token == XContentParser.Token.START_ARRAY) {
                 if ("responses".equals(currentFieldName)) {
-                    parseResponses(parser);
+                    parseResponses(parser, content, aggregationSchemas);
                 }
             }
         }
         return this;
     }
 
-    protected void parseResponses(XContentParser parser) throws IOException {
+    protected void parseResponses(XContentParser parser, @Nullable BytesReference content, List<AggregationSchema> aggregationSchemas) throws IOException {
         assert parser.currentToken() == START_ARRAY : "expected a START_ARRAY token but was " + parser.currentToken();
         XContentParser.Token token;
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                responses.add(new SearchResponse().parse(parser));
+                int i = responses.size();
+                AggregationSchema aggregationSchema = i < aggregationSchemas.size() ? aggregationSchemas.get(i) : AggregationSchema.EMPTY;
+                responses.add(new SearchResponse().parse(parser, content, aggregationSchema));
             } else {
                 throw new IllegalStateException("Parse failure, expected a START_OBJECT, got " + parser.currentToken() + " " + parser.currentName());
             }
@@ -4,17 +4,24 @@ import static com.github.obourgain.elasticsearch.http.request.HttpRequestUtils.i
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchAction;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.client.ContentType;
 import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import com.github.obourgain.elasticsearch.http.client.SelectiveAggregationConfigurator;
 import com.github.obourgain.elasticsearch.http.concurrent.ListenerCompleterObserver;
 import com.github.obourgain.elasticsearch.http.request.RequestUriBuilder;
 import com.github.obourgain.elasticsearch.http.response.ErrorHandler;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
 
 /**
@@ -25,6 +32,8 @@ public class SearchActionHandler {
     private static final Logger logger = LoggerFactory.getLogger(SearchActionHandler.class);
 
     private final HttpClient httpClient;
+    @Nullable
+    private volatile SearchResponseCache responseCache;
 
     public SearchActionHandler(HttpClient httpClient) {
         this.httpClient = httpClient;
@@ -34,53 +43,140 @@ public class SearchActionHandler {
         return SearchAction.INSTANCE;
     }
 
-    public void execute(SearchRequest request, final ActionListener<SearchResponse> listener) {
+    /**
+     * @param responseCache the cache of the responses, or null to disable caching
+     */
+    public void setResponseCache(@Nullable SearchResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Nullable
+    public SearchResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public void execute(SearchRequest request, ActionListener<SearchResponse> listener) {
+        execute(request, null, listener);
+    }
+
+    /**
+     * @param schema how to parse the aggregations, read from the request if null
+     */
+    public void execute(final SearchRequest request, @Nullable AggregationSchema schema, final ActionListener<SearchResponse> listener) {
         logger.debug("search request {}", request);
         try {
-            RequestUriBuilder uriBuilder;
-            if (request.types() != null && request.types().length > 0) {
-                uriBuilder = new RequestUriBuilder(indicesOrAll(request), Strings.arrayToCommaDelimitedString(request.types()));
-            } else {
-                uriBuilder = new RequestUriBuilder(indicesOrAll(request));
+            Observable<SearchResponse> search = search(request, schema);
+            // a hedged scroll would open a second scroll context
+            if (request.scroll() == null) {
+                search = httpClient.getHedgingPolicy().hedge("search", search);
             }
-            uriBuilder.addEndpoint("_search");
-
-            // for search requests, this can be a String[] but the SearchRequests does the conversion to comma delimited string
-            uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
-            uriBuilder.addQueryParameterIfNotNull("preference", request.preference());
-            uriBuilder.addQueryParameterIfNotNull("query_cache", request.queryCache());
+            search.single()
+                    .subscribe(new ListenerCompleterObserver<>(listener));
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
 
-            uriBuilder.addSearchType(request.searchType());
+    /**
+     * Executes the search on subscription.
+     *
+     * @param schema how to parse the aggregations, read from the request if null
+     */
+    public Observable<SearchResponse> search(final SearchRequest request, @Nullable AggregationSchema schema) {
+        final AggregationSchema aggregationSchema = schema != null ? schema : AggregationSchema.fromRequest(request);
+        final SearchResponseCache cache = responseCache;
+        final String cacheKey = cache != null ? SearchResponseCache.key(request) : null;
+        return Observable.defer(new Func0<Observable<SearchResponse>>() {
+            @Override
+            public Observable<SearchResponse> call() {
+                if (cacheKey != null) {
+                    BytesReference cached = cache.get(cacheKey);
+                    if (cached != null) {
+                        return Observable.just(new SearchResponse().parse(cached, aggregationSchema));
+                    }
+                }
+                // read before the search is sent, to drop its response if the cache is invalidated in the meantime
+                final long startSequence = cache != null ? cache.sequence() : 0;
+                return submit(request, false)
+                        .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<SearchResponse>>() {
+                            @Override
+                            public Observable<SearchResponse> call(HttpClientResponse<ByteBuf> response) {
+                                return response.getContent().flatMap(new Func1<ByteBuf, Observable<SearchResponse>>() {
+                                    @Override
+                                    public Observable<SearchResponse> call(ByteBuf byteBuf) {
+                                        if (cacheKey == null) {
+                                            return SearchResponse.parse(byteBuf, aggregationSchema);
+                                        }
+                                        BytesReference bytes = SearchResponse.copy(byteBuf);
+                                        SearchResponse searchResponse = new SearchResponse().parse(bytes, aggregationSchema);
+                                        // a partial response would be served until it expires
+                                        if (!searchResponse.isTimedOut() && searchResponse.getShards().getFailed() == 0) {
+                                            cache.put(cacheKey, request, bytes, startSequence);
+                                        }
+                                        return Observable.just(searchResponse);
+                                    }
+                                });
+                            }
+                        });
+            }
+        });
+    }
 
-            if (request.scroll() != null) {
-                uriBuilder.addQueryParameter("scroll", request.scroll().keepAlive().toString());
+    /**
+     * Executes the search and emits the hits as they are received, without waiting for the whole response.
+     * The other parts of the response are ignored.
+     */
+    public Observable<Hit> streamHits(final SearchRequest request) {
+        logger.debug("search request {}", request);
+        return Observable.defer(new Func0<Observable<Hit>>() {
+            @Override
+            public Observable<Hit> call() {
+                return submit(request, true)
+                        .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<Hit>>() {
+                            @Override
+                            public Observable<Hit> call(HttpClientResponse<ByteBuf> response) {
+                                return response.getContent().lift(new HitsStreamParser());
+                            }
+                        });
             }
+        });
+    }
 
-            uriBuilder.addIndicesOptions(request);
+    private Observable<HttpClientResponse<ByteBuf>> submit(SearchRequest request, boolean streamResponse) {
+        RequestUriBuilder uriBuilder;
+        if (request.types() != null && request.types().length > 0) {
+            uriBuilder = new RequestUriBuilder(indicesOrAll(request), Strings.arrayToCommaDelimitedString(request.types()));
+        } else {
+            uriBuilder = new RequestUriBuilder(indicesOrAll(request));
+        }
+        uriBuilder.addEndpoint("_search");
 
-            HttpClientRequest<ByteBuf> get = HttpClientRequest.createPost(uriBuilder.toString());
-            if (request.source() != null) {
-                get.withContent(request.source().toBytes());
-            }
+        // for search requests, this can be a String[] but the SearchRequests does the conversion to comma delimited string
+        uriBuilder.addQueryParameterIfNotNull("routing", request.routing());
+        uriBuilder.addQueryParameterIfNotNull("preference", httpClient.getPreferencePolicy().preference(request));
+        uriBuilder.addQueryParameterIfNotNull("query_cache", request.queryCache());
 
-            httpClient.getHttpClient().submit(get)
-                    .flatMap(ErrorHandler.AS_FUNC)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<SearchResponse>>() {
-                        @Override
-                        public Observable<SearchResponse> call(HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<SearchResponse>>() {
-                                @Override
-                                public Observable<SearchResponse> call(ByteBuf byteBuf) {
-                                    return SearchResponse.parse(byteBuf);
-                                }
-                            });
-                        }
-                    })
-                    .single()
-                    .subscribe(new ListenerCompleterObserver<>(listener));
-        } catch (Exception e) {
-            listener.onFailure(e);
+        uriBuilder.addSearchType(request.searchType());
+
+        if (request.scroll() != null) {
+            uriBuilder.addQueryParameter("scroll", request.scroll().keepAlive().toString());
+        }
+
+        uriBuilder.addIndicesOptions(request);
+
+        HttpClientRequest<ByteBuf> get = HttpClientRequest.createPost(uriBuilder.toString());
+        // the hits are streamed from JSON only
+        ContentType contentType = streamResponse ? ContentType.json() : httpClient.getContentType();
+        contentType.withContentType(get);
+        if (request.source() != null) {
+            get.withContent(contentType.convert(request.source()).toBytes());
+        }
+        if (streamResponse) {
+            get.withHeader(SelectiveAggregationConfigurator.STREAM_RESPONSE_HEADER, "true");
         }
+
+        return httpClient.getHttpClient().submit(get)
+                .flatMap(ErrorHandler.AS_FUNC);
     }
 
 }
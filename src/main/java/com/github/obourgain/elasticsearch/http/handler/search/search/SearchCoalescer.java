@@ -0,0 +1,135 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.unit.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.github.obourgain.elasticsearch.http.concurrent.Batcher;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+/**
+ * Buffers the searches during a time window, or up to a number of searches, and sends them in one multi search.
+ * The items of the multi search response are then dispatched to the listener of each search.
+ * <p>
+ * The searches which can not be part of a multi search, like scrolls, templates or with indices options, are
+ * executed right away, as well as the searches whose response is in the cache of the search action handler.
+ * The multi search applies the preference and hedging policies of the client, and parses the aggregations of each
+ * search with the schema read from its request, but the responses of the coalesced searches are not cached.
+ *
+ * @author olivier bourgain
+ */
+public class SearchCoalescer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchCoalescer.class);
+
+    private static final IndicesOptions DEFAULT_INDICES_OPTIONS = new SearchRequest().indicesOptions();
+
+    private final SearchActionHandler searchActionHandler;
+    private final MultiSearchActionHandler multiSearchActionHandler;
+    private final Batcher<PendingSearch> batcher;
+
+    /**
+     * @param scheduler runs the flushes at the end of the windows, not shut down on close
+     */
+    public SearchCoalescer(SearchActionHandler searchActionHandler, MultiSearchActionHandler multiSearchActionHandler, ScheduledExecutorService scheduler, TimeValue window, int maxSearches) {
+        this.searchActionHandler = searchActionHandler;
+        this.multiSearchActionHandler = multiSearchActionHandler;
+        this.batcher = new Batcher<PendingSearch>(scheduler, window, maxSearches) {
+            @Override
+            protected void send(List<PendingSearch> searches) {
+                SearchCoalescer.this.send(searches);
+            }
+        };
+    }
+
+    public void execute(SearchRequest request, ActionListener<SearchResponse> listener) {
+        if (!canCoalesce(request) || isCached(request)) {
+            searchActionHandler.execute(request, listener);
+            return;
+        }
+        batcher.add(new PendingSearch(request, listener));
+    }
+
+    /**
+     * Sends the buffered searches now.
+     */
+    public void flush() {
+        batcher.flush();
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    static boolean canCoalesce(SearchRequest request) {
+        return request.scroll() == null
+                && request.source() != null
+                && request.templateSource() == null
+                && request.templateName() == null
+                && request.extraSource() == null
+                && request.queryCache() == null
+                && DEFAULT_INDICES_OPTIONS.equals(request.indicesOptions());
+    }
+
+    private boolean isCached(SearchRequest request) {
+        SearchResponseCache cache = searchActionHandler.getResponseCache();
+        if (cache == null) {
+            return false;
+        }
+        String key = SearchResponseCache.key(request);
+        return key != null && cache.get(key) != null;
+    }
+
+    private void send(final List<PendingSearch> searches) {
+        if (searches.size() == 1) {
+            searchActionHandler.execute(searches.get(0).request, searches.get(0).listener);
+            return;
+        }
+        logger.debug("coalescing {} searches", searches.size());
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        for (PendingSearch search : searches) {
+            multiSearchRequest.add(search.request);
+        }
+        multiSearchActionHandler.execute(multiSearchRequest, new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse response) {
+                List<SearchResponse> responses = response.getResponses();
+                for (int i = 0; i < searches.size(); i++) {
+                    ActionListener<SearchResponse> listener = searches.get(i).listener;
+                    if (i >= responses.size()) {
+                        listener.onFailure(new IllegalStateException("no response for the search in the multi search"));
+                    } else if (responses.get(i).getError() != null) {
+                        SearchResponse failed = responses.get(i);
+                        listener.onFailure(new ElasticsearchHttpException(failed.getError(), failed.getStatus()));
+                    } else {
+                        listener.onResponse(responses.get(i));
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                for (PendingSearch search : searches) {
+                    search.listener.onFailure(e);
+                }
+            }
+        });
+    }
+
+    private static class PendingSearch {
+        private final SearchRequest request;
+        private final ActionListener<SearchResponse> listener;
+
+        private PendingSearch(SearchRequest request, ActionListener<SearchResponse> listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.github.obourgain.elasticsearch.http.handler.search.search;
 
 import java.io.IOException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
 import com.github.obourgain.elasticsearch.http.buffer.ByteBufBytesReference;
 import com.github.obourgain.elasticsearch.http.response.entity.Hits;
 import com.github.obourgain.elasticsearch.http.response.entity.Shards;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
 import com.github.obourgain.elasticsearch.http.response.entity.aggs.Aggregations;
 import com.github.obourgain.elasticsearch.http.response.entity.suggest.Suggestions;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import lombok.Getter;
 import rx.Observable;
 
@@ -24,20 +29,74 @@ public class SearchResponse {
     private boolean terminatedEarly;
     private Aggregations aggregations;
     private Suggestions suggestions;
+    /**
+     * The error of a failed search of a multi search, else null.
+     */
+    private String error;
+    /**
+     * The status of a failed search of a multi search.
+     */
+    private int status = 500;
 
     public static Observable<SearchResponse> parse(ByteBuf byteBuf) {
-        return Observable.just(new SearchResponse().parse(new ByteBufBytesReference(byteBuf)));
+        return parse(byteBuf, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param aggregationSchema the types of the aggregations of the request, parsed straight to their final objects
+     */
+    public static Observable<SearchResponse> parse(ByteBuf byteBuf, AggregationSchema aggregationSchema) {
+        BytesReference content = new ByteBufBytesReference(byteBuf.slice());
+        try (XContentParser parser = createParser(byteBuf, content)) {
+            return Observable.just(new SearchResponse().parse(parser, content, aggregationSchema));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads the buffer in place, the hits copy their sources out of it. A direct buffer is read as a stream instead of
+     * being copied to an array first.
+     *
+     * @param content the readable bytes of the buffer
+     */
+    static XContentParser createParser(ByteBuf byteBuf, BytesReference content) throws IOException {
+        if (byteBuf.hasArray()) {
+            return XContentHelper.createParser(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        }
+        return XContentFactory.xContent(content).createParser(new ByteBufInputStream(byteBuf.duplicate()));
+    }
+
+    /**
+     * Copies the response out of the buffer, which is released once parsed, to keep it.
+     */
+    static BytesReference copy(ByteBuf byteBuf) {
+        byte[] bytes = new byte[byteBuf.readableBytes()];
+        byteBuf.getBytes(byteBuf.readerIndex(), bytes);
+        return new BytesArray(bytes);
     }
 
     protected SearchResponse parse(BytesReference bytesReference) {
+        return parse(bytesReference, AggregationSchema.EMPTY);
+    }
+
+    protected SearchResponse parse(BytesReference bytesReference, AggregationSchema aggregationSchema) {
         try (XContentParser parser = XContentHelper.createParser(bytesReference)) {
-            return parse(parser);
+            return parse(parser, bytesReference, aggregationSchema);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     protected SearchResponse parse(XContentParser parser) throws IOException {
+        return parse(parser, null);
+    }
+
+    protected SearchResponse parse(XContentParser parser, @Nullable BytesReference content) throws IOException {
+        return parse(parser, content, AggregationSchema.EMPTY);
+    }
+
+    protected SearchResponse parse(XContentParser parser, @Nullable BytesReference content, AggregationSchema aggregationSchema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
@@ -52,6 +111,10 @@ public class SearchResponse {
                     scrollId = parser.text();
                 } else if ("terminated_early".equals(currentFieldName)) {
                     terminatedEarly = parser.booleanValue();
+                } else if ("error".equals(currentFieldName)) {
+                    error = parser.text();
+                } else if ("status".equals(currentFieldName)) {
+                    status = parser.intValue();
                 } else {
                     throw new IllegalStateException("unknown field " + currentFieldName);
                 }
@@ -59,11 +122,11 @@ public class SearchResponse {
                 if ("_shards".equals(currentFieldName)) {
                     shards = new Shards().parse(parser);
                 } else if ("hits".equals(currentFieldName)) {
-                    hits = new Hits().parse(parser);
+                    hits = new Hits().parse(parser, content);
                 } else if ("suggest".equals(currentFieldName)) {
                     suggestions = Suggestions.parse(parser);
                 } else if ("aggregations".equals(currentFieldName)) {
-                    aggregations = Aggregations.parse(parser);
+                    aggregations = Aggregations.parse(parser, aggregationSchema);
                 }
             }
         }
@@ -0,0 +1,176 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Caches the bytes of the search responses, keyed by a hash of the indices, types, search type, routing, preference,
+ * indices options and source of the requests. The responses are parsed again on each hit, so that the callers do not
+ * share them.
+ * <p>
+ * The cache is bounded by the size of the responses and their time to live. Nothing is invalidated automatically,
+ * {@link #invalidate(String)} must be called with the names used in the requests, e.g. an alias rather than the index
+ * behind it. The response of a search sent before an invalidation is not cached, as it may be stale.
+ *
+ * @author olivier bourgain
+ */
+public class SearchResponseCache {
+
+    private final Cache<String, CachedResponse> responses;
+    private final long maxBytes;
+    // incremented by each invalidation
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SearchResponseCache(ByteSizeValue maxSize, TimeValue timeToLive) {
+        this.maxBytes = maxSize.bytes();
+        this.responses = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize.bytes())
+                .weigher(new Weigher<String, CachedResponse>() {
+                    @Override
+                    public int weigh(String key, CachedResponse value) {
+                        return value.bytes.length();
+                    }
+                })
+                .expireAfterWrite(timeToLive.millis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * @return the key of the request, or null if its response can not be cached, like the first page of a scroll
+     */
+    @Nullable
+    public static String key(SearchRequest request) {
+        if (request.scroll() != null || request.templateSource() != null || request.templateName() != null) {
+            return null;
+        }
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putStrings(hasher, request.indices());
+        putStrings(hasher, request.types());
+        hasher.putInt(request.searchType().id());
+        putString(hasher, request.routing());
+        putString(hasher, request.preference());
+        putIndicesOptions(hasher, request.indicesOptions());
+        putBytes(hasher, request.source());
+        putBytes(hasher, request.extraSource());
+        return hasher.hash().toString();
+    }
+
+    @Nullable
+    public BytesReference get(String key) {
+        CachedResponse cached = responses.getIfPresent(key);
+        return cached == null ? null : cached.bytes;
+    }
+
+    /**
+     * @return the sequence number of the last invalidation, to be read before sending the search and given to
+     * {@link #put(String, SearchRequest, BytesReference, long)}
+     */
+    public long sequence() {
+        return sequence.get();
+    }
+
+    /**
+     * @param startSequence the {@link #sequence()} read before sending the search, the response is not cached if an
+     *                      invalidation ran since
+     */
+    public void put(String key, SearchRequest request, BytesReference bytes, long startSequence) {
+        if (bytes.length() > maxBytes) {
+            // would evict all the other responses
+            return;
+        }
+        if (sequence.get() != startSequence) {
+            return;
+        }
+        CachedResponse response = new CachedResponse(request.indices(), bytes);
+        responses.put(key, response);
+        if (sequence.get() != startSequence) {
+            // invalidated while it was put
+            responses.asMap().remove(key, response);
+        }
+    }
+
+    /**
+     * Invalidates the responses of the searches on the index, and of the searches on all indices.
+     */
+    public void invalidate(String index) {
+        sequence.incrementAndGet();
+        for (Iterator<Map.Entry<String, CachedResponse>> iterator = responses.asMap().entrySet().iterator(); iterator.hasNext(); ) {
+            String[] indices = iterator.next().getValue().indices;
+            if (indices == null || indices.length == 0 || Arrays.asList(indices).contains(index) || Arrays.asList(indices).contains("_all")) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        sequence.incrementAndGet();
+        responses.invalidateAll();
+    }
+
+    public long size() {
+        return responses.size();
+    }
+
+    private static void putStrings(Hasher hasher, @Nullable String[] strings) {
+        if (strings != null) {
+            for (String string : strings) {
+                putString(hasher, string);
+            }
+        }
+        hasher.putInt(0);
+    }
+
+    private static void putString(Hasher hasher, @Nullable String string) {
+        if (string != null) {
+            hasher.putString(string, Charsets.UTF_8);
+        }
+        hasher.putInt(0);
+    }
+
+    private static void putIndicesOptions(Hasher hasher, IndicesOptions indicesOptions) {
+        hasher.putBoolean(indicesOptions.ignoreUnavailable())
+                .putBoolean(indicesOptions.allowNoIndices())
+                .putBoolean(indicesOptions.expandWildcardsOpen())
+                .putBoolean(indicesOptions.expandWildcardsClosed())
+                .putBoolean(indicesOptions.forbidClosedIndices())
+                .putBoolean(indicesOptions.allowAliasesToMultipleIndices());
+    }
+
+    private static void putBytes(Hasher hasher, @Nullable BytesReference bytes) {
+        if (bytes != null) {
+            hasher.putInt(bytes.length());
+            if (bytes.hasArray()) {
+                hasher.putBytes(bytes.array(), bytes.arrayOffset(), bytes.length());
+            } else {
+                hasher.putBytes(bytes.toBytes());
+            }
+        } else {
+            hasher.putInt(-1);
+        }
+    }
+
+    private static class CachedResponse {
+        private final String[] indices;
+        private final BytesReference bytes;
+
+        private CachedResponse(String[] indices, BytesReference bytes) {
+            this.indices = indices;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -36,32 +36,7 @@ public class SearchScrollActionHandler {
     public void execute(SearchScrollRequest request, final ActionListener<SearchResponse> listener) {
         logger.debug("Search scroll request {}", request);
         try {
-            ActionRequestValidationException validation = request.validate();
-            if(validation != null && !validation.validationErrors().isEmpty()) {
-                throw validation;
-            }
-
-            RequestUriBuilder uriBuilder = new RequestUriBuilder()
-                    .addEndpoint("_search/scroll");
-
-            if (request.scroll() != null) {
-                uriBuilder.addQueryParameter("scroll", request.scroll().keepAlive().toString());
-            }
-            uriBuilder.addQueryParameter("scroll_id", request.scrollId());
-
-            httpClient.getHttpClient().submit(HttpClientRequest.createGet(uriBuilder.toString()))
-                    .flatMap(ErrorHandler.AS_FUNC)
-                    .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<SearchResponse>>() {
-                        @Override
-                        public Observable<SearchResponse> call(HttpClientResponse<ByteBuf> response) {
-                            return response.getContent().flatMap(new Func1<ByteBuf, Observable<SearchResponse>>() {
-                                @Override
-                                public Observable<SearchResponse> call(ByteBuf byteBuf) {
-                                    return SearchResponse.parse(byteBuf);
-                                }
-                            });
-                        }
-                    })
+            scroll(request)
                     .single()
                     .subscribe(new ListenerCompleterObserver<>(listener));
 
@@ -70,4 +45,36 @@ public class SearchScrollActionHandler {
         }
     }
 
+    /**
+     * Fetches the next page of the scroll on subscription.
+     */
+    public Observable<SearchResponse> scroll(SearchScrollRequest request) {
+        ActionRequestValidationException validation = request.validate();
+        if(validation != null && !validation.validationErrors().isEmpty()) {
+            throw validation;
+        }
+
+        RequestUriBuilder uriBuilder = new RequestUriBuilder()
+                .addEndpoint("_search/scroll");
+
+        if (request.scroll() != null) {
+            uriBuilder.addQueryParameter("scroll", request.scroll().keepAlive().toString());
+        }
+        uriBuilder.addQueryParameter("scroll_id", request.scrollId());
+
+        return httpClient.getHttpClient().submit(HttpClientRequest.createGet(uriBuilder.toString()))
+                .flatMap(ErrorHandler.AS_FUNC)
+                .flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<SearchResponse>>() {
+                    @Override
+                    public Observable<SearchResponse> call(HttpClientResponse<ByteBuf> response) {
+                        return response.getContent().flatMap(new Func1<ByteBuf, Observable<SearchResponse>>() {
+                            @Override
+                            public Observable<SearchResponse> call(ByteBuf byteBuf) {
+                                return SearchResponse.parse(byteBuf);
+                            }
+                        });
+                    }
+                });
+    }
+
 }
@@ -1,6 +1,9 @@
 package com.github.obourgain.elasticsearch.http.request;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.Collection;
+import java.util.Locale;
 import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.WriteConsistencyLevel;
 import org.elasticsearch.action.search.SearchType;
@@ -11,7 +14,14 @@ import org.elasticsearch.index.VersionType;
 
 public class RequestUriBuilder {
 
-    private StringBuilder builder = new StringBuilder();
+    // large enough for most uris, with a few query parameters
+    private static final int INITIAL_CAPACITY = 128;
+
+    private static final String[] SEARCH_TYPES = lowerCaseNames(SearchType.values());
+    private static final String[] VERSION_TYPES = lowerCaseNames(VersionType.values());
+    private static final String[] CONSISTENCY_LEVELS = lowerCaseNames(WriteConsistencyLevel.values());
+
+    private StringBuilder builder = new StringBuilder(INITIAL_CAPACITY);
     private boolean addedQueryParamSeparator = false;
 
     public RequestUriBuilder() {
@@ -145,7 +155,7 @@ public class RequestUriBuilder {
             case DFS_QUERY_AND_FETCH:
             case DFS_QUERY_THEN_FETCH:
             case SCAN:
-                addQueryParameter("search_type", searchType.name().toLowerCase());
+                addQueryParameter("search_type", SEARCH_TYPES[searchType.ordinal()]);
                 break;
             default:
                 throw new IllegalStateException("search_type " + searchType + " is not supported");
@@ -158,7 +168,7 @@ public class RequestUriBuilder {
             case EXTERNAL:
             case EXTERNAL_GTE:
             case FORCE:
-                addQueryParameter("version_type", versionType.name().toLowerCase());
+                addQueryParameter("version_type", VERSION_TYPES[versionType.ordinal()]);
                 break;
             case INTERNAL:
                 // noop
@@ -177,7 +187,7 @@ public class RequestUriBuilder {
             case ALL:
             case QUORUM:
             case ONE:
-                addQueryParameter("consistency", consistencyLevel.name().toLowerCase());
+                addQueryParameter("consistency", CONSISTENCY_LEVELS[consistencyLevel.ordinal()]);
                 break;
             default:
                 throw new IllegalStateException("consistency  " + consistencyLevel + " is not supported");
@@ -220,6 +230,37 @@ public class RequestUriBuilder {
         return this;
     }
 
+    /**
+     * Encodes like {@link URLEncoder} with UTF-8, but returns the value itself when there is nothing to encode, as for
+     * most ids.
+     */
+    public static String encode(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                try {
+                    return URLEncoder.encode(value, "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return value;
+    }
+
+    // the chars left as is by URLEncoder
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    private static String[] lowerCaseNames(Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (Enum<?> value : values) {
+            names[value.ordinal()] = value.name().toLowerCase(Locale.ROOT);
+        }
+        return names;
+    }
+
     private void addWithPathSeparatorBefore(String toAdd) {
         builder.append("/").append(toAdd);
     }
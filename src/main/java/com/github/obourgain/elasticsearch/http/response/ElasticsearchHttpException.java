@@ -28,6 +28,10 @@ public class ElasticsearchHttpException extends RuntimeException {
         this.statusCode = statusCode;
     }
 
+    public int getStatusCode() {
+        return statusCode;
+    }
+
     @Override
     public String getMessage() {
         return "status code " + statusCode + " " + super.getMessage();
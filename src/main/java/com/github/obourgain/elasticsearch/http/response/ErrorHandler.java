@@ -1,8 +1,13 @@
 package com.github.obourgain.elasticsearch.http.response;
 
 import static com.github.obourgain.elasticsearch.http.response.ValidStatusCodes._404;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Set;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
 import com.google.common.base.Charsets;
 import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -35,10 +40,27 @@ public class ErrorHandler {
             return response.getContent().flatMap(new Func1<ByteBuf, Observable<HttpClientResponse<ByteBuf>>>() {
                 @Override
                 public Observable<HttpClientResponse<ByteBuf>> call(ByteBuf byteBuf) {
-                    return Observable.error(new ElasticsearchHttpException(byteBuf.toString(Charsets.UTF_8), statusCode));
+                    return Observable.error(new ElasticsearchHttpException(message(byteBuf), statusCode));
                 }
             });
         }
         return Observable.just(response);
     }
+
+    /**
+     * The body of the error, converted to JSON if the request asked for a binary content type.
+     */
+    private static String message(ByteBuf byteBuf) {
+        byte[] bytes = new byte[byteBuf.readableBytes()];
+        byteBuf.getBytes(byteBuf.readerIndex(), bytes);
+        XContentType type = XContentFactory.xContentType(bytes);
+        if (type == XContentType.SMILE || type == XContentType.CBOR) {
+            try {
+                return XContentHelper.convertToJson(new BytesArray(bytes), false);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return new String(bytes, Charsets.UTF_8);
+    }
 }
@@ -7,16 +7,25 @@ import static org.elasticsearch.common.xcontent.XContentParser.Token.START_ARRAY
 import static org.elasticsearch.common.xcontent.XContentParser.Token.START_OBJECT;
 import static org.elasticsearch.common.xcontent.XContentParser.Token.VALUE_NULL;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.jackson.core.JsonParser;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContentParserAccessor;
+import org.elasticsearch.search.lookup.SourceLookup;
 import com.google.common.collect.ImmutableMap;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
@@ -27,7 +36,10 @@ public class Hit {
     private String id;
     private Float score; // may be null when sorting without setting track_scores to true
     private long version;
+    @Getter(AccessLevel.NONE)
     private byte[] source;
+    @Getter(AccessLevel.NONE)
+    private Map<String, Object> sourceAsMap;
     private List<String> sort = Collections.emptyList();
     private Map<String, SearchHitField> fields = ImmutableMap.of();
     private Map<String, Highlight> highlights = ImmutableMap.of();
@@ -36,6 +48,14 @@ public class Hit {
     private List<String> matchedQueries = Collections.emptyList();
 
     public Hit parse(XContentParser parser) throws IOException {
+        return parse(parser, null);
+    }
+
+    /**
+     * @param content the bytes read by the parser, if given only the bytes of the source are copied out of it instead of
+     *                writing the source again token by token
+     */
+    public Hit parse(XContentParser parser, @Nullable BytesReference content) throws IOException {
         assert parser.currentToken() == START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
 
         XContentParser.Token token;
@@ -56,10 +76,7 @@ public class Hit {
                     score = parser.floatValue();
                 }
             } else if (token == START_OBJECT && "_source".equals(currentFieldName)) {
-                try (XContentBuilder docBuilder = XContentFactory.contentBuilder(XContentType.JSON)) {
-                    docBuilder.copyCurrentStructure(parser);
-                    source = docBuilder.bytes().toBytes();
-                }
+                source = parseSource(parser, content);
             } else if (token == START_OBJECT && "fields".equals(currentFieldName)) {
                 fields = parseSearchHitFields(parser);
             } else if (token == START_OBJECT && "highlight".equals(currentFieldName)) {
@@ -81,13 +98,66 @@ public class Hit {
         return this;
     }
 
+    public byte[] getSource() {
+        return source;
+    }
+
+    public BytesReference getSourceRef() {
+        return source == null ? null : new BytesArray(source);
+    }
+
+    /**
+     * The source parsed to a map on the first call, the same map is returned by the next calls.
+     */
+    public Map<String, Object> getSourceAsMap() {
+        if (source == null) {
+            return null;
+        }
+        if (sourceAsMap == null) {
+            sourceAsMap = SourceLookup.sourceAsMap(new BytesArray(source));
+        }
+        return sourceAsMap;
+    }
+
+    /**
+     * Skips the source and copies its bytes out of the content when the byte offsets of the parser are those of the
+     * content, so the source is not parsed and the hit does not keep the whole content. Copies the source token by token
+     * otherwise.
+     */
+    private static byte[] parseSource(XContentParser parser, @Nullable BytesReference content) throws IOException {
+        // the parsers of smile and cbor extend the one of json
+        if (content != null && parser instanceof JsonXContentParser && parser.contentType() == XContentType.JSON) {
+            JsonParser jsonParser = JsonXContentParserAccessor.jsonParser((JsonXContentParser) parser);
+            Object sourceRef = jsonParser.getTokenLocation().getSourceRef();
+            // byte offsets are relative to the offset the parser was created with, or to the start of the stream
+            if (content.hasArray() ? sourceRef == content.array() : sourceRef instanceof InputStream) {
+                // the location of a START_OBJECT following a field name is the one of the field name, move to the brace
+                int start = (int) jsonParser.getTokenLocation().getByteOffset();
+                while (content.get(start) != '{') {
+                    start++;
+                }
+                parser.skipChildren();
+                int end = (int) jsonParser.getCurrentLocation().getByteOffset();
+                return content.slice(start, end - start).toBytes();
+            }
+        }
+        try (XContentBuilder docBuilder = XContentFactory.contentBuilder(XContentType.JSON)) {
+            docBuilder.copyCurrentStructure(parser);
+            return docBuilder.bytes().toBytes();
+        }
+    }
+
     public static List<Hit> parseHitArray(XContentParser parser) {
+        return parseHitArray(parser, null);
+    }
+
+    public static List<Hit> parseHitArray(XContentParser parser, @Nullable BytesReference content) {
         assert parser.currentToken() == START_ARRAY : "expected a START_ARRAY token but was " + parser.currentToken();
         try {
             List<Hit> result = new ArrayList<>();
             while (parser.nextToken() != END_ARRAY) {
                 assert parser.currentToken() == START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
-                result.add(new Hit().parse(parser));
+                result.add(new Hit().parse(parser, content));
             }
             return result;
         } catch (IOException e) {
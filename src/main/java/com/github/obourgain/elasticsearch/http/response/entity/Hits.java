@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.Getter;
 
@@ -15,6 +17,10 @@ public class Hits implements Iterable<Hit> {
     private Float maxScore; // may be null if score is NaN
 
     public Hits parse(XContentParser parser) {
+        return parse(parser, null);
+    }
+
+    public Hits parse(XContentParser parser, @Nullable BytesReference content) {
         assert parser.currentToken() == XContentParser.Token.START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
 
         try {
@@ -31,7 +37,7 @@ public class Hits implements Iterable<Hit> {
                         maxScore=parser.floatValue();
                     }
                 } else if ("hits".equals(currentFieldName)) {
-                    hits= Hit.parseHitArray(parser);
+                    hits= Hit.parseHitArray(parser, content);
                 }
             }
             return this;
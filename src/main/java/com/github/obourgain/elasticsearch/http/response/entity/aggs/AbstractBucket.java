@@ -1,6 +1,6 @@
 package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 
-import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
@@ -10,10 +10,13 @@ public abstract class AbstractBucket {
 
     protected Aggregations aggregations;
 
-    protected void addSubAgg(String name, XContentBuilder rawAgg) {
+    /**
+     * Parses the sub aggregation the parser is on.
+     */
+    protected void parseSubAgg(XContentParser parser, String name, AggregationSchema schema) {
         if (aggregations == null) {
             aggregations = new Aggregations();
         }
-        aggregations.addRawAgg(name, rawAgg);
+        aggregations.parseAgg(parser, name, schema);
     }
 }
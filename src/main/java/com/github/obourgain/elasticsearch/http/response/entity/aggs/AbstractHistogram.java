@@ -3,8 +3,6 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -14,12 +12,31 @@ import lombok.NoArgsConstructor;
 public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends AbstractAggregation {
 
     private List<Bucket> buckets;
+    private BucketColumns columns;
 
+    /**
+     * @return the buckets, or null if parsed as columns
+     */
     public List<Bucket> getBuckets() {
         return buckets;
     }
 
+    /**
+     * @return the buckets as columns if parsed as such, else null
+     * @see AggregationSchema.Builder#addColumnar(String, String)
+     */
+    public BucketColumns getColumns() {
+        return columns;
+    }
+
     public T parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public T parse(XContentParser parser, String name, AggregationSchema schema) {
         try {
             this.name = name;
             XContentParser.Token token;
@@ -29,10 +46,31 @@ public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends
                     currentFieldName = parser.currentName();
                 } else if (token == XContentParser.Token.START_OBJECT && "buckets".equals(currentFieldName)) {
                     // keyed
-                    buckets = parseKeyedBuckets(parser);
+                    buckets = parseKeyedBuckets(parser, schema);
                 } else if (token == XContentParser.Token.START_ARRAY && "buckets".equals(currentFieldName)) {
                     // not keyed
-                    buckets = parseBuckets(parser);
+                    buckets = parseBuckets(parser, schema);
+                }
+            }
+            return (T) this;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses the buckets as columns, without creating an object per bucket.
+     */
+    public T parseColumns(XContentParser parser, String name) {
+        try {
+            this.name = name;
+            XContentParser.Token token;
+            String currentFieldName = null;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                if (token == XContentParser.Token.FIELD_NAME) {
+                    currentFieldName = parser.currentName();
+                } else if ((token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY) && "buckets".equals(currentFieldName)) {
+                    columns = BucketColumns.parse(parser);
                 }
             }
             return (T) this;
@@ -41,18 +79,18 @@ public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends
         }
     }
 
-    protected static List<Bucket> parseBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                result.add(parseBucket(parser));
+                result.add(parseBucket(parser, schema));
             }
         }
         return result;
     }
 
-    protected static List<Bucket> parseKeyedBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseKeyedBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         String currentFieldName = null;
@@ -60,7 +98,7 @@ public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends
             if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.text();
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Bucket bucket = parseBucket(parser);
+                Bucket bucket = parseBucket(parser, schema);
                 bucket.keyAsString = currentFieldName;
                 result.add(bucket);
             }
@@ -68,7 +106,7 @@ public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends
         return result;
     }
 
-    protected static Bucket parseBucket(XContentParser parser) throws IOException {
+    protected static Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         Bucket bucket = new Bucket();
@@ -82,8 +120,7 @@ public abstract class AbstractHistogram<T extends AbstractHistogram<?>> extends
                     bucket.docCount = parser.longValue();
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
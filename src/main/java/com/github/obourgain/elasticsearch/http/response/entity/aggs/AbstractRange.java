@@ -3,8 +3,6 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -20,6 +18,13 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
     }
 
     public T parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public T parse(XContentParser parser, String name, AggregationSchema schema) {
         try {
             this.name = name;
             XContentParser.Token token;
@@ -29,10 +34,10 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
                     currentFieldName = parser.currentName();
                 } else if (token == XContentParser.Token.START_OBJECT && "buckets".equals(currentFieldName)) {
                     // keyed
-                    buckets = parseKeyedBuckets(parser);
+                    buckets = parseKeyedBuckets(parser, schema);
                 } else if (token == XContentParser.Token.START_ARRAY && "buckets".equals(currentFieldName)) {
                     // not keyed
-                    buckets = parseBuckets(parser);
+                    buckets = parseBuckets(parser, schema);
                 }
             }
             return (T) this;
@@ -41,18 +46,18 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
         }
     }
 
-    protected static List<AbstractRange.Bucket> parseBuckets(XContentParser parser) throws IOException {
+    protected static List<AbstractRange.Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<AbstractRange.Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                result.add(parseBucket(parser));
+                result.add(parseBucket(parser, schema));
             }
         }
         return result;
     }
 
-    protected static List<AbstractRange.Bucket> parseKeyedBuckets(XContentParser parser) throws IOException {
+    protected static List<AbstractRange.Bucket> parseKeyedBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<AbstractRange.Bucket> result = new ArrayList<>();
         String currentFieldName = null;
@@ -60,7 +65,7 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
             if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.text();
             } else if (token == XContentParser.Token.START_OBJECT) {
-                AbstractRange.Bucket bucket = parseBucket(parser);
+                AbstractRange.Bucket bucket = parseBucket(parser, schema);
                 bucket.key = currentFieldName;
                 result.add(bucket);
             }
@@ -68,7 +73,7 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
         return result;
     }
 
-    protected static AbstractRange.Bucket parseBucket(XContentParser parser) throws IOException {
+    protected static AbstractRange.Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         AbstractRange.Bucket bucket = new AbstractRange.Bucket();
@@ -90,8 +95,7 @@ public abstract class AbstractRange<T extends AbstractRange<?>> extends Abstract
                     bucket.key = parser.text();
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
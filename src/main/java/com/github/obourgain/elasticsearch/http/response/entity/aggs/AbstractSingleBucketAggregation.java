@@ -1,8 +1,6 @@
 package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 
 import java.io.IOException;
-import org.apache.commons.lang3.tuple.Pair;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 
 public abstract class AbstractSingleBucketAggregation<T extends AbstractSingleBucketAggregation<?>> extends AbstractAggregation {
@@ -54,6 +52,15 @@ public abstract class AbstractSingleBucketAggregation<T extends AbstractSingleBu
     }
 
     protected T innerParse(XContentParser parser) {
+        return innerParse(parser, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * Parses the content of the aggregation, the parser being on its START_OBJECT.
+     *
+     * @param schema the types of the sub aggregations
+     */
+    protected T innerParse(XContentParser parser, AggregationSchema schema) {
         try {
             XContentParser.Token token;
             String currentFieldName = null;
@@ -65,11 +72,10 @@ public abstract class AbstractSingleBucketAggregation<T extends AbstractSingleBu
                         this.docCount = parser.longValue();
                     }
                 } else if (token == XContentParser.Token.START_OBJECT) {
-                    Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
                     if(this.aggregations == null) {
                         this.aggregations = new Aggregations();
                     }
-                    this.aggregations.addRawAgg(agg.getKey(), agg.getValue());
+                    this.aggregations.parseAgg(parser, currentFieldName, schema);
                 }
             }
             return (T) this;
@@ -14,19 +14,28 @@ public abstract class AbstractValueAggregation<T extends AbstractValueAggregatio
     protected T parse(XContentParser parser, String name) {
         try {
             this.name = name;
+            boolean found = false;
             XContentParser.Token token;
             String currentFieldName = null;
+            // read up to the end of the aggregation, it may be followed by other aggregations
             while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
                 if (token == XContentParser.Token.FIELD_NAME) {
                     currentFieldName = parser.currentName();
-                } else if (token.isValue()) {
-                    if ("value".equals(currentFieldName)) {
+                } else if ("value".equals(currentFieldName)) {
+                    if (token == XContentParser.Token.VALUE_NULL) {
+                        // e.g. the avg of no document
+                        this.value = Double.NaN;
+                        found = true;
+                    } else if (token.isValue()) {
                         this.value = parser.doubleValue();
-                        return (T) this;
+                        found = true;
                     }
                 }
             }
-            throw new IllegalStateException("value not found in response");
+            if (!found) {
+                throw new IllegalStateException("value not found in response");
+            }
+            return (T) this;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
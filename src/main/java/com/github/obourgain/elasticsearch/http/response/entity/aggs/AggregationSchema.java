@@ -0,0 +1,217 @@
+package com.github.obourgain.elasticsearch.http.response.entity.aggs;
+
+import static org.elasticsearch.common.xcontent.XContentParser.Token.END_OBJECT;
+import static org.elasticsearch.common.xcontent.XContentParser.Token.FIELD_NAME;
+import static org.elasticsearch.common.xcontent.XContentParser.Token.START_OBJECT;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+/**
+ * The types of the aggregations of a request, and of their sub aggregations, by name.
+ * <p>
+ * The aggregations of a response whose type is known are parsed straight to their final objects, the others are kept
+ * raw and parsed on access by the typed getters of {@link Aggregations}.
+ *
+ * @author olivier bourgain
+ */
+public class AggregationSchema {
+
+    private static final Set<String> COLUMNAR_TYPES = new HashSet<>(Arrays.asList("histogram", "date_histogram", "terms"));
+
+    public static final AggregationSchema EMPTY = new AggregationSchema(Collections.<String, Entry>emptyMap());
+
+    private final Map<String, Entry> entries;
+
+    private AggregationSchema(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads the types of the aggregations from the source of the request, and from its extra source.
+     */
+    public static AggregationSchema fromRequest(SearchRequest request) {
+        Builder builder = builder();
+        builder.addFromSource(request.source());
+        builder.addFromSource(request.extraSource());
+        return builder.build();
+    }
+
+    /**
+     * Reads the types of the aggregations declared in the aggs or aggregations element of a search source.
+     */
+    public static AggregationSchema fromSource(@Nullable BytesReference source) {
+        return builder().addFromSource(source).build();
+    }
+
+    /**
+     * @return the type of the aggregation, like terms or date_histogram, or null if unknown
+     */
+    @Nullable
+    public String type(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.type;
+    }
+
+    /**
+     * @return true if the buckets of the aggregation are to be parsed as columns
+     */
+    public boolean isColumnar(String name) {
+        Entry entry = entries.get(name);
+        return entry != null && entry.columnar;
+    }
+
+    public AggregationSchema subAggregations(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? EMPTY : entry.subAggregations;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "AggregationSchema{" + entries + '}';
+    }
+
+    private static class Entry {
+        private final String type;
+        private final AggregationSchema subAggregations;
+        private final boolean columnar;
+
+        private Entry(String type, AggregationSchema subAggregations, boolean columnar) {
+            this.type = type;
+            this.subAggregations = subAggregations;
+            this.columnar = columnar;
+        }
+
+        @Override
+        public String toString() {
+            String string = columnar ? type + "(columnar)" : type;
+            return subAggregations.isEmpty() ? string : string + subAggregations.entries;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        public Builder add(String name, String type) {
+            return add(name, type, EMPTY);
+        }
+
+        public Builder add(String name, String type, AggregationSchema subAggregations) {
+            entries.put(name, new Entry(type, subAggregations, false));
+            return this;
+        }
+
+        /**
+         * Parses the buckets of a histogram, date_histogram or terms aggregation as {@link BucketColumns}, keeping
+         * only the values of their single value metric sub aggregations.
+         */
+        public Builder addColumnar(String name, String type) {
+            if (!COLUMNAR_TYPES.contains(type)) {
+                throw new IllegalArgumentException("buckets of " + type + " can not be parsed as columns");
+            }
+            entries.put(name, new Entry(type, EMPTY, true));
+            return this;
+        }
+
+        /**
+         * Adds the aggregations declared in the source, except those already added.
+         */
+        public Builder addFromSource(@Nullable BytesReference source) {
+            if (source == null || source.length() == 0) {
+                return this;
+            }
+            try (XContentParser parser = XContentHelper.createParser(source)) {
+                if (parser.nextToken() != START_OBJECT) {
+                    return this;
+                }
+                XContentParser.Token token;
+                while ((token = parser.nextToken()) == FIELD_NAME) {
+                    String name = parser.currentName();
+                    token = parser.nextToken();
+                    if (token == START_OBJECT && isAggregations(name)) {
+                        parseAggregations(parser, this);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                return this;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public AggregationSchema build() {
+            return entries.isEmpty() ? EMPTY : new AggregationSchema(new HashMap<>(entries));
+        }
+
+        /*
+        parses something like :
+
+        "aggs" : {
+            "the_name" : {
+                "terms" : { ... },
+                "aggs" : { ... }
+            }
+        }
+         */
+        private static void parseAggregations(XContentParser parser, Builder builder) throws IOException {
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) != END_OBJECT) {
+                if (token == FIELD_NAME) {
+                    String name = parser.currentName();
+                    if (parser.nextToken() == START_OBJECT) {
+                        parseAggregation(parser, name, builder);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+
+        private static void parseAggregation(XContentParser parser, String name, Builder builder) throws IOException {
+            String type = null;
+            Builder subAggregations = new Builder();
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) != END_OBJECT) {
+                if (token == FIELD_NAME) {
+                    String field = parser.currentName();
+                    token = parser.nextToken();
+                    if (token == START_OBJECT && isAggregations(field)) {
+                        parseAggregations(parser, subAggregations);
+                    } else {
+                        if (!"meta".equals(field)) {
+                            type = field;
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            }
+            // keeps what was added explicitly, like columnar aggregations
+            if (type != null && !builder.entries.containsKey(name)) {
+                builder.add(name, type, subAggregations.build());
+            }
+        }
+
+        private static boolean isAggregations(String field) {
+            return "aggs".equals(field) || "aggregations".equals(field);
+        }
+    }
+}
@@ -6,8 +6,10 @@ import static org.elasticsearch.common.xcontent.XContentParser.Token.START_OBJEC
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import org.apache.commons.lang3.tuple.Pair;
+import java.util.Set;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
@@ -23,11 +25,13 @@ public class Aggregations {
     private final Map<String, XContentBuilder> rawAggs = new HashMap<>();
 
     public Collection<String> names() {
-        return rawAggs.keySet();
+        Set<String> names = new HashSet<>(parsed.keySet());
+        names.addAll(rawAggs.keySet());
+        return names;
     }
 
     public Terms getTerms(final String name) {
-        return findOrCreate(name, new Converter<Terms>() {
+        return findOrCreate(name, Terms.class, new Converter<Terms>() {
             @Override
             public Terms convert(XContentParser parser) {
                 return Terms.parse(parser, name);
@@ -36,7 +40,7 @@ public class Aggregations {
     }
 
     public Min getMin(final String name) {
-        return findOrCreate(name, new Converter<Min>() {
+        return findOrCreate(name, Min.class, new Converter<Min>() {
             @Override
             public Min convert(XContentParser parser) {
                 return new Min().parse(parser, name);
@@ -45,7 +49,7 @@ public class Aggregations {
     }
 
     public Max getMax(final String name) {
-        return findOrCreate(name, new Converter<Max>() {
+        return findOrCreate(name, Max.class, new Converter<Max>() {
             @Override
             public Max convert(XContentParser parser) {
                 return new Max().parse(parser, name);
@@ -54,7 +58,7 @@ public class Aggregations {
     }
 
     public Avg getAvg(final String name) {
-        return findOrCreate(name, new Converter<Avg>() {
+        return findOrCreate(name, Avg.class, new Converter<Avg>() {
             @Override
             public Avg convert(XContentParser parser) {
                 return new Avg().parse(parser, name);
@@ -63,7 +67,7 @@ public class Aggregations {
     }
 
     public Sum getSum(final String name) {
-        return findOrCreate(name, new Converter<Sum>() {
+        return findOrCreate(name, Sum.class, new Converter<Sum>() {
             @Override
             public Sum convert(XContentParser parser) {
                 return new Sum().parse(parser, name);
@@ -72,7 +76,7 @@ public class Aggregations {
     }
 
     public Stats getStats(final String name) {
-        return findOrCreate(name, new Converter<Stats>() {
+        return findOrCreate(name, Stats.class, new Converter<Stats>() {
             @Override
             public Stats convert(XContentParser parser) {
                 return Stats.parse(parser, name);
@@ -81,7 +85,7 @@ public class Aggregations {
     }
 
     public ExtendedStats getExtendedStats(final String name) {
-        return findOrCreate(name, new Converter<ExtendedStats>() {
+        return findOrCreate(name, ExtendedStats.class, new Converter<ExtendedStats>() {
             @Override
             public ExtendedStats convert(XContentParser parser) {
                 return ExtendedStats.parse(parser, name);
@@ -90,7 +94,7 @@ public class Aggregations {
     }
 
     public ValueCount getValueCount(final String name) {
-        return findOrCreate(name, new Converter<ValueCount>() {
+        return findOrCreate(name, ValueCount.class, new Converter<ValueCount>() {
             @Override
             public ValueCount convert(XContentParser parser) {
                 return new ValueCount().parse(parser, name);
@@ -99,7 +103,7 @@ public class Aggregations {
     }
 
     public Percentiles getPercentiles(final String name) {
-        return findOrCreate(name, new Converter<Percentiles>() {
+        return findOrCreate(name, Percentiles.class, new Converter<Percentiles>() {
             @Override
             public Percentiles convert(XContentParser parser) {
                 return new Percentiles().parse(parser, name);
@@ -108,7 +112,7 @@ public class Aggregations {
     }
 
     public PercentileRanks getPercentileRanks(final String name) {
-        return findOrCreate(name, new Converter<PercentileRanks>() {
+        return findOrCreate(name, PercentileRanks.class, new Converter<PercentileRanks>() {
             @Override
             public PercentileRanks convert(XContentParser parser) {
                 return new PercentileRanks().parse(parser, name);
@@ -117,7 +121,7 @@ public class Aggregations {
     }
 
     public Cardinality getCardinality(final String name) {
-        return findOrCreate(name, new Converter<Cardinality>() {
+        return findOrCreate(name, Cardinality.class, new Converter<Cardinality>() {
             @Override
             public Cardinality convert(XContentParser parser) {
                 return new Cardinality().parse(parser, name);
@@ -126,7 +130,7 @@ public class Aggregations {
     }
 
     public GeoBounds getGeoBounds(final String name) {
-        return findOrCreate(name, new Converter<GeoBounds>() {
+        return findOrCreate(name, GeoBounds.class, new Converter<GeoBounds>() {
             @Override
             public GeoBounds convert(XContentParser parser) {
                 return GeoBounds.parse(parser, name);
@@ -135,7 +139,7 @@ public class Aggregations {
     }
 
     public TopHits getTopHits(final String name) {
-        return findOrCreate(name, new Converter<TopHits>() {
+        return findOrCreate(name, TopHits.class, new Converter<TopHits>() {
             @Override
             public TopHits convert(XContentParser parser) {
                 return TopHits.parse(parser, name);
@@ -144,7 +148,7 @@ public class Aggregations {
     }
 
     public ScriptedMetric getScriptedMetric(final String name) {
-        return findOrCreate(name, new Converter<ScriptedMetric>() {
+        return findOrCreate(name, ScriptedMetric.class, new Converter<ScriptedMetric>() {
             @Override
             public ScriptedMetric convert(XContentParser parser) {
                 return ScriptedMetric.parse(parser, name);
@@ -153,7 +157,7 @@ public class Aggregations {
     }
 
     public Global getGlobal(final String name) {
-        return findOrCreate(name, new Converter<Global>() {
+        return findOrCreate(name, Global.class, new Converter<Global>() {
             @Override
             public Global convert(XContentParser parser) {
                 return new Global().parse(parser, name);
@@ -162,7 +166,7 @@ public class Aggregations {
     }
 
     public Filter getFilter(final String name) {
-        return findOrCreate(name, new Converter<Filter>() {
+        return findOrCreate(name, Filter.class, new Converter<Filter>() {
             @Override
             public Filter convert(XContentParser parser) {
                 return new Filter().parse(parser, name);
@@ -171,7 +175,7 @@ public class Aggregations {
     }
 
     public Filters getFilters(final String name) {
-        return findOrCreate(name, new Converter<Filters>() {
+        return findOrCreate(name, Filters.class, new Converter<Filters>() {
             @Override
             public Filters convert(XContentParser parser) {
                 return Filters.parse(parser, name);
@@ -180,7 +184,7 @@ public class Aggregations {
     }
 
     public Missing getMissing(final String name) {
-        return findOrCreate(name, new Converter<Missing>() {
+        return findOrCreate(name, Missing.class, new Converter<Missing>() {
             @Override
             public Missing convert(XContentParser parser) {
                 return new Missing().parse(parser, name);
@@ -189,7 +193,7 @@ public class Aggregations {
     }
 
     public Nested getNested(final String name) {
-        return findOrCreate(name, new Converter<Nested>() {
+        return findOrCreate(name, Nested.class, new Converter<Nested>() {
             @Override
             public Nested convert(XContentParser parser) {
                 return new Nested().parse(parser, name);
@@ -198,7 +202,7 @@ public class Aggregations {
     }
 
     public ReverseNested getReverseNested(final String name) {
-        return findOrCreate(name, new Converter<ReverseNested>() {
+        return findOrCreate(name, ReverseNested.class, new Converter<ReverseNested>() {
             @Override
             public ReverseNested convert(XContentParser parser) {
                 return new ReverseNested().parse(parser, name);
@@ -207,7 +211,7 @@ public class Aggregations {
     }
 
     public Children getChildren(final String name) {
-        return findOrCreate(name, new Converter<Children>() {
+        return findOrCreate(name, Children.class, new Converter<Children>() {
             @Override
             public Children convert(XContentParser parser) {
                 return new Children().parse(parser, name);
@@ -216,7 +220,7 @@ public class Aggregations {
     }
 
     public SignificantTerms getSignificantTerms(final String name) {
-        return findOrCreate(name, new Converter<SignificantTerms>() {
+        return findOrCreate(name, SignificantTerms.class, new Converter<SignificantTerms>() {
             @Override
             public SignificantTerms convert(XContentParser parser) {
                 return SignificantTerms.parse(parser, name);
@@ -225,7 +229,7 @@ public class Aggregations {
     }
 
     public Range getRange(final String name) {
-        return findOrCreate(name, new Converter<Range>() {
+        return findOrCreate(name, Range.class, new Converter<Range>() {
             @Override
             public Range convert(XContentParser parser) {
                 return new Range().parse(parser, name);
@@ -234,7 +238,7 @@ public class Aggregations {
     }
 
     public DateRange getDateRange(final String name) {
-        return findOrCreate(name, new Converter<DateRange>() {
+        return findOrCreate(name, DateRange.class, new Converter<DateRange>() {
             @Override
             public DateRange convert(XContentParser parser) {
                 return new DateRange().parse(parser, name);
@@ -243,7 +247,7 @@ public class Aggregations {
     }
 
     public IPV4Range getIPV4Range(final String name) {
-        return findOrCreate(name, new Converter<IPV4Range>() {
+        return findOrCreate(name, IPV4Range.class, new Converter<IPV4Range>() {
             @Override
             public IPV4Range convert(XContentParser parser) {
                 return new IPV4Range().parse(parser, name);
@@ -252,7 +256,7 @@ public class Aggregations {
     }
 
     public Histogram getHistogram(final String name) {
-        return findOrCreate(name, new Converter<Histogram>() {
+        return findOrCreate(name, Histogram.class, new Converter<Histogram>() {
             @Override
             public Histogram convert(XContentParser parser) {
                 return new Histogram().parse(parser, name);
@@ -261,7 +265,7 @@ public class Aggregations {
     }
 
     public DateHistogram getDateHistogram(final String name) {
-        return findOrCreate(name, new Converter<DateHistogram>() {
+        return findOrCreate(name, DateHistogram.class, new Converter<DateHistogram>() {
             @Override
             public DateHistogram convert(XContentParser parser) {
                 return new DateHistogram().parse(parser, name);
@@ -270,7 +274,7 @@ public class Aggregations {
     }
 
     public GeoDistance getGeoDistance(final String name) {
-        return findOrCreate(name, new Converter<GeoDistance>() {
+        return findOrCreate(name, GeoDistance.class, new Converter<GeoDistance>() {
             @Override
             public GeoDistance convert(XContentParser parser) {
                 return GeoDistance.parse(parser, name);
@@ -279,7 +283,7 @@ public class Aggregations {
     }
 
     public GeoHash getGeoHash(final String name) {
-        return findOrCreate(name, new Converter<GeoHash>() {
+        return findOrCreate(name, GeoHash.class, new Converter<GeoHash>() {
             @Override
             public GeoHash convert(XContentParser parser) {
                 return GeoHash.parse(parser, name);
@@ -287,18 +291,21 @@ public class Aggregations {
         });
     }
 
-    private <T extends Aggregation> T findOrCreate(String name, Converter<T> converter) {
-        @SuppressWarnings("unchecked")
-        T t = (T) parsed.get(name);
-        if (t != null) {
-            return t;
+    private <T extends Aggregation> T findOrCreate(String name, Class<T> type, Converter<T> converter) {
+        Aggregation aggregation = parsed.get(name);
+        if (aggregation != null) {
+            if (!type.isInstance(aggregation)) {
+                throw new IllegalStateException("aggregation " + name + " is a " + aggregation.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+            }
+            return type.cast(aggregation);
         } else {
             XContentBuilder builder = rawAggs.get(name);
             try {
                 if (builder != null) {
                     try (XContentParser parser = XContentHelper.createParser(builder.bytes())) {
-                        t = converter.convert(parser);
+                        T t = converter.convert(parser);
                         parsed.put(name, t);
+                        rawAggs.remove(name);
                         return t;
                     }
                 } else {
@@ -314,6 +321,113 @@ public class Aggregations {
         rawAggs.put(name, rawAgg);
     }
 
+    /**
+     * Parses the aggregation the parser is on, straight to its final object if its type is in the schema, else
+     * keeps a raw copy to parse on access.
+     */
+    protected void parseAgg(XContentParser parser, String name, AggregationSchema schema) {
+        try {
+            assert parser.currentToken() == START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
+            Aggregation aggregation = schema.isColumnar(name)
+                    ? parseColumns(parser, name, schema.type(name))
+                    : parseTyped(parser, name, schema.type(name), schema.subAggregations(name));
+            if (aggregation != null) {
+                parsed.put(name, aggregation);
+            } else {
+                try (XContentBuilder docBuilder = XContentFactory.contentBuilder(XContentType.JSON)) {
+                    addRawAgg(name, docBuilder.copyCurrentStructure(parser));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Nullable
+    private static Aggregation parseTyped(XContentParser parser, String name, @Nullable String type, AggregationSchema subAggregations) {
+        if (type == null) {
+            return null;
+        }
+        switch (type) {
+            case "terms":
+                return Terms.parse(parser, name, subAggregations);
+            case "significant_terms":
+                return SignificantTerms.parse(parser, name, subAggregations);
+            case "min":
+                return new Min().parse(parser, name);
+            case "max":
+                return new Max().parse(parser, name);
+            case "avg":
+                return new Avg().parse(parser, name);
+            case "sum":
+                return new Sum().parse(parser, name);
+            case "value_count":
+                return new ValueCount().parse(parser, name);
+            case "cardinality":
+                return new Cardinality().parse(parser, name);
+            case "stats":
+                return Stats.parse(parser, name);
+            case "extended_stats":
+                return ExtendedStats.parse(parser, name);
+            case "percentiles":
+                return new Percentiles().parse(parser, name);
+            case "percentile_ranks":
+                return new PercentileRanks().parse(parser, name);
+            case "geo_bounds":
+                return GeoBounds.parse(parser, name);
+            case "top_hits":
+                return TopHits.parse(parser, name);
+            case "global":
+                return named(new Global(), name).innerParse(parser, subAggregations);
+            case "filter":
+                return named(new Filter(), name).innerParse(parser, subAggregations);
+            case "missing":
+                return named(new Missing(), name).innerParse(parser, subAggregations);
+            case "nested":
+                return named(new Nested(), name).innerParse(parser, subAggregations);
+            case "reverse_nested":
+                return named(new ReverseNested(), name).innerParse(parser, subAggregations);
+            case "children":
+                return named(new Children(), name).innerParse(parser, subAggregations);
+            case "filters":
+                return Filters.parse(parser, name, subAggregations);
+            case "range":
+                return new Range().parse(parser, name, subAggregations);
+            case "date_range":
+                return new DateRange().parse(parser, name, subAggregations);
+            case "ip_range":
+                return new IPV4Range().parse(parser, name, subAggregations);
+            case "histogram":
+                return new Histogram().parse(parser, name, subAggregations);
+            case "date_histogram":
+                return new DateHistogram().parse(parser, name, subAggregations);
+            case "geo_distance":
+                return GeoDistance.parse(parser, name, subAggregations);
+            case "geohash_grid":
+                return GeoHash.parse(parser, name, subAggregations);
+            default:
+                return null;
+        }
+    }
+
+    private static Aggregation parseColumns(XContentParser parser, String name, String type) {
+        switch (type) {
+            case "terms":
+                return Terms.parseColumns(parser, name);
+            case "histogram":
+                return new Histogram().parseColumns(parser, name);
+            case "date_histogram":
+                return new DateHistogram().parseColumns(parser, name);
+            default:
+                throw new IllegalArgumentException("buckets of " + type + " can not be parsed as columns");
+        }
+    }
+
+    private static <T extends AbstractSingleBucketAggregation<?>> T named(T aggregation, String name) {
+        aggregation.name = name;
+        return aggregation;
+    }
+
     /*
     parses something like : (with the heading parenthesis)
 
@@ -329,6 +443,13 @@ public class Aggregations {
 
      */
     public static Aggregations parse(XContentParser parser) {
+        return parse(parser, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the aggregations, those not in the schema are kept raw until accessed
+     */
+    public static Aggregations parse(XContentParser parser, AggregationSchema schema) {
         try {
             assert parser.currentToken() == START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
             Aggregations aggregations = new Aggregations();
@@ -338,9 +459,7 @@ public class Aggregations {
                 if (token == FIELD_NAME) {
                     currentFieldName = parser.currentName();
                 } else if (token == START_OBJECT) {
-                    try (XContentBuilder docBuilder = XContentFactory.contentBuilder(XContentType.JSON)) {
-                        aggregations.addRawAgg(currentFieldName, docBuilder.copyCurrentStructure(parser));
-                    }
+                    aggregations.parseAgg(parser, currentFieldName, schema);
                 }
             }
             return aggregations;
@@ -349,30 +468,10 @@ public class Aggregations {
         }
     }
 
-    /*
-    parses something like (e.g. for sub aggs)
-
-    "avg_price" : {
-      "value" : 56.3
-    }
-
-     */
-    protected static Pair<String, XContentBuilder> parseInnerAgg(XContentParser parser, String aggregationName) {
-        try {
-            assert parser.currentToken() == START_OBJECT : "expected a START_OBJECT token but was " + parser.currentToken();
-            XContentBuilder docBuilder = XContentFactory.contentBuilder(XContentType.JSON);
-            docBuilder.copyCurrentStructure(parser);
-            docBuilder.close();
-            return Pair.of(aggregationName, docBuilder);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     @Override
     public String toString() {
         return "Aggregations{" +
-                "knownAggregations=" + rawAggs.keySet() +
+                "knownAggregations=" + names() +
                 '}';
     }
 }
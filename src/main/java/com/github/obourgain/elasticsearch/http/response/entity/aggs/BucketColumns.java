@@ -0,0 +1,185 @@
+package com.github.obourgain.elasticsearch.http.response.entity.aggs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.xcontent.XContentParser;
+import lombok.Getter;
+
+/**
+ * The buckets of a histogram or terms aggregation as arrays, the i-th element of each array being for the i-th bucket.
+ * <p>
+ * Only the single value metric sub aggregations, like avg or max, are kept. Their value is NaN for the buckets where
+ * it is missing or null.
+ *
+ * @author olivier bourgain
+ */
+@Getter
+public class BucketColumns {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int size;
+    /**
+     * The numeric keys, null if the keys are strings.
+     */
+    @Nullable
+    private final long[] keys;
+    /**
+     * The string keys of terms, or the formatted keys of histograms, null if there is none.
+     */
+    @Nullable
+    private final String[] keysAsString;
+    private final long[] docCounts;
+    private final Map<String, double[]> values;
+
+    private BucketColumns(int size, @Nullable long[] keys, @Nullable String[] keysAsString, long[] docCounts, Map<String, double[]> values) {
+        this.size = size;
+        this.keys = keys;
+        this.keysAsString = keysAsString;
+        this.docCounts = docCounts;
+        this.values = values;
+    }
+
+    /**
+     * @return the values of a single value metric sub aggregation, or null if no bucket has it
+     */
+    @Nullable
+    public double[] getValues(String subAggregation) {
+        return values.get(subAggregation);
+    }
+
+    /**
+     * Parses the buckets, the parser being on the START_ARRAY, or on the START_OBJECT for keyed buckets.
+     */
+    protected static BucketColumns parse(XContentParser parser) throws IOException {
+        Builder builder = new Builder();
+        XContentParser.Token end = parser.currentToken() == XContentParser.Token.START_ARRAY ? XContentParser.Token.END_ARRAY : XContentParser.Token.END_OBJECT;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != end) {
+            if (token == XContentParser.Token.START_OBJECT) {
+                builder.parseBucket(parser);
+            }
+        }
+        return builder.build();
+    }
+
+    private static class Builder {
+
+        private int size;
+        private long[] keys;
+        private String[] keysAsString;
+        private long[] docCounts = new long[INITIAL_CAPACITY];
+        private final Map<String, double[]> values = new LinkedHashMap<>();
+
+        private void parseBucket(XContentParser parser) throws IOException {
+            ensureCapacity(size + 1);
+            XContentParser.Token token;
+            String currentFieldName = null;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                if (token == XContentParser.Token.FIELD_NAME) {
+                    currentFieldName = parser.currentName();
+                } else if (token.isValue()) {
+                    if ("key".equals(currentFieldName)) {
+                        if (token == XContentParser.Token.VALUE_NUMBER) {
+                            key(parser.longValue());
+                        } else {
+                            keyAsString(parser.text());
+                        }
+                    } else if ("key_as_string".equals(currentFieldName)) {
+                        keyAsString(parser.text());
+                    } else if ("doc_count".equals(currentFieldName)) {
+                        docCounts[size] = parser.longValue();
+                    }
+                } else if (token == XContentParser.Token.START_OBJECT) {
+                    parseValue(parser, currentFieldName);
+                } else if (token == XContentParser.Token.START_ARRAY) {
+                    parser.skipChildren();
+                }
+            }
+            size++;
+        }
+
+        private void parseValue(XContentParser parser, String subAggregation) throws IOException {
+            XContentParser.Token token;
+            String currentFieldName = null;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                if (token == XContentParser.Token.FIELD_NAME) {
+                    currentFieldName = parser.currentName();
+                } else if (token == XContentParser.Token.VALUE_NUMBER && "value".equals(currentFieldName)) {
+                    double[] column = values.get(subAggregation);
+                    if (column == null) {
+                        column = new double[docCounts.length];
+                        Arrays.fill(column, Double.NaN);
+                        values.put(subAggregation, column);
+                    }
+                    column[size] = parser.doubleValue();
+                } else if (token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY) {
+                    // not a single value metric
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void key(long key) {
+            if (keys == null) {
+                keys = new long[docCounts.length];
+            }
+            keys[size] = key;
+        }
+
+        private void keyAsString(String key) {
+            if (keysAsString == null) {
+                keysAsString = new String[docCounts.length];
+            }
+            keysAsString[size] = key;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= docCounts.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, docCounts.length * 2);
+            docCounts = Arrays.copyOf(docCounts, newCapacity);
+            if (keys != null) {
+                keys = Arrays.copyOf(keys, newCapacity);
+            }
+            if (keysAsString != null) {
+                keysAsString = Arrays.copyOf(keysAsString, newCapacity);
+            }
+            for (Map.Entry<String, double[]> entry : values.entrySet()) {
+                entry.setValue(grow(entry.getValue(), newCapacity));
+            }
+        }
+
+        private static double[] grow(double[] column, int newCapacity) {
+            int oldCapacity = column.length;
+            double[] grown = Arrays.copyOf(column, newCapacity);
+            Arrays.fill(grown, oldCapacity, newCapacity, Double.NaN);
+            return grown;
+        }
+
+        private BucketColumns build() {
+            Map<String, double[]> trimmed = new LinkedHashMap<>();
+            for (Map.Entry<String, double[]> entry : values.entrySet()) {
+                trimmed.put(entry.getKey(), trim(entry.getValue()));
+            }
+            return new BucketColumns(size,
+                    keys == null ? null : trim(keys),
+                    keysAsString == null ? null : Arrays.copyOf(keysAsString, size),
+                    trim(docCounts),
+                    Collections.unmodifiableMap(trimmed));
+        }
+
+        private long[] trim(long[] column) {
+            return column.length == size ? column : Arrays.copyOf(column, size);
+        }
+
+        private double[] trim(double[] column) {
+            return column.length == size ? column : Arrays.copyOf(column, size);
+        }
+    }
+}
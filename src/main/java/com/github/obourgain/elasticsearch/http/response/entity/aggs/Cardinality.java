@@ -14,19 +14,24 @@ public class Cardinality extends AbstractAggregation {
     protected Cardinality parse(XContentParser parser, String name) {
         try {
             this.name = name;
+            boolean found = false;
             XContentParser.Token token;
             String currentFieldName = null;
+            // read up to the end of the aggregation, it may be followed by other aggregations
             while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
                 if (token == XContentParser.Token.FIELD_NAME) {
                     currentFieldName = parser.currentName();
                 } else if (token.isValue()) {
                     if ("value".equals(currentFieldName)) {
                         value = parser.longValue();
-                        return this;
+                        found = true;
                     }
                 }
             }
-            throw new IllegalStateException("value not found in response");
+            if (!found) {
+                throw new IllegalStateException("value not found in response");
+            }
+            return this;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -3,9 +3,7 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -25,6 +23,13 @@ public class Filters extends AbstractAggregation {
     }
 
     public static Filters parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public static Filters parse(XContentParser parser, String name, AggregationSchema schema) {
         try {
             Filters filters = new Filters(name);
             XContentParser.Token token;
@@ -35,12 +40,12 @@ public class Filters extends AbstractAggregation {
                 } else if (token == XContentParser.Token.START_OBJECT) {
                     // named filters
                     if ("buckets".equals(currentFieldName)) {
-                        filters.buckets = parseBuckets(parser);
+                        filters.buckets = parseBuckets(parser, schema);
                     }
                 } else if (token == XContentParser.Token.START_ARRAY) {
                     // anonymous filter
                     if ("buckets".equals(currentFieldName)) {
-                        filters.buckets = parseAnonymousBuckets(parser);
+                        filters.buckets = parseAnonymousBuckets(parser, schema);
                     }
                 }
             }
@@ -50,7 +55,7 @@ public class Filters extends AbstractAggregation {
         }
     }
 
-    protected static List<Bucket> parseBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         List<Bucket> result = new ArrayList<>();
@@ -58,7 +63,7 @@ public class Filters extends AbstractAggregation {
             if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.currentName();
             }else if (token == XContentParser.Token.START_OBJECT) {
-                Bucket bucket = parseBucket(parser);
+                Bucket bucket = parseBucket(parser, schema);
                 bucket.key = currentFieldName;
                 result.add(bucket);
             }
@@ -66,18 +71,18 @@ public class Filters extends AbstractAggregation {
         return result;
     }
 
-    protected static List<Bucket> parseAnonymousBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseAnonymousBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                result.add(parseBucket(parser));
+                result.add(parseBucket(parser, schema));
             }
         }
         return result;
     }
 
-    protected static Bucket parseBucket(XContentParser parser) throws IOException {
+    protected static Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         Bucket bucket = new Bucket();
@@ -91,8 +96,7 @@ public class Filters extends AbstractAggregation {
                     bucket.docCount = parser.longValue();
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
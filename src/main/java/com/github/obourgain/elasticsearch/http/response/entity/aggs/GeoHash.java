@@ -3,8 +3,6 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -24,6 +22,13 @@ public class GeoHash extends AbstractAggregation {
     }
 
     public static GeoHash parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public static GeoHash parse(XContentParser parser, String name, AggregationSchema schema) {
         try {
             GeoHash range = new GeoHash(name);
             XContentParser.Token token;
@@ -32,7 +37,7 @@ public class GeoHash extends AbstractAggregation {
                 if (token == XContentParser.Token.FIELD_NAME) {
                     currentFieldName = parser.currentName();
                 } else if (token == XContentParser.Token.START_ARRAY && "buckets".equals(currentFieldName)) {
-                    range.buckets = parseBuckets(parser);
+                    range.buckets = parseBuckets(parser, schema);
                 }
             }
             return range;
@@ -41,18 +46,18 @@ public class GeoHash extends AbstractAggregation {
         }
     }
 
-    protected static List<Bucket> parseBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                result.add(parseBucket(parser));
+                result.add(parseBucket(parser, schema));
             }
         }
         return result;
     }
 
-    protected static Bucket parseBucket(XContentParser parser) throws IOException {
+    protected static Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         Bucket bucket = new Bucket();
@@ -66,8 +71,7 @@ public class GeoHash extends AbstractAggregation {
                     bucket.key = parser.text();
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
@@ -3,9 +3,7 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -30,6 +28,13 @@ public class SignificantTerms extends AbstractAggregation {
     }
 
     public static SignificantTerms parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public static SignificantTerms parse(XContentParser parser, String name, AggregationSchema schema) {
         try {
             SignificantTerms significantTerms = new SignificantTerms(name);
             XContentParser.Token token;
@@ -41,7 +46,7 @@ public class SignificantTerms extends AbstractAggregation {
                     significantTerms.docCount = parser.longValue();
                 } else if (token == XContentParser.Token.START_ARRAY) {
                     if ("buckets".equals(currentFieldName)) {
-                        significantTerms.buckets = parseBuckets(parser);
+                        significantTerms.buckets = parseBuckets(parser, schema);
                     }
                 }
             }
@@ -51,19 +56,19 @@ public class SignificantTerms extends AbstractAggregation {
         }
     }
 
-    protected static List<Bucket> parseBuckets(XContentParser parser) throws IOException {
+    protected static List<Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                Bucket bucket = parseBucket(parser);
+                Bucket bucket = parseBucket(parser, schema);
                 result.add(bucket);
             }
         }
         return result;
     }
 
-    protected static Bucket parseBucket(XContentParser parser) throws IOException {
+    protected static Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         Bucket bucket = new Bucket();
@@ -81,8 +86,7 @@ public class SignificantTerms extends AbstractAggregation {
                     bucket.score = parser.doubleValue();
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
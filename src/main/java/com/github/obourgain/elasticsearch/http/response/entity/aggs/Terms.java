@@ -3,8 +3,6 @@ package com.github.obourgain.elasticsearch.http.response.entity.aggs;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import org.apache.commons.lang3.tuple.Pair;
-import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
@@ -16,13 +14,58 @@ public class Terms extends AbstractAggregation {
 
     private long sumOtherDocCount = -1;
     private long docCountErrorUpperBound = -1;
+    /**
+     * The buckets, null if parsed as columns.
+     */
     private List<Bucket> buckets;
+    /**
+     * The buckets as columns if parsed as such, else null.
+     */
+    private BucketColumns columns;
 
     public Terms(String name) {
         super(name);
     }
 
     public static Terms parse(XContentParser parser, String name) {
+        return parse(parser, name, AggregationSchema.EMPTY);
+    }
+
+    /**
+     * @param schema the types of the sub aggregations of the buckets
+     */
+    public static Terms parse(XContentParser parser, String name, AggregationSchema schema) {
+        try {
+            Terms terms = new Terms(name);
+            XContentParser.Token token;
+            String currentFieldName = null;
+            while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                if (token == XContentParser.Token.FIELD_NAME) {
+                    currentFieldName = parser.currentName();
+                } else if (token.isValue()) {
+                    if ("doc_count_error_upper_bound".equals(currentFieldName)) {
+                        terms.docCountErrorUpperBound = parser.longValue();
+                    } else if ("sum_other_doc_count".equals(currentFieldName)) {
+                        terms.sumOtherDocCount = parser.longValue();
+                    }
+                } else if (token == XContentParser.Token.START_ARRAY) {
+                    if ("buckets".equals(currentFieldName)) {
+                        terms.buckets = parseBuckets(parser, schema);
+                    }
+                }
+            }
+            return terms;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Parses the buckets as columns, without creating an object per bucket.
+     *
+     * @see AggregationSchema.Builder#addColumnar(String, String)
+     */
+    public static Terms parseColumns(XContentParser parser, String name) {
         try {
             Terms terms = new Terms(name);
             XContentParser.Token token;
@@ -38,7 +81,7 @@ public class Terms extends AbstractAggregation {
                     }
                 } else if (token == XContentParser.Token.START_ARRAY) {
                     if ("buckets".equals(currentFieldName)) {
-                        terms.buckets = parseBuckets(parser);
+                        terms.columns = BucketColumns.parse(parser);
                     }
                 }
             }
@@ -49,17 +92,25 @@ public class Terms extends AbstractAggregation {
     }
 
     protected static List<Bucket> parseBuckets(XContentParser parser) throws IOException {
+        return parseBuckets(parser, AggregationSchema.EMPTY);
+    }
+
+    protected static List<Bucket> parseBuckets(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         List<Bucket> result = new ArrayList<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                result.add(parseBucket(parser));
+                result.add(parseBucket(parser, schema));
             }
         }
         return result;
     }
 
     protected static Bucket parseBucket(XContentParser parser) throws IOException {
+        return parseBucket(parser, AggregationSchema.EMPTY);
+    }
+
+    protected static Bucket parseBucket(XContentParser parser, AggregationSchema schema) throws IOException {
         XContentParser.Token token;
         String currentFieldName = null;
         Bucket bucket = new Bucket();
@@ -77,8 +128,7 @@ public class Terms extends AbstractAggregation {
                     bucket.docCount = parser.longValue();
                 }
             } else if (token == XContentParser.Token.START_OBJECT && currentFieldName != null) { // parse as sub agg only if not at first level
-                Pair<String, XContentBuilder> agg = Aggregations.parseInnerAgg(parser, currentFieldName);
-                bucket.addSubAgg(agg.getKey(), agg.getValue());
+                bucket.parseSubAgg(parser, currentFieldName, schema);
             }
         }
         return bucket;
@@ -0,0 +1,16 @@
+package io.reactivex.netty.protocol.http.client;
+
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpRequest;
+
+public class HttpClientRequestAccessor {
+    /**
+     * Copies the request line and the headers, the content source is shared.
+     */
+    public static <T> HttpClientRequest<T> copy(HttpClientRequest<T> request) {
+        HttpRequest nettyRequest = request.getNettyRequest();
+        HttpRequest copy = new DefaultHttpRequest(nettyRequest.getProtocolVersion(), nettyRequest.getMethod(), nettyRequest.getUri());
+        copy.headers().set(nettyRequest.headers());
+        return new HttpClientRequest<>(copy, request);
+    }
+}
@@ -0,0 +1,9 @@
+package org.elasticsearch.common.xcontent.json;
+
+import org.elasticsearch.common.jackson.core.JsonParser;
+
+public class JsonXContentParserAccessor {
+    public static JsonParser jsonParser(JsonXContentParser parser) {
+        return parser.parser;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+
+public class ClientMetricsTest extends AbstractTest {
+
+    @Test
+    public void should_report_pool_and_request_metrics() throws Exception {
+        StatsClientMetrics metrics = new StatsClientMetrics();
+        httpClient.setMetrics(metrics);
+
+        httpClient.index(Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(THE_ID).source("{\"value\":1}").refresh(true)).get();
+        httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get();
+        httpClient.search(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery()))).get();
+
+        Assertions.assertThat(metrics.getRequestLatencies()).containsKeys("index", "get", "_search");
+        Assertions.assertThat(metrics.getRequestLatencies().get("get").getCount()).isEqualTo(1);
+        Assertions.assertThat(metrics.getRequestLatencies().get("_search").getMeanNanos()).isGreaterThan(0);
+
+        Assertions.assertThat(metrics.getNodeStats()).hasSize(1);
+        StatsClientMetrics.NodeStats stats = metrics.getNodeStats().values().iterator().next();
+        Assertions.assertThat(stats.getAcquireLatency().getCount()).isEqualTo(3);
+        Assertions.assertThat(stats.getPendingAcquires()).isEqualTo(0);
+        Assertions.assertThat(stats.getFailedRequests()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_name_actions_after_endpoint() throws Exception {
+        Assertions.assertThat(NodeSelectingHttpClient.action("POST", "/the_index/the_type/_search?size=1")).isEqualTo("_search");
+        Assertions.assertThat(NodeSelectingHttpClient.action("POST", "/_all/_search")).isEqualTo("_search");
+        Assertions.assertThat(NodeSelectingHttpClient.action("POST", "/_bulk")).isEqualTo("_bulk");
+        Assertions.assertThat(NodeSelectingHttpClient.action("POST", "/_search/scroll")).isEqualTo("_search/scroll");
+        Assertions.assertThat(NodeSelectingHttpClient.action("GET", "/_cluster/health/the_index")).isEqualTo("_cluster/health");
+        Assertions.assertThat(NodeSelectingHttpClient.action("POST", "/the_index/the_type/the_id/_update")).isEqualTo("_update");
+        Assertions.assertThat(NodeSelectingHttpClient.action("GET", "/the_index/the_type/the_id")).isEqualTo("get");
+        Assertions.assertThat(NodeSelectingHttpClient.action("PUT", "/the_index/the_type/the_id?refresh=true")).isEqualTo("index");
+        Assertions.assertThat(NodeSelectingHttpClient.action("DELETE", "/the_index")).isEqualTo("delete_index");
+        Assertions.assertThat(NodeSelectingHttpClient.action("HEAD", "/the_index")).isEqualTo("indices_exists");
+    }
+
+    @Test
+    public void should_compute_percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assertions.assertThat(histogram.getPercentileNanos(0.5)).isEqualTo(0);
+
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+
+        Assertions.assertThat(histogram.getCount()).isEqualTo(100);
+        Assertions.assertThat(histogram.getMaxNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        // exact to a factor of two
+        Assertions.assertThat(histogram.getPercentileNanos(0.5)).isBetween(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(2));
+        Assertions.assertThat(histogram.getPercentileNanos(0.99)).isBetween(TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(2));
+        Assertions.assertThat(histogram.getPercentileNanos(1)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkResponse;
+import com.github.obourgain.elasticsearch.http.handler.search.search.MultiSearchResponse;
+import com.github.obourgain.elasticsearch.http.handler.search.search.SearchResponse;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+public class CompressionTest extends AbstractTest {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return ImmutableSettings.settingsBuilder()
+                .put(super.nodeSettings(nodeOrdinal))
+                .put("http.compression", true)
+                .build();
+    }
+
+    @Test
+    public void should_send_compressed_bulk_and_multi_search() throws Exception {
+        httpClient.setCompression(Compression.gzip(1, new ByteSizeValue(0)));
+
+        BulkRequest bulk = new BulkRequest().refresh(true);
+        for (int i = 0; i < 20; i++) {
+            bulk.add(Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i)).source("{\"value\":" + i + "}"));
+        }
+        BulkResponse bulkResponse = httpClient.bulk(bulk).get();
+        Assertions.assertThat(bulkResponse.isErrors()).isFalse();
+        Assertions.assertThat(bulkResponse.getItems()).hasSize(20);
+
+        MultiSearchResponse multiSearchResponse = httpClient.multiSearch(new MultiSearchRequest()
+                .add(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery())))
+                .add(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery()).size(1)))).get();
+        Assertions.assertThat(multiSearchResponse.getResponses()).hasSize(2);
+        Assertions.assertThat(multiSearchResponse.getResponses().get(0).getHits().getTotal()).isEqualTo(20);
+    }
+
+    @Test
+    public void should_decompress_responses() throws Exception {
+        createSimpleDoc(THE_INDEX, THE_TYPE, THE_ID);
+        httpClient.setCompression(Compression.responsesOnly());
+
+        SearchResponse response = httpClient.search(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery()))).get();
+
+        Assertions.assertThat(response.getHits().getTotal()).isEqualTo(1);
+        Assertions.assertThat(httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get().getId()).isEqualTo(THE_ID);
+    }
+
+    @Test
+    public void should_gzip_content() throws Exception {
+        byte[] body = "{\"the_field\":\"the_value\"}".getBytes(Charsets.UTF_8);
+
+        ByteBuf compressed = Compression.gzip().gzip(Unpooled.wrappedBuffer(body), UnpooledByteBufAllocator.DEFAULT);
+        byte[] bytes = new byte[compressed.readableBytes()];
+        compressed.readBytes(bytes);
+
+        Assertions.assertThat(Streams.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes)))).isEqualTo(body);
+    }
+
+    @Test
+    public void should_compress_only_large_bodies() throws Exception {
+        Assertions.assertThat(Compression.none().compress(Long.MAX_VALUE - 1)).isFalse();
+        Assertions.assertThat(Compression.none().acceptCompressedResponses()).isFalse();
+        Assertions.assertThat(Compression.gzip().compress(1023)).isFalse();
+        Assertions.assertThat(Compression.gzip().compress(1024)).isTrue();
+        Assertions.assertThat(Compression.responsesOnly().compress(Long.MAX_VALUE - 1)).isFalse();
+        Assertions.assertThat(Compression.responsesOnly().acceptCompressedResponses()).isTrue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_refuse_invalid_level() throws Exception {
+        Compression.gzip(10, Compression.DEFAULT_MIN_SIZE);
+    }
+}
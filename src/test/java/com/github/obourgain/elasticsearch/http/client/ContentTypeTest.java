@@ -0,0 +1,95 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import java.util.concurrent.ExecutionException;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponse;
+import com.github.obourgain.elasticsearch.http.handler.search.search.MultiSearchResponse;
+import com.github.obourgain.elasticsearch.http.handler.search.search.SearchResponse;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+public class ContentTypeTest extends AbstractTest {
+
+    @Test
+    public void should_bulk_get_and_search_in_smile() throws Exception {
+        httpClient.setContentType(ContentType.smile());
+        should_bulk_get_and_search();
+    }
+
+    @Test
+    public void should_bulk_get_and_search_in_cbor() throws Exception {
+        httpClient.setContentType(ContentType.cbor());
+        should_bulk_get_and_search();
+    }
+
+    private void should_bulk_get_and_search() throws Exception {
+        BulkRequest bulk = new BulkRequest().refresh(true);
+        for (int i = 0; i < 5; i++) {
+            bulk.add(Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i)).source("{\"value\":" + i + ",\"name\":\"the name\"}"));
+        }
+        bulk.add(Requests.deleteRequest(THE_INDEX).type(THE_TYPE).id("4"));
+        BulkResponse bulkResponse = httpClient.bulk(bulk).get();
+        Assertions.assertThat(bulkResponse.isErrors()).isFalse();
+        Assertions.assertThat(bulkResponse.getItems()).hasSize(6);
+
+        GetResponse getResponse = httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id("1")).get();
+        Assertions.assertThat(getResponse.isFound()).isTrue();
+        Assertions.assertThat(getResponse.getSource()).containsEntry("name", "the name").containsEntry("value", 1);
+
+        MultiGetResponse multiGetResponse = httpClient.multiGet(new MultiGetRequest().add(THE_INDEX, THE_TYPE, "2").add(THE_INDEX, THE_TYPE, "4")).get();
+        Assertions.assertThat(multiGetResponse.documents()).hasSize(2);
+        Assertions.assertThat(multiGetResponse.documents().get(0).isFound()).isTrue();
+        Assertions.assertThat(multiGetResponse.documents().get(1).isFound()).isFalse();
+
+        SearchResponse searchResponse = httpClient.search(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(termQuery("value", 3)))).get();
+        Assertions.assertThat(searchResponse.getHits().getTotal()).isEqualTo(1);
+        Assertions.assertThat(XContentHelper.convertToMap(searchResponse.getHits().getAt(0).getSource(), false).v2()).containsEntry("value", 3);
+
+        MultiSearchResponse multiSearchResponse = httpClient.multiSearch(new MultiSearchRequest()
+                .add(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery())))
+                .add(new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(termQuery("value", 0))))).get();
+        Assertions.assertThat(multiSearchResponse.getResponses()).hasSize(2);
+        Assertions.assertThat(multiSearchResponse.getResponses().get(0).getHits().getTotal()).isEqualTo(4);
+        Assertions.assertThat(multiSearchResponse.getResponses().get(1).getHits().getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_read_errors_in_smile() throws Exception {
+        httpClient.setContentType(ContentType.smile());
+        try {
+            httpClient.search(new SearchRequest("does_not_exist").source(new SearchSourceBuilder().query(matchAllQuery()))).get();
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e.getCause()).isInstanceOf(ElasticsearchHttpException.class);
+            Assertions.assertThat(e.getCause().getMessage()).contains("IndexMissingException");
+        }
+    }
+
+    @Test
+    public void should_convert_to_content_type() throws Exception {
+        BytesReference json = new BytesArray("{\"the_field\":\"the_value\"}");
+
+        Assertions.assertThat(ContentType.json().convert(json)).isSameAs(json);
+        BytesReference smile = ContentType.smile().convert(json);
+        Assertions.assertThat(XContentFactory.xContentType(smile)).isEqualTo(XContentType.SMILE);
+        Assertions.assertThat(ContentType.smile().convert(smile)).isSameAs(smile);
+        Assertions.assertThat(XContentHelper.convertToJson(smile, false)).isEqualTo(json.toUtf8());
+        Assertions.assertThat(ContentType.cbor().multiDocument()).isSameAs(ContentType.json());
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.concurrent.ExecutionException;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.concurrent.CancellableActionFuture;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.index.IndexResponse;
+import com.github.obourgain.elasticsearch.http.handler.document.multiget.MultiGetResponse;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+public class DocumentCacheTest extends AbstractTest {
+
+    @Test
+    public void should_serve_get_from_cache() throws Exception {
+        createDoc(THE_INDEX, THE_TYPE, THE_ID, "{\"value\":1}");
+        httpClient.enableDocumentCache(100, TimeValue.timeValueMinutes(1));
+
+        Assertions.assertThat(httpClient.get(request(THE_ID)).get().getSource()).containsEntry("value", 1);
+        // written by another client, not seen until the document expires
+        createDoc(THE_INDEX, THE_TYPE, THE_ID, "{\"value\":2}");
+
+        Assertions.assertThat(httpClient.get(request(THE_ID)).get().getSource()).containsEntry("value", 1);
+        Assertions.assertThat(httpClient.getDocumentCache().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_invalidate_on_write_of_the_client() throws Exception {
+        createDoc(THE_INDEX, THE_TYPE, THE_ID, "{\"value\":1}");
+        httpClient.enableDocumentCache(100, TimeValue.timeValueMinutes(1));
+        httpClient.get(request(THE_ID)).get();
+
+        httpClient.index(Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(THE_ID).source("{\"value\":2}")).get();
+
+        Assertions.assertThat(httpClient.get(request(THE_ID)).get().getSource()).containsEntry("value", 2);
+
+        httpClient.delete(Requests.deleteRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get();
+
+        try {
+            httpClient.get(request(THE_ID)).get();
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e).hasCauseInstanceOf(ElasticsearchHttpException.class);
+        }
+    }
+
+    @Test
+    public void should_serve_multi_get_items_from_cache() throws Exception {
+        createDoc(THE_INDEX, THE_TYPE, "1", "{\"value\":1}");
+        createDoc(THE_INDEX, THE_TYPE, "2", "{\"value\":1}");
+        httpClient.enableDocumentCache(100, TimeValue.timeValueMinutes(1));
+        httpClient.get(request("2")).get();
+        createDoc(THE_INDEX, THE_TYPE, "1", "{\"value\":2}");
+        createDoc(THE_INDEX, THE_TYPE, "2", "{\"value\":2}");
+
+        MultiGetResponse response = httpClient.multiGet(new MultiGetRequest()
+                .add(THE_INDEX, THE_TYPE, "1")
+                .add(THE_INDEX, THE_TYPE, "2")
+                .add(THE_INDEX, THE_TYPE, "3")).get();
+
+        Assertions.assertThat(response.all()).hasSize(3);
+        Assertions.assertThat(response.documents().get(0).getId()).isEqualTo("1");
+        Assertions.assertThat(response.documents().get(0).getSource()).containsEntry("value", 2);
+        Assertions.assertThat(response.documents().get(1).getId()).isEqualTo("2");
+        Assertions.assertThat(response.documents().get(1).getSource()).containsEntry("value", 1);
+        Assertions.assertThat(response.documents().get(2).isFound()).isFalse();
+        // the fetched document is cached too
+        Assertions.assertThat(httpClient.getDocumentCache().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_get_other_version_from_cluster() throws Exception {
+        createDoc(THE_INDEX, THE_TYPE, THE_ID, "{\"value\":1}");
+        httpClient.enableDocumentCache(100, TimeValue.timeValueMinutes(1));
+        GetResponse first = httpClient.get(request(THE_ID)).get();
+
+        Assertions.assertThat(httpClient.getDocumentCache().get(request(THE_ID).version(first.getVersion()))).isSameAs(first);
+        Assertions.assertThat(httpClient.getDocumentCache().get(request(THE_ID).version(first.getVersion() + 1))).isNull();
+    }
+
+    @Test
+    public void should_not_cache_get_sent_before_a_write() throws Exception {
+        DocumentCache cache = new DocumentCache(100, TimeValue.timeValueMinutes(1));
+        PlainActionFuture<GetResponse> future = PlainActionFuture.newFuture();
+
+        GetRequest request = request(THE_ID);
+        ActionListener<GetResponse> caching = cache.cacheOnResponse(request, future);
+        cache.invalidate(THE_INDEX, THE_TYPE, THE_ID);
+        caching.onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 1, true, null, null));
+
+        Assertions.assertThat(future.get()).isNotNull();
+        Assertions.assertThat(cache.get(request)).isNull();
+
+        cache.cacheOnResponse(request, future).onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 2, true, null, null));
+        Assertions.assertThat(cache.get(request).getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_invalidate_documents_of_large_bulk() throws Exception {
+        DocumentCache cache = new DocumentCache(100, TimeValue.timeValueMinutes(1));
+        cache.cacheOnResponse(request(THE_ID), PlainActionFuture.<GetResponse>newFuture())
+                .onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 1, true, null, null));
+        PlainActionFuture<BulkResponse> future = PlainActionFuture.newFuture();
+
+        BulkRequest bulk = new BulkRequest();
+        for (int i = 0; i < 100000; i++) {
+            bulk.add(new DeleteRequest(THE_INDEX, THE_TYPE, String.valueOf(i)));
+        }
+        bulk.add(new DeleteRequest(THE_INDEX, THE_TYPE, THE_ID));
+        ActionListener<BulkResponse> invalidating = cache.invalidateOnResponse(bulk, future);
+        Assertions.assertThat(cache.get(request(THE_ID))).isNull();
+
+        GetRequest sentDuringBulk = request(THE_ID);
+        ActionListener<GetResponse> caching = cache.cacheOnResponse(sentDuringBulk, PlainActionFuture.<GetResponse>newFuture());
+        invalidating.onResponse(null);
+        caching.onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 2, true, null, null));
+
+        Assertions.assertThat(future.get()).isNull();
+        Assertions.assertThat(cache.get(sentDuringBulk)).isNull();
+    }
+
+    @Test
+    public void should_invalidate_on_cancelled_index() throws Exception {
+        DocumentCache cache = new DocumentCache(100, TimeValue.timeValueMinutes(1));
+        cache.cacheOnResponse(request(THE_ID), PlainActionFuture.<GetResponse>newFuture())
+                .onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 1, true, null, null));
+        CancellableActionFuture<IndexResponse> future = CancellableActionFuture.newFuture();
+
+        cache.invalidateOnResponse(THE_INDEX, THE_TYPE, THE_ID, future);
+        Assertions.assertThat(cache.get(request(THE_ID))).isNull();
+
+        GetRequest sentDuringIndex = request(THE_ID);
+        ActionListener<GetResponse> caching = cache.cacheOnResponse(sentDuringIndex, PlainActionFuture.<GetResponse>newFuture());
+        // the node may still apply the write
+        Assertions.assertThat(future.cancel(true)).isTrue();
+        caching.onResponse(new GetResponse(THE_INDEX, THE_TYPE, THE_ID, 1, true, null, null));
+
+        Assertions.assertThat(cache.get(sentDuringIndex)).isNull();
+    }
+
+    private static GetRequest request(String id) {
+        return Requests.getRequest(THE_INDEX).type(THE_TYPE).id(id);
+    }
+}
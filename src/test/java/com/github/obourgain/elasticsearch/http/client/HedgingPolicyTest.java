@@ -0,0 +1,141 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+import rx.Observable;
+import rx.functions.Action0;
+import rx.functions.Func0;
+
+public class HedgingPolicyTest {
+
+    @Test
+    public void should_use_response_of_hedged_request_when_first_is_slow() throws Exception {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final AtomicBoolean slowCancelled = new AtomicBoolean();
+        Observable<String> request = Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                if (subscriptions.getAndIncrement() == 0) {
+                    return Observable.just("slow").delay(10, TimeUnit.SECONDS).doOnUnsubscribe(new Action0() {
+                        @Override
+                        public void call() {
+                            slowCancelled.set(true);
+                        }
+                    });
+                }
+                return Observable.just("fast");
+            }
+        });
+
+        String response = HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(10)).hedge("get", request).toBlocking().single();
+
+        assertThat(response).isEqualTo("fast");
+        assertThat(subscriptions.get()).isEqualTo(2);
+        assertThat(slowCancelled.get()).isTrue();
+    }
+
+    @Test
+    public void should_not_hedge_request_answered_before_delay() throws Exception {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        Observable<String> request = Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                subscriptions.incrementAndGet();
+                return Observable.just("fast");
+            }
+        });
+
+        assertThat(HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(100)).hedge("get", request).toBlocking().single()).isEqualTo("fast");
+        assertThat(HedgingPolicy.none().hedge("get", request).toBlocking().single()).isEqualTo("fast");
+        Thread.sleep(200);
+        assertThat(subscriptions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_use_response_of_slow_request_when_hedged_request_fails_fast() throws Exception {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        Observable<String> request = Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                if (subscriptions.getAndIncrement() == 0) {
+                    return Observable.just("slow").delay(200, TimeUnit.MILLISECONDS);
+                }
+                return Observable.error(new ConnectException("refused"));
+            }
+        });
+
+        String response = HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(10)).hedge("get", request).toBlocking().single();
+
+        assertThat(response).isEqualTo("slow");
+        assertThat(subscriptions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_fail_when_both_requests_failed() throws Exception {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        Observable<String> request = Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                if (subscriptions.getAndIncrement() == 0) {
+                    return Observable.<String>error(new ElasticsearchHttpException("unavailable", 503)).delaySubscription(100, TimeUnit.MILLISECONDS);
+                }
+                return Observable.error(new ConnectException("refused"));
+            }
+        });
+
+        try {
+            HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(10)).hedge("get", request).toBlocking().single();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            // the hedged request failed first
+            assertThat(e).hasCauseInstanceOf(ConnectException.class);
+        }
+        assertThat(subscriptions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_fail_on_client_error_without_hedging() throws Exception {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        Observable<String> request = Observable.defer(new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                subscriptions.incrementAndGet();
+                return Observable.error(new ElasticsearchHttpException("malformed query", 400));
+            }
+        });
+
+        try {
+            HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(100)).hedge("search", request).toBlocking().single();
+            Assert.fail();
+        } catch (ElasticsearchHttpException e) {
+            assertThat(e.getStatusCode()).isEqualTo(400);
+        }
+        Thread.sleep(200);
+        assertThat(subscriptions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void percentile_should_wait_for_enough_latencies() throws Exception {
+        HedgingPolicy policy = HedgingPolicy.percentile(0.9, TimeValue.timeValueMillis(5));
+
+        assertThat(policy.delayMillis("search")).isLessThan(0);
+        for (int i = 1; i <= 100; i++) {
+            policy.onLatency("search", i);
+        }
+        assertThat(policy.delayMillis("search")).isEqualTo(90);
+        // tracked per action
+        assertThat(policy.delayMillis("get")).isLessThan(0);
+
+        for (int i = 0; i < 200; i++) {
+            policy.onLatency("get", 1);
+        }
+        assertThat(policy.delayMillis("get")).isEqualTo(5);
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import io.netty.handler.timeout.ReadTimeoutException;
+
+public class HttpClientBuilderTest extends AbstractTest {
+
+    @Test
+    public void should_build_configured_client() throws Exception {
+        HttpClient client = HttpClient.builder()
+                .nodes(getUrlOfOneNode())
+                .maxConnectionsPerNode(50)
+                .connectTimeout(TimeValue.timeValueSeconds(1))
+                .readTimeout(TimeValue.timeValueSeconds(5))
+                .idleConnectionTimeout(TimeValue.timeValueSeconds(1))
+                .requestTimeout(TimeValue.timeValueSeconds(10))
+                .build();
+        try {
+            Assertions.assertThat(client.index(new IndexRequest(THE_INDEX, THE_TYPE, THE_ID).source("foo", "bar")).get().isCreated()).isTrue();
+            Assertions.assertThat(client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get().isFound()).isTrue();
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void should_time_out_requests_without_response() throws Exception {
+        // accepts the connections but never answers
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = HttpClient.builder()
+                    .nodes("http://localhost:" + server.getLocalPort())
+                    .requestTimeout(TimeValue.timeValueMillis(200))
+                    .build();
+            try {
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get();
+                fail();
+            } catch (ExecutionException e) {
+                Assertions.assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+                // a node not answering may be stuck in a GC pause
+                Assertions.assertThat(client.getNode("localhost:" + server.getLocalPort()).isAlive()).isFalse();
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_time_out_requests_without_response_by_default() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = HttpClient.builder()
+                    .nodes("http://localhost:" + server.getLocalPort())
+                    .build();
+            try {
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get(HttpClient.DEFAULT_READ_TIMEOUT.seconds() * 2, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                Assertions.assertThat(e.getCause()).isInstanceOf(ReadTimeoutException.class);
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_take_node_out_of_rotation_after_read_timeout() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = HttpClient.builder()
+                    .nodes("http://localhost:" + server.getLocalPort())
+                    .readTimeout(TimeValue.timeValueMillis(200))
+                    .build();
+            try {
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get();
+                fail();
+            } catch (ExecutionException e) {
+                Assertions.assertThat(e.getCause()).isInstanceOf(ReadTimeoutException.class);
+                Assertions.assertThat(client.getNode("localhost:" + server.getLocalPort()).isAlive()).isFalse();
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_not_retry_timed_out_request() throws Exception {
+        try (ServerSocket server1 = new ServerSocket(0); ServerSocket server2 = new ServerSocket(0)) {
+            HttpClient client = HttpClient.builder()
+                    .nodes("http://localhost:" + server1.getLocalPort(), "http://localhost:" + server2.getLocalPort())
+                    .requestTimeout(TimeValue.timeValueMillis(200))
+                    .build();
+            try {
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID)).get();
+                fail();
+            } catch (ExecutionException e) {
+                Assertions.assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+                // the request may have been processed, it is sent to a single node
+                Assertions.assertThat(connections(server1) + connections(server2)).isEqualTo(1);
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    private static int connections(ServerSocket server) throws IOException {
+        server.setSoTimeout(100);
+        int connections = 0;
+        try {
+            while (true) {
+                server.accept().close();
+                connections++;
+            }
+        } catch (SocketTimeoutException e) {
+            return connections;
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_refuse_client_without_node() throws Exception {
+        HttpClient.builder().build();
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.concurrent.SnapshotableCopyOnWriteArray;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.reactivex.netty.protocol.http.client.HttpClientRequest;
+
+public class NodeSelectingHttpClientTest extends AbstractTest {
+
+    @Test
+    public void should_fail_over_to_healthy_node_and_take_dead_node_out_of_rotation() throws Exception {
+        // nothing listens on port 1, connections are refused
+        HttpClient client = new HttpClient("http://localhost:1", getUrlOfOneNode());
+        try {
+            for (int i = 0; i < 10; i++) {
+                IndexRequest request = new IndexRequest(THE_INDEX, THE_TYPE, String.valueOf(i)).source("foo", "bar");
+                Assertions.assertThat(client.index(request).get().isCreated()).isTrue();
+            }
+            Assertions.assertThat(client.getNode("localhost:1").getFailures()).isGreaterThanOrEqualTo(1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void should_track_requests_in_flight_and_latency() throws Exception {
+        HttpClient client = new HttpClient(getUrlOfOneNode());
+        try {
+            client.setLoadBalancing(LoadBalancing.LEAST_OUTSTANDING_REQUESTS);
+            client.index(new IndexRequest(THE_INDEX, THE_TYPE, THE_ID).source("foo", "bar")).get();
+
+            Node node = client.getNode(client.getNodes().iterator().next());
+            Assertions.assertThat(node.getInFlight()).isEqualTo(0);
+            Assertions.assertThat(node.getLatencyNanos()).isGreaterThan(0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void should_choose_node_with_least_outstanding_requests() throws Exception {
+        Node node1 = new Node("node1:9200", null);
+        Node node2 = new Node("node2:9200", null);
+        Node node3 = new Node("node3:9200", null);
+        NodeSelectingHttpClient client = new NodeSelectingHttpClient(new SnapshotableCopyOnWriteArray<>(Arrays.asList(node1, node2, node3)));
+        client.setLoadBalancing(LoadBalancing.LEAST_OUTSTANDING_REQUESTS);
+
+        node1.requestStarted();
+        node1.requestStarted();
+        node2.requestStarted();
+
+        Set<Node> chosen = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            List<Node> selected = client.select(System.nanoTime());
+            Assertions.assertThat(selected).containsOnly(node1, node2, node3);
+            chosen.add(selected.get(0));
+        }
+        // the most loaded node loses against any other
+        Assertions.assertThat(chosen).containsOnly(node2, node3);
+
+        node3.requestStarted();
+        node3.requestStarted();
+        node3.requestStarted();
+        node1.requestEnded();
+        node1.requestEnded();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertThat(client.select(System.nanoTime()).get(0)).isNotEqualTo(node3);
+        }
+    }
+
+    @Test
+    public void should_choose_node_with_lowest_latency() throws Exception {
+        Node node1 = new Node("node1:9200", null);
+        Node node2 = new Node("node2:9200", null);
+        NodeSelectingHttpClient client = new NodeSelectingHttpClient(new SnapshotableCopyOnWriteArray<>(Arrays.asList(node1, node2)));
+        client.setLoadBalancing(LoadBalancing.LOWEST_LATENCY);
+
+        node1.recordLatency(TimeUnit.MILLISECONDS.toNanos(100));
+        node2.recordLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertThat(client.select(System.nanoTime())).containsExactly(node2, node1);
+        }
+
+        // the average moves toward the new samples
+        for (int i = 0; i < 20; i++) {
+            node2.recordLatency(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        Assertions.assertThat(node2.getLatencyNanos()).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(400));
+        Assertions.assertThat(client.select(System.nanoTime())).containsExactly(node1, node2);
+    }
+
+    @Test
+    public void should_select_alive_nodes_in_round_robin() throws Exception {
+        Node node1 = new Node("node1:9200", null);
+        Node node2 = new Node("node2:9200", null);
+        Node node3 = new Node("node3:9200", null);
+        NodeSelectingHttpClient client = new NodeSelectingHttpClient(new SnapshotableCopyOnWriteArray<>(Arrays.asList(node1, node2, node3)));
+
+        long now = System.nanoTime();
+        node2.markDead(now);
+
+        Assertions.assertThat(client.select(now)).containsExactly(node1, node3);
+        Assertions.assertThat(client.select(now)).containsExactly(node3, node1);
+        Assertions.assertThat(client.select(now)).containsExactly(node3, node1);
+        Assertions.assertThat(client.select(now)).containsExactly(node1, node3);
+    }
+
+    @Test
+    public void should_try_node_to_resurrect_first_when_all_are_dead() throws Exception {
+        Node node1 = new Node("node1:9200", null);
+        Node node2 = new Node("node2:9200", null);
+        NodeSelectingHttpClient client = new NodeSelectingHttpClient(new SnapshotableCopyOnWriteArray<>(Arrays.asList(node1, node2)));
+
+        long now = System.nanoTime();
+        node1.markDead(now);
+        node1.markDead(now);
+        node2.markDead(now);
+
+        List<Node> selected = client.select(now);
+        Assertions.assertThat(selected).containsExactly(node2);
+    }
+
+    @Test
+    public void dead_node_should_be_probed_after_exponential_delay() throws Exception {
+        Node node = new Node("node:9200", null);
+        long now = System.nanoTime();
+
+        node.markDead(now);
+        Assertions.assertThat(node.isAlive()).isFalse();
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.MILLISECONDS.toNanos(999))).isFalse();
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.SECONDS.toNanos(1))).isTrue();
+        // a single probe at a time
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.SECONDS.toNanos(1))).isFalse();
+        Assertions.assertThat(node.isAlive()).isFalse();
+
+        // the resurrection probe failed
+        node.markDead(now);
+        node.probeEnded();
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.SECONDS.toNanos(1))).isFalse();
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.SECONDS.toNanos(2))).isTrue();
+        node.probeEnded();
+
+        for (int i = 0; i < 100; i++) {
+            node.markDead(now);
+        }
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.SECONDS.toNanos(59))).isFalse();
+        Assertions.assertThat(node.tryProbe(now + TimeUnit.MINUTES.toNanos(1))).isTrue();
+
+        // the probe succeeded
+        node.markAlive();
+        node.probeEnded();
+        Assertions.assertThat(node.isAlive()).isTrue();
+    }
+
+    @Test
+    public void should_send_single_probe_to_dead_node() throws Exception {
+        Node node1 = new Node("node1:9200", null);
+        Node node2 = new Node("node2:9200", null);
+        NodeSelectingHttpClient client = new NodeSelectingHttpClient(new SnapshotableCopyOnWriteArray<>(Arrays.asList(node1, node2)));
+
+        long now = System.nanoTime();
+        node2.markDead(now);
+        long later = now + TimeUnit.SECONDS.toNanos(1);
+
+        // the probe goes first, the healthy nodes follow
+        Assertions.assertThat(client.select(later)).containsExactly(node2, node1);
+        Assertions.assertThat(node2.tryProbe(later)).isTrue();
+        // the other requests avoid the node while it is probed
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertThat(client.select(later)).containsExactly(node1);
+        }
+    }
+
+    @Test
+    public void should_send_new_request_to_each_node() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final List<String> hosts = new CopyOnWriteArrayList<>();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve(server, hosts);
+            }
+        }).start();
+        // nothing listens on port 1, connections are refused
+        HttpClient client = new HttpClient("http://localhost:1", "http://localhost:" + server.getLocalPort());
+        try {
+            HttpClientRequest<ByteBuf> request = HttpClientRequest.createGet("/");
+            for (int i = 0; i < 2; i++) {
+                Assertions.assertThat(client.getHttpClient().submit(request).toBlocking().single().getStatus().code()).isEqualTo(200);
+            }
+            Assertions.assertThat(client.getNode("localhost:1").getFailures()).isEqualTo(1);
+            Assertions.assertThat(hosts).hasSize(2).containsOnly("localhost:" + server.getLocalPort());
+            Assertions.assertThat(request.getHeaders().contains(HttpHeaders.Names.HOST)).isFalse();
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Answers the requests with an empty body until the socket is closed, and records their Host header.
+     */
+    private static void serve(ServerSocket server, List<String> hosts) {
+        try {
+            while (true) {
+                try (Socket socket = server.accept()) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.US_ASCII));
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        if (line.toLowerCase(Locale.ROOT).startsWith("host:")) {
+                            hosts.add(line.substring("host:".length()).trim());
+                        }
+                    }
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(Charsets.US_ASCII));
+                }
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.google.common.base.Suppliers;
+
+public class PreferencePolicyTest {
+
+    @Test
+    public void should_keep_preference_of_request() throws Exception {
+        SearchRequest request = search("foo", 0).preference("_local");
+
+        assertThat(PreferencePolicy.queryHash().preference(request)).isEqualTo("_local");
+        assertThat(PreferencePolicy.session(Suppliers.ofInstance("the_session")).preference(request)).isEqualTo("_local");
+    }
+
+    @Test
+    public void none_should_not_set_preference() throws Exception {
+        assertThat(PreferencePolicy.none().preference(search("foo", 0))).isNull();
+        assertThat(PreferencePolicy.none().preference(new GetRequest("the_index", "the_type", "the_id"))).isNull();
+    }
+
+    @Test
+    public void session_should_use_session_id() throws Exception {
+        assertThat(PreferencePolicy.session(Suppliers.ofInstance("the_session")).preference(search("foo", 0))).isEqualTo("the_session");
+        assertThat(PreferencePolicy.session(Suppliers.ofInstance("the_session")).preference(new GetRequest("the_index", "the_type", "the_id"))).isEqualTo("the_session");
+        assertThat(PreferencePolicy.session(Suppliers.<String>ofInstance(null)).preference(search("foo", 0))).isNull();
+        // must not be mistaken for a predefined preference
+        assertThat(PreferencePolicy.session(Suppliers.ofInstance("_local")).preference(search("foo", 0))).isEqualTo("session_local");
+    }
+
+    @Test
+    public void query_hash_should_be_the_same_for_all_pages() throws Exception {
+        PreferencePolicy policy = PreferencePolicy.queryHash();
+
+        String firstPage = policy.preference(search("foo", 0));
+        assertThat(firstPage).isNotNull();
+        assertThat(policy.preference(search("foo", 10))).isEqualTo(firstPage);
+        assertThat(policy.preference(search("bar", 0))).isNotEqualTo(firstPage);
+        assertThat(policy.preference(search("foo", 0).indices("other_index"))).isNotEqualTo(firstPage);
+        assertThat(policy.preference(new SearchRequest("the_index"))).isNotEqualTo(firstPage);
+    }
+
+    @Test
+    public void query_hash_should_depend_on_document_for_get() throws Exception {
+        PreferencePolicy policy = PreferencePolicy.queryHash();
+
+        String preference = policy.preference(new GetRequest("the_index", "the_type", "1"));
+        assertThat(policy.preference(new GetRequest("the_index", "the_type", "1"))).isEqualTo(preference);
+        assertThat(policy.preference(new GetRequest("the_index", "the_type", "2"))).isNotEqualTo(preference);
+    }
+
+    private static SearchRequest search(String term, int from) {
+        return new SearchRequest("the_index").types("the_type")
+                .source(new SearchSourceBuilder().query(QueryBuilders.termQuery("the_field", term)).from(from).size(10));
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.obourgain.elasticsearch.http.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+
+public class SnifferTest extends AbstractTest {
+
+    @Test
+    public void should_parse_http_addresses() throws Exception {
+        String json = "{\"cluster_name\":\"the_cluster\",\"nodes\":{" +
+                "\"node1\":{\"name\":\"node_1\",\"transport_address\":\"inet[/127.0.0.1:9300]\",\"http_address\":\"inet[/127.0.0.1:9200]\"}," +
+                "\"node2\":{\"name\":\"node_2\",\"transport_address\":\"inet[/127.0.0.1:9301]\"}," +
+                "\"node3\":{\"name\":\"node_3\",\"transport_address\":\"inet[/10.0.0.3:9300]\",\"http_address\":\"inet[somehost/10.0.0.3:9200]\"}" +
+                "}}";
+
+        List<String> addresses = Sniffer.parseHttpAddresses(new BytesArray(json));
+
+        Assertions.assertThat(addresses).containsOnly("127.0.0.1:9200", "10.0.0.3:9200");
+    }
+
+    @Test
+    public void should_add_sniffed_nodes() throws Exception {
+        new Sniffer(httpClient, TimeValue.timeValueSeconds(10)).sniff();
+
+        // one data node and one client node
+        Assertions.assertThat(httpClient.getNodes()).hasSize(2);
+    }
+
+    @Test
+    public void should_remove_departed_nodes() throws Exception {
+        List<String> sniffed = new Sniffer(httpClient, TimeValue.timeValueSeconds(10)).sniffNodes().toBlocking().single();
+        httpClient.setNodes(sniffed);
+
+        httpClient.setNodes(Collections.singletonList(sniffed.get(0)));
+
+        Assertions.assertThat(httpClient.getNodes()).containsExactly(sniffed.get(0));
+        // requests still go to the remaining node
+        Assertions.assertThat(httpClient.index(new IndexRequest(THE_INDEX, THE_TYPE, THE_ID).source("foo", "bar")).get().isCreated()).isTrue();
+    }
+
+    @Test
+    public void should_keep_nodes_when_none_is_sniffed() throws Exception {
+        List<String> nodes = new ArrayList<>(httpClient.getNodes());
+
+        httpClient.setNodes(Collections.<String>emptyList());
+
+        Assertions.assertThat(httpClient.getNodes()).containsOnlyElementsOf(nodes);
+    }
+}
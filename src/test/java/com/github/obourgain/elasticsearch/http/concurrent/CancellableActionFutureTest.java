@@ -0,0 +1,87 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import java.net.ServerSocket;
+import java.util.concurrent.Future;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.base.Predicate;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import com.github.obourgain.elasticsearch.http.client.StatsClientMetrics;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
+
+public class CancellableActionFutureTest extends AbstractTest {
+
+    @Test
+    public void should_free_connection_when_cancelled() throws Exception {
+        // accepts the connections but never answers
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = new HttpClient("http://localhost:" + server.getLocalPort());
+            final StatsClientMetrics metrics = new StatsClientMetrics();
+            client.setMetrics(metrics);
+            try {
+                Future<GetResponse> future = client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID));
+                Assertions.assertThat(awaitBusy(new Predicate<Object>() {
+                    @Override
+                    public boolean apply(Object input) {
+                        return activeConnections(metrics) == 1;
+                    }
+                })).isTrue();
+
+                Assertions.assertThat(future.cancel(true)).isTrue();
+
+                Assertions.assertThat(awaitBusy(new Predicate<Object>() {
+                    @Override
+                    public boolean apply(Object input) {
+                        return activeConnections(metrics) == 0;
+                    }
+                })).isTrue();
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_free_connection_after_deadline() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = new HttpClient("http://localhost:" + server.getLocalPort());
+            final StatsClientMetrics metrics = new StatsClientMetrics();
+            client.setMetrics(metrics);
+            try {
+                final PlainActionFuture<GetResponse> future = PlainActionFuture.newFuture();
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID), DeadlineListener.withDeadline(future, TimeValue.timeValueMillis(200)));
+
+                Assertions.assertThat(awaitBusy(new Predicate<Object>() {
+                    @Override
+                    public boolean apply(Object input) {
+                        return future.isDone() && activeConnections(metrics) == 0;
+                    }
+                })).isTrue();
+                Assertions.assertThat(metrics.getNodeStats().values().iterator().next().getConnectionsCreated()).isEqualTo(1);
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_complete_when_not_cancelled() throws Exception {
+        createSimpleDoc(THE_INDEX, THE_TYPE, THE_ID);
+
+        Future<GetResponse> future = httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID));
+
+        Assertions.assertThat(future.get().isFound()).isTrue();
+        Assertions.assertThat(future.cancel(true)).isFalse();
+    }
+
+    private static long activeConnections(StatsClientMetrics metrics) {
+        if (metrics.getNodeStats().isEmpty()) {
+            return -1;
+        }
+        return metrics.getNodeStats().values().iterator().next().getActiveConnections();
+    }
+}
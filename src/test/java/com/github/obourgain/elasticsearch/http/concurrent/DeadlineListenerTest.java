@@ -0,0 +1,44 @@
+package com.github.obourgain.elasticsearch.http.concurrent;
+
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutionException;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.client.HttpClient;
+import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
+
+public class DeadlineListenerTest extends AbstractTest {
+
+    @Test
+    public void should_fail_call_after_deadline() throws Exception {
+        // accepts the connections but never answers
+        try (ServerSocket server = new ServerSocket(0)) {
+            HttpClient client = new HttpClient("http://localhost:" + server.getLocalPort());
+            try {
+                PlainActionFuture<GetResponse> future = PlainActionFuture.newFuture();
+                client.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID), DeadlineListener.withDeadline(future, TimeValue.timeValueMillis(200)));
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                Assertions.assertThat(e.getCause()).isInstanceOf(ElasticsearchTimeoutException.class);
+            } finally {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void should_complete_before_deadline() throws Exception {
+        createSimpleDoc(THE_INDEX, THE_TYPE, THE_ID);
+        PlainActionFuture<GetResponse> future = PlainActionFuture.newFuture();
+
+        httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(THE_ID), DeadlineListener.withDeadline(future, TimeValue.timeValueSeconds(10)));
+
+        Assertions.assertThat(future.get().isFound()).isTrue();
+    }
+}
@@ -1,20 +1,19 @@
 package com.github.obourgain.elasticsearch.http.handler.document;
 
-import static com.github.obourgain.elasticsearch.http.ObservableAsserts.assertHasSize;
-import static com.github.obourgain.elasticsearch.http.ObservableAsserts.takeNth;
 import static org.assertj.core.api.Assertions.assertThat;
 import java.util.Arrays;
 import java.util.Collections;
 import org.elasticsearch.action.ActionRequest;
-import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
-import org.elasticsearch.node.Node;
-import org.elasticsearch.node.NodeBuilder;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.junit.Test;
 import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkActionMarshaller;
-import rx.Observable;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 public class BulkActionMarshallerTest {
 
@@ -25,21 +24,8 @@ public class BulkActionMarshallerTest {
         request.index("the_index");
         request.type("the_type");
         request.id("the_id");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"op_type\":\"index\"}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"foo\":\"bar\"}");
-
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"op_type\":\"index\"}}\n" +
+                "{\"foo\":\"bar\"}\n");
     }
 
     @Test
@@ -48,15 +34,7 @@ public class BulkActionMarshallerTest {
         request.index("the_index");
         request.type("the_type");
         request.id("the_id");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 2);
-
-        byte[] bytes = takeNth(observable, 0);
-        String actionAsString = new String(bytes);
-        assertThat(actionAsString).isEqualTo("{\"delete\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\"}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"delete\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\"}}\n");
     }
 
     @Test
@@ -66,17 +44,8 @@ public class BulkActionMarshallerTest {
         request.type("the_type");
         request.id("the_id");
         request.doc("foo", "bar");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"doc\":{\"foo\":\"bar\"}}");
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"doc\":{\"foo\":\"bar\"}}\n");
     }
 
     @Test
@@ -86,20 +55,8 @@ public class BulkActionMarshallerTest {
         request.type("the_type");
         request.id("the_id");
         request.upsert("bar", "baz");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"upsert\":{\"bar\":\"baz\"}}");
-
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"upsert\":{\"bar\":\"baz\"}}\n");
     }
 
     @Test
@@ -110,20 +67,8 @@ public class BulkActionMarshallerTest {
         request.id("the_id");
         request.doc("bar", "baz");
         request.docAsUpsert(true);
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"doc_as_upsert\":true,\"doc\":{\"bar\":\"baz\"}}");
-
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"doc_as_upsert\":true,\"doc\":{\"bar\":\"baz\"}}\n");
     }
 
     @Test
@@ -133,20 +78,8 @@ public class BulkActionMarshallerTest {
         request.type("the_type");
         request.id("the_id");
         request.script("the_script");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"script\":\"the_script\"}");
-
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"script\":\"the_script\"}\n");
     }
 
     @Test
@@ -157,20 +90,8 @@ public class BulkActionMarshallerTest {
         request.id("the_id");
         request.script("the_script");
         request.upsert("bar", "baz");
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Collections.<ActionRequest>singletonList(request));
-        assertHasSize(observable, 4);
-
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"upsert\":{\"bar\":\"baz\"},\"script\":\"the_script\"}");
-
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(request)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"upsert\":{\"bar\":\"baz\"},\"script\":\"the_script\"}\n");
     }
 
     @Test
@@ -193,35 +114,44 @@ public class BulkActionMarshallerTest {
         index.type("the_type");
         index.id("the_id");
 
-        Observable<byte[]> observable = BulkActionMarshaller.lazyConvertToBytes(Arrays.<ActionRequest>asList(update, delete, index));
-        assertHasSize(observable, 10);
-
-        // update request
-        byte[] bytes = takeNth(observable, 0);
-        assertThat(new String(bytes)).isEqualTo("{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}");
-        bytes = takeNth(observable, 1);
-        assertThat(new String(bytes)).isEqualTo("\n");
-        bytes = takeNth(observable, 2);
-        assertThat(new String(bytes)).isEqualTo("{\"upsert\":{\"bar\":\"baz\"},\"script\":\"the_script\"}");
-        bytes = takeNth(observable, 3);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        // delete request
-        bytes = takeNth(observable, 4);
-        assertThat(new String(bytes)).isEqualTo("{\"delete\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\"}}");
-        bytes = takeNth(observable, 5);
-        assertThat(new String(bytes)).isEqualTo("\n");
-
-        // index request
-        bytes = takeNth(observable, 6);
-        assertThat(new String(bytes)).isEqualTo("{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"op_type\":\"index\"}}");
-        bytes = takeNth(observable, 7);
-        assertThat(new String(bytes)).isEqualTo("\n");
-        bytes = takeNth(observable, 8);
-        assertThat(bytes).isNotNull();
-        assertThat(new String(bytes)).isEqualTo("{\"foo\":\"bar\"}");
-        bytes = takeNth(observable, 9);
-        assertThat(new String(bytes)).isEqualTo("\n");
+        assertThat(encode(update, delete, index)).isEqualTo(
+                "{\"update\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"_retry_on_conflict\":0}}\n" +
+                "{\"upsert\":{\"bar\":\"baz\"},\"script\":\"the_script\"}\n" +
+                "{\"delete\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\"}}\n" +
+                "{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"op_type\":\"index\"}}\n" +
+                "{\"foo\":\"bar\"}\n");
+    }
+
+    @Test
+    public void should_not_copy_index_source() throws Exception {
+        IndexRequest request = new IndexRequest("the_index", "the_type", "the_id");
+        request.source("foo", "bar");
+        BytesReference source = request.source();
+
+        CompositeByteBuf buffer = (CompositeByteBuf) BulkActionMarshaller.encode(Collections.<ActionRequest>singletonList(request), UnpooledByteBufAllocator.DEFAULT);
+        try {
+            assertThat(buffer.numComponents()).isEqualTo(3);
+            ByteBuf sourceComponent = buffer.component(1);
+            assertThat(sourceComponent.array()).isSameAs(source.array());
+            assertThat(sourceComponent.toString(Charsets.UTF_8)).isEqualTo("{\"foo\":\"bar\"}");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void should_encode_index_request_without_source() throws Exception {
+        IndexRequest request = new IndexRequest("the_index", "the_type", "the_id");
+
+        assertThat(encode(request)).isEqualTo("{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"the_id\",\"op_type\":\"index\"}}\n" + "\n");
     }
 
-}
\ No newline at end of file
+    private static String encode(ActionRequest... actions) {
+        ByteBuf buffer = BulkActionMarshaller.encode(Arrays.asList(actions), UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buffer.toString(Charsets.UTF_8);
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.obourgain.elasticsearch.http.handler.document;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkProcessor;
+import com.github.obourgain.elasticsearch.http.handler.document.bulk.BulkResponse;
+
+public class BulkProcessorTest extends AbstractTest {
+
+    @Test
+    public void should_flush_on_number_of_actions() throws Exception {
+        RecordingListener listener = new RecordingListener(2);
+        BulkProcessor processor = BulkProcessor.builder(httpClient, listener)
+                .setBulkActions(3)
+                .setBulkSize(new ByteSizeValue(-1))
+                .build();
+
+        for (int i = 0; i < 6; i++) {
+            processor.add(indexRequest(String.valueOf(i)));
+        }
+
+        Assertions.assertThat(listener.latch.await(10, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(processor.awaitClose(10, TimeUnit.SECONDS)).isTrue();
+
+        Assertions.assertThat(listener.failures).isEmpty();
+        Assertions.assertThat(listener.requests).hasSize(2);
+        for (BulkRequest request : listener.requests) {
+            Assertions.assertThat(request.numberOfActions()).isEqualTo(3);
+        }
+        refresh();
+        Assertions.assertThat(transportClient.prepareCount(THE_INDEX).get().getCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void should_flush_on_size() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+        BulkProcessor processor = BulkProcessor.builder(httpClient, listener)
+                .setBulkActions(-1)
+                .setBulkSize(new ByteSizeValue(1))
+                .build();
+
+        processor.add(indexRequest("1"));
+
+        Assertions.assertThat(listener.latch.await(10, TimeUnit.SECONDS)).isTrue();
+        processor.close();
+        Assertions.assertThat(listener.responses).hasSize(1);
+        Assertions.assertThat(listener.responses.get(0).isErrors()).isFalse();
+    }
+
+    @Test
+    public void should_flush_on_interval() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+        BulkProcessor processor = BulkProcessor.builder(httpClient, listener)
+                .setBulkActions(1000)
+                .setFlushInterval(TimeValue.timeValueMillis(100))
+                .build();
+        try {
+            processor.add(indexRequest("1"));
+            processor.add(new DeleteRequest(THE_INDEX, THE_TYPE, "1"));
+
+            Assertions.assertThat(listener.latch.await(10, TimeUnit.SECONDS)).isTrue();
+            Assertions.assertThat(listener.requests.get(0).numberOfActions()).isEqualTo(2);
+        } finally {
+            processor.close();
+        }
+    }
+
+    @Test
+    public void should_execute_synchronously_without_concurrent_requests() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+        BulkProcessor processor = BulkProcessor.builder(httpClient, listener)
+                .setConcurrentRequests(0)
+                .setBulkActions(2)
+                .build();
+
+        processor.add(indexRequest("1"));
+        processor.add(indexRequest("2"));
+
+        // the bulk has been executed by the calling thread
+        Assertions.assertThat(listener.latch.getCount()).isEqualTo(0);
+        Assertions.assertThat(listener.responses.get(0).getItems()).hasSize(2);
+        processor.close();
+    }
+
+    @Test
+    public void should_flush_pending_actions_on_close() throws Exception {
+        RecordingListener listener = new RecordingListener(1);
+        BulkProcessor processor = BulkProcessor.builder(httpClient, listener).build();
+
+        processor.add(indexRequest("1"));
+        Assertions.assertThat(listener.requests).isEmpty();
+
+        Assertions.assertThat(processor.awaitClose(10, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(listener.responses).hasSize(1);
+    }
+
+    @Test
+    public void should_fail_when_adding_after_close() throws Exception {
+        BulkProcessor processor = BulkProcessor.builder(httpClient, new RecordingListener(0)).build();
+        processor.close();
+        try {
+            processor.add(indexRequest("1"));
+            fail();
+        } catch (IllegalStateException e) {
+            Assertions.assertThat(e).hasMessage("bulk processor already closed");
+        }
+    }
+
+    private IndexRequest indexRequest(String id) throws IOException {
+        return new IndexRequest(THE_INDEX, THE_TYPE, id).source(source());
+    }
+
+    private static class RecordingListener implements BulkProcessor.Listener {
+
+        private final CountDownLatch latch;
+        private final List<BulkRequest> requests = new CopyOnWriteArrayList<>();
+        private final List<BulkResponse> responses = new CopyOnWriteArrayList<>();
+        private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+        private RecordingListener(int expectedBulks) {
+            this.latch = new CountDownLatch(expectedBulks);
+        }
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            requests.add(request);
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            responses.add(response);
+            latch.countDown();
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            failures.add(failure);
+            latch.countDown();
+        }
+    }
+}
@@ -7,10 +7,12 @@ import org.assertj.core.api.Assertions;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.fetch.source.FetchSourceContext;
 import org.elasticsearch.search.lookup.SourceLookup;
 import org.junit.Test;
 import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.client.HedgingPolicy;
 import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
 import com.github.obourgain.elasticsearch.http.handler.document.get.GetResponse;
 
@@ -35,6 +37,23 @@ public class GetActionHandlerTest extends AbstractTest {
         compareMap(expected, getResponse.getSource());
     }
 
+    @Test
+    public void should_get_documents_with_hedging() throws IOException, ExecutionException, InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            transportClient.index(Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i)).source("value", i)).actionGet();
+        }
+
+        // always hedge, the cancelled requests must not disturb the next ones sent on the same connections
+        httpClient.setHedgingPolicy(HedgingPolicy.fixedDelay(TimeValue.timeValueMillis(0)));
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertThat(httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i))).get().getId()).isEqualTo(String.valueOf(i));
+        }
+        httpClient.setHedgingPolicy(HedgingPolicy.none());
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertThat(httpClient.get(Requests.getRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i))).get().getId()).isEqualTo(String.valueOf(i));
+        }
+    }
+
     @Test
     public void should_get_document_without_source() throws IOException, ExecutionException, InterruptedException {
         BytesReference source = source().bytes();
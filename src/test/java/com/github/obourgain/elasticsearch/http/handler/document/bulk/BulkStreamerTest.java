@@ -0,0 +1,87 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import rx.Observable;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+public class BulkStreamerTest extends AbstractTest {
+
+    @Test
+    public void should_send_actions_in_bulks() throws Exception {
+        List<BulkResponse> responses = httpClient.bulk(actions(250), 100, ByteSizeValue.parseBytesSizeValue("1mb"), 2)
+                .toList().toBlocking().single();
+
+        Assertions.assertThat(responses).hasSize(3);
+        int items = 0;
+        for (BulkResponse response : responses) {
+            Assertions.assertThat(response.isErrors()).isFalse();
+            items += response.getItems().size();
+        }
+        Assertions.assertThat(items).isEqualTo(250);
+        refresh();
+        Assertions.assertThat(transportClient.prepareCount(THE_INDEX).get().getCount()).isEqualTo(250);
+    }
+
+    @Test
+    public void should_flush_on_size() throws Exception {
+        List<BulkResponse> responses = httpClient.bulk(actions(5), 100, new ByteSizeValue(1), 1)
+                .toList().toBlocking().single();
+
+        Assertions.assertThat(responses).hasSize(5);
+    }
+
+    @Test
+    public void should_request_actions_as_bulks_are_sent() throws Exception {
+        final AtomicInteger emitted = new AtomicInteger();
+        final List<Integer> emittedAtResponse = new ArrayList<>();
+        Observable<ActionRequest> actions = actions(1000).doOnNext(new Action1<ActionRequest>() {
+            @Override
+            public void call(ActionRequest actionRequest) {
+                emitted.incrementAndGet();
+            }
+        });
+
+        httpClient.bulk(actions, 10, ByteSizeValue.parseBytesSizeValue("1mb"), 1)
+                .doOnNext(new Action1<BulkResponse>() {
+                    @Override
+                    public void call(BulkResponse response) {
+                        emittedAtResponse.add(emitted.get());
+                    }
+                })
+                .toBlocking().last();
+
+        Assertions.assertThat(emittedAtResponse).hasSize(100);
+        for (int i = 0; i < emittedAtResponse.size(); i++) {
+            // the response may be seen once the next bulk is in flight and the one after it filled
+            Assertions.assertThat(emittedAtResponse.get(i)).isLessThanOrEqualTo((i + 3) * 10);
+        }
+    }
+
+    @Test
+    public void should_send_actions_of_iterator() throws Exception {
+        List<BulkResponse> responses = httpClient.bulk(actions(20).toBlocking().getIterator(), 15, ByteSizeValue.parseBytesSizeValue("1mb"), 1)
+                .toList().toBlocking().single();
+
+        Assertions.assertThat(responses).hasSize(2);
+        Assertions.assertThat(responses.get(0).getItems()).hasSize(15);
+        Assertions.assertThat(responses.get(1).getItems()).hasSize(5);
+    }
+
+    private static Observable<ActionRequest> actions(int count) {
+        return Observable.range(0, count).map(new Func1<Integer, ActionRequest>() {
+            @Override
+            public ActionRequest call(Integer i) {
+                return Requests.indexRequest(THE_INDEX).type(THE_TYPE).id(String.valueOf(i)).source("{\"value\":" + i + "}");
+            }
+        });
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.obourgain.elasticsearch.http.handler.document.bulk;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+public class RetryingBulkActionHandlerTest {
+
+    private static final String OK = "{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"%s\",\"_version\":1,\"status\":201}}";
+    private static final String REJECTED = "{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"%s\",\"status\":429,\"error\":\"EsRejectedExecutionException[rejected]\"}}";
+    private static final String BAD_REQUEST = "{\"index\":{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"%s\",\"status\":400,\"error\":\"MapperParsingException[failed]\"}}";
+
+    @Test
+    public void should_resubmit_only_rejected_items_and_merge_in_original_order() throws Exception {
+        ScriptedBulkActionHandler handler = new ScriptedBulkActionHandler();
+        handler.respond(response(String.format(OK, "0"), String.format(REJECTED, "1"), String.format(BAD_REQUEST, "2"), String.format(REJECTED, "3")));
+        handler.respond(response(String.format(REJECTED, "1"), String.format(OK, "3")));
+        handler.respond(response(String.format(OK, "1")));
+
+        BulkResponse response = execute(handler, bulk(4), BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(1), 3));
+
+        assertThat(handler.submittedIds).hasSize(3);
+        assertThat(handler.submittedIds.get(1)).containsExactly("1", "3");
+        assertThat(handler.submittedIds.get(2)).containsExactly("1");
+
+        assertThat(response.getItems()).hasSize(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(response.getItems().get(i).getId()).isEqualTo(String.valueOf(i));
+        }
+        assertThat(response.getItems().get(1).isFailed()).isFalse();
+        assertThat(response.getItems().get(2).getStatus()).isEqualTo(400);
+        assertThat(response.getItems().get(3).isFailed()).isFalse();
+        assertThat(response.isErrors()).isTrue();
+        assertThat(response.getTook()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_stop_retrying_when_backoff_is_exhausted() throws Exception {
+        ScriptedBulkActionHandler handler = new ScriptedBulkActionHandler();
+        handler.respond(response(String.format(OK, "0"), String.format(REJECTED, "1")));
+        handler.respond(response(String.format(REJECTED, "1")));
+
+        BulkResponse response = execute(handler, bulk(2), BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(1), 1));
+
+        assertThat(handler.submittedIds).hasSize(2);
+        assertThat(response.getItems().get(0).isFailed()).isFalse();
+        assertThat(response.getItems().get(1).getStatus()).isEqualTo(429);
+        assertThat(response.isErrors()).isTrue();
+    }
+
+    @Test
+    public void should_retry_bulk_rejected_as_a_whole() throws Exception {
+        ScriptedBulkActionHandler handler = new ScriptedBulkActionHandler();
+        handler.failWith(new ElasticsearchHttpException("rejected", 429));
+        handler.respond(response(String.format(OK, "0"), String.format(OK, "1")));
+
+        BulkResponse response = execute(handler, bulk(2), BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(1), 1));
+
+        assertThat(handler.submittedIds).hasSize(2);
+        assertThat(handler.submittedIds.get(1)).containsExactly("0", "1");
+        assertThat(response.isErrors()).isFalse();
+    }
+
+    @Test
+    public void should_not_retry_other_failures() throws Exception {
+        ScriptedBulkActionHandler handler = new ScriptedBulkActionHandler();
+        handler.failWith(new ElasticsearchHttpException("bad request", 400));
+
+        try {
+            execute(handler, bulk(2), BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(1), 3));
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(ElasticsearchHttpException.class);
+        }
+        assertThat(handler.submittedIds).hasSize(1);
+    }
+
+    @Test
+    public void exponential_backoff_should_double_delay() throws Exception {
+        Iterator<TimeValue> iterator = BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(10), 3).iterator();
+        assertThat(iterator.next().millis()).isEqualTo(10);
+        assertThat(iterator.next().millis()).isEqualTo(20);
+        assertThat(iterator.next().millis()).isEqualTo(40);
+        assertThat(iterator.hasNext()).isFalse();
+
+        assertThat(BackoffPolicy.noBackoff().iterator().hasNext()).isFalse();
+    }
+
+    private static BulkResponse execute(BulkActionHandler handler, BulkRequest request, BackoffPolicy backoffPolicy) throws Exception {
+        PlainActionFuture<BulkResponse> future = PlainActionFuture.newFuture();
+        new RetryingBulkActionHandler(handler).execute(request, backoffPolicy, future);
+        return future.get();
+    }
+
+    private static BulkRequest bulk(int size) {
+        BulkRequest request = new BulkRequest();
+        for (int i = 0; i < size; i++) {
+            request.add(new IndexRequest("the_index", "the_type", String.valueOf(i)).source("foo", "bar"));
+        }
+        return request;
+    }
+
+    private static BulkResponse response(String... items) {
+        StringBuilder json = new StringBuilder("{\"took\":1,\"errors\":true,\"items\":[");
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(items[i]);
+        }
+        json.append("]}");
+        return new BulkResponse().doParse(new BytesArray(json.toString()));
+    }
+
+    private static class ScriptedBulkActionHandler extends BulkActionHandler {
+
+        private final Queue<Object> outcomes = new LinkedList<>();
+        private final List<List<String>> submittedIds = new ArrayList<>();
+
+        private ScriptedBulkActionHandler() {
+            super(null);
+        }
+
+        private void respond(BulkResponse response) {
+            outcomes.add(response);
+        }
+
+        private void failWith(Throwable failure) {
+            outcomes.add(failure);
+        }
+
+        @Override
+        public synchronized void execute(BulkRequest request, ActionListener<BulkResponse> listener) {
+            List<String> ids = new ArrayList<>();
+            for (Object action : request.requests()) {
+                ids.add(((IndexRequest) action).id());
+            }
+            submittedIds.add(ids);
+            Object outcome = outcomes.poll();
+            if (outcome instanceof Throwable) {
+                listener.onFailure((Throwable) outcome);
+            } else {
+                listener.onResponse((BulkResponse) outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.obourgain.elasticsearch.http.handler.document.get;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+public class GetBatcherTest extends AbstractTest {
+
+    @Test
+    public void should_dispatch_documents_of_batched_gets() throws Exception {
+        createDocs();
+        // the window is too long for the test to pass unless the gets are sent when 4 are buffered
+        httpClient.enableGetBatching(TimeValue.timeValueMinutes(1), 4);
+
+        Future<GetResponse> first = httpClient.get(request("1"));
+        Future<GetResponse> second = httpClient.get(request("2"));
+        Future<GetResponse> duplicate = httpClient.get(request("1"));
+        Future<GetResponse> third = httpClient.get(request("3"));
+
+        Assertions.assertThat(first.get(10, TimeUnit.SECONDS).getId()).isEqualTo("1");
+        Assertions.assertThat(second.get(10, TimeUnit.SECONDS).getId()).isEqualTo("2");
+        Assertions.assertThat(duplicate.get(10, TimeUnit.SECONDS).getId()).isEqualTo("1");
+        Assertions.assertThat(duplicate.get().getSource()).isEqualTo(first.get().getSource());
+        Assertions.assertThat(third.get(10, TimeUnit.SECONDS).getId()).isEqualTo("3");
+    }
+
+    @Test
+    public void should_send_gets_after_window() throws Exception {
+        createDocs();
+        httpClient.enableGetBatching(TimeValue.timeValueMillis(20), 100);
+
+        Future<GetResponse> first = httpClient.get(request("1"));
+        Future<GetResponse> second = httpClient.get(request("2"));
+
+        Assertions.assertThat(first.get(10, TimeUnit.SECONDS).getId()).isEqualTo("1");
+        Assertions.assertThat(second.get(10, TimeUnit.SECONDS).getId()).isEqualTo("2");
+    }
+
+    @Test
+    public void should_fail_missing_document_like_a_plain_get() throws Exception {
+        createDocs();
+        httpClient.enableGetBatching(TimeValue.timeValueMinutes(1), 3);
+
+        Future<GetResponse> found = httpClient.get(request("1"));
+        Future<GetResponse> notFound = httpClient.get(request("42"));
+        Future<GetResponse> missingIndex = httpClient.get(Requests.getRequest("missing_index").type(THE_TYPE).id("1"));
+
+        Assertions.assertThat(found.get(10, TimeUnit.SECONDS).getId()).isEqualTo("1");
+        assertFailsWithStatus(notFound, 404);
+        assertFailsWithStatus(missingIndex, 404);
+    }
+
+    @Test
+    public void should_not_batch_gets_unsupported_by_multi_get() throws Exception {
+        Assertions.assertThat(GetBatcher.canBatch(request("1"))).isTrue();
+        Assertions.assertThat(GetBatcher.canBatch(request("1").routing("the_routing"))).isFalse();
+        Assertions.assertThat(GetBatcher.canBatch(request("1").version(2))).isFalse();
+        Assertions.assertThat(GetBatcher.canBatch(request("1").refresh(true))).isFalse();
+    }
+
+    private static GetRequest request(String id) {
+        return Requests.getRequest(THE_INDEX).type(THE_TYPE).id(id);
+    }
+
+    private static void assertFailsWithStatus(Future<GetResponse> future, int status) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e.getCause()).isInstanceOf(ElasticsearchHttpException.class);
+            Assertions.assertThat(((ElasticsearchHttpException) e.getCause()).getStatusCode()).isEqualTo(status);
+        }
+    }
+
+    private void createDocs() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            createSimpleDoc(THE_INDEX, THE_TYPE, String.valueOf(i));
+        }
+        ensureSearchable(THE_INDEX);
+    }
+}
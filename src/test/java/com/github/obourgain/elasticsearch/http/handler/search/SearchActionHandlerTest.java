@@ -2,19 +2,28 @@ package com.github.obourgain.elasticsearch.http.handler.search;
 
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.lookup.SourceLookup;
 import org.junit.Test;
 import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.client.PreferencePolicy;
 import com.github.obourgain.elasticsearch.http.handler.search.search.SearchResponse;
 import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.AggregationSchema;
+import com.github.obourgain.elasticsearch.http.response.entity.aggs.Histogram;
 import com.github.obourgain.elasticsearch.http.response.entity.aggs.Terms;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 
 public class SearchActionHandlerTest extends AbstractTest {
@@ -39,6 +48,48 @@ public class SearchActionHandlerTest extends AbstractTest {
         Assertions.assertThat(searchResponse.getHits()).hasSize(1);
     }
 
+    @Test
+    public void should_search_with_preference_policy() throws IOException, ExecutionException, InterruptedException {
+        index(THE_INDEX, THE_TYPE, THE_ID, SourceLookup.sourceAsMap(source().bytes()));
+        refresh();
+
+        httpClient.setPreferencePolicy(PreferencePolicy.queryHash());
+        SearchRequest searchRequest = new SearchRequest(THE_INDEX).types(THE_TYPE).source(new SearchSourceBuilder().query(matchAllQuery()));
+        SearchResponse searchResponse = httpClient.search(searchRequest).get();
+
+        Assertions.assertThat(searchResponse.getHits()).hasSize(1);
+    }
+
+    @Test
+    public void should_send_preference_of_the_policy() throws Exception {
+        index(THE_INDEX, THE_TYPE, THE_ID, SourceLookup.sourceAsMap(source().bytes()));
+        refresh();
+
+        // no node has this id, so the search finds no shard copy if the preference is sent
+        httpClient.setPreferencePolicy(new PreferencePolicy() {
+            @Override
+            protected String searchPreference(SearchRequest request) {
+                return "_only_node:no_such_node";
+            }
+
+            @Override
+            protected String getPreference(GetRequest request) {
+                return null;
+            }
+        });
+        SearchRequest searchRequest = new SearchRequest(THE_INDEX).types(THE_TYPE).source(new SearchSourceBuilder().query(matchAllQuery()));
+        try {
+            httpClient.search(searchRequest).get();
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e).hasCauseInstanceOf(ElasticsearchHttpException.class);
+        }
+
+        // the preference of the request is kept
+        searchRequest.preference("_local");
+        Assertions.assertThat(httpClient.search(searchRequest).get().getHits()).hasSize(1);
+    }
+
     @Test
     public void should_search_with_template() throws IOException, ExecutionException, InterruptedException {
         BytesReference source = source().bytes();
@@ -103,4 +154,50 @@ public class SearchActionHandlerTest extends AbstractTest {
         Assertions.assertThat(searchResponse.getAggregations().getTerms("foo").getBuckets()).hasSize(1);
         Assertions.assertThat(searchResponse.getAggregations().getTerms("foo").getBuckets()).contains(new Terms.Bucket(0, "the_string_value", 1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_search_with_columnar_agg() throws IOException, ExecutionException, InterruptedException {
+        index(THE_INDEX, THE_TYPE, THE_ID, SourceLookup.sourceAsMap(source().bytes()));
+
+        refresh();
+
+        SearchRequest searchRequest = new SearchRequest(THE_INDEX).types(THE_TYPE)
+                .source(new SearchSourceBuilder()
+                        .query(matchAllQuery())
+                        .aggregation(AggregationBuilders.histogram("by_integer").field("the_integer_field").interval(10)
+                                .subAggregation(AggregationBuilders.max("max_integer").field("the_integer_field"))));
+        AggregationSchema schema = AggregationSchema.builder()
+                .addColumnar("by_integer", "histogram")
+                .addFromSource(searchRequest.source())
+                .build();
+
+        SearchResponse searchResponse = httpClient.search(searchRequest, schema).get();
+
+        Histogram histogram = searchResponse.getAggregations().getHistogram("by_integer");
+        Assertions.assertThat(histogram.getBuckets()).isNull();
+        Assertions.assertThat(histogram.getColumns().getKeys()).containsExactly(40);
+        Assertions.assertThat(histogram.getColumns().getDocCounts()).containsExactly(1);
+        Assertions.assertThat(histogram.getColumns().getValues("max_integer")).containsExactly(42.0);
+    }
+
+    @Test
+    public void should_stream_hits() throws IOException, ExecutionException, InterruptedException {
+        String padding = Strings.padStart("", 1024, 'x');
+        BulkRequestBuilder bulk = transportClient.prepareBulk();
+        // about 1.3mb of hits, more than RxNetty would aggregate
+        for (int i = 0; i < 1000; i++) {
+            bulk.add(transportClient.prepareIndex(THE_INDEX, THE_TYPE, String.valueOf(i)).setSource("padding", padding));
+        }
+        bulk.get();
+        refresh();
+
+        SearchRequest searchRequest = new SearchRequest(THE_INDEX).types(THE_TYPE).source(new SearchSourceBuilder().query(matchAllQuery()).size(1000));
+        List<Hit> hits = httpClient.searchHits(searchRequest).toList().toBlocking().single();
+
+        Assertions.assertThat(hits).hasSize(1000);
+        for (Hit hit : hits) {
+            Assertions.assertThat(hit.getIndex()).isEqualTo(THE_INDEX);
+            Assertions.assertThat(SourceLookup.sourceAsMap(new BytesArray(hit.getSource()))).containsEntry("padding", padding);
+        }
+    }
+}
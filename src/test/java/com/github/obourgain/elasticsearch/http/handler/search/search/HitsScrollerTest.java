@@ -0,0 +1,150 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import rx.Subscription;
+
+public class HitsScrollerTest extends AbstractTest {
+
+    @Test
+    public void should_scroll_all_hits() throws Exception {
+        createDocs(25);
+
+        List<Hit> hits = httpClient.scrollAll(request().scroll("1m")).toList().toBlocking().single();
+
+        assertAllDocs(hits, 25);
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_scan_all_hits() throws Exception {
+        createDocs(25);
+
+        List<Hit> hits = httpClient.scrollAll(request().searchType(SearchType.SCAN), 1).toList().toBlocking().single();
+
+        assertAllDocs(hits, 25);
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_clear_scroll_on_unsubscribe() throws Exception {
+        createDocs(25);
+
+        List<Hit> hits = httpClient.scrollAll(request(), 3).take(5).toList().toBlocking().single();
+
+        Assertions.assertThat(hits).hasSize(5);
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_clear_scroll_on_unsubscribe_before_first_page() throws Exception {
+        createDocs(25);
+
+        Subscription subscription = httpClient.scrollAll(request()).subscribe();
+        subscription.unsubscribe();
+
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_not_modify_request() throws Exception {
+        createDocs(5);
+        SearchRequest request = request();
+
+        List<Hit> hits = httpClient.scrollAll(request).toList().toBlocking().single();
+
+        assertAllDocs(hits, 5);
+        Assertions.assertThat(request.scroll()).isNull();
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_complete_on_no_hits() throws Exception {
+        List<Hit> hits = httpClient.scrollAll(request()).toList().toBlocking().single();
+
+        Assertions.assertThat(hits).isEmpty();
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_fail_on_missing_index() throws Exception {
+        try {
+            httpClient.scrollAll(new SearchRequest("missing_index")).toBlocking().getIterator().hasNext();
+            fail();
+        } catch (ElasticsearchHttpException e) {
+            Assertions.assertThat(e.getMessage()).contains("IndexMissingException");
+        }
+    }
+
+    @Test
+    public void should_scroll_all_shards_in_parallel() throws Exception {
+        createDocs(25);
+
+        List<Hit> hits = httpClient.scrollAllParallel(request()).toList().toBlocking().single();
+
+        assertAllDocs(hits, 25);
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_scroll_shards_one_at_a_time() throws Exception {
+        createDocs(25);
+
+        List<Hit> hits = httpClient.scrollAllParallel(request().searchType(SearchType.SCAN), 1, 1).toList().toBlocking().single();
+
+        assertAllDocs(hits, 25);
+        assertScrollsCleared();
+    }
+
+    @Test
+    public void should_restrict_shard_request_to_shard() throws Exception {
+        Assertions.assertThat(HitsScroller.shardRequest(request(), 2).preference()).isEqualTo("_shards:2");
+        Assertions.assertThat(HitsScroller.shardRequest(request().preference("_local"), 2).preference()).isEqualTo("_shards:2;_local");
+        Assertions.assertThat(HitsScroller.shardRequest(request(), 2).indices()).containsExactly(THE_INDEX);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_refuse_no_prefetch() throws Exception {
+        httpClient.scrollAll(request(), 0);
+    }
+
+    private static SearchRequest request() {
+        return new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(matchAllQuery()).size(2));
+    }
+
+    private void createDocs(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            createSimpleDoc(THE_INDEX, THE_TYPE, String.valueOf(i));
+        }
+        ensureSearchable(THE_INDEX);
+    }
+
+    private static void assertAllDocs(List<Hit> hits, int count) {
+        Set<String> ids = new HashSet<>();
+        for (Hit hit : hits) {
+            ids.add(hit.getId());
+        }
+        Assertions.assertThat(hits).hasSize(count);
+        Assertions.assertThat(ids).hasSize(count);
+    }
+
+    private void assertScrollsCleared() throws Exception {
+        assertBusy(new Runnable() {
+            @Override
+            public void run() {
+                long openContexts = transportClient.admin().indices().prepareStats().setSearch(true).get().getTotal().getSearch().getOpenContexts();
+                Assertions.assertThat(openContexts).isEqualTo(0);
+            }
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.TestFilesUtils;
+import com.github.obourgain.elasticsearch.http.response.entity.Hit;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import rx.Observable;
+
+public class HitsStreamParserTest {
+
+    @Test
+    public void should_emit_same_hits_as_response_parser_whatever_the_chunking() throws Exception {
+        for (String file : new String[]{"response.json", "response_with_agg.json", "response_with_fields.json", "response_with_highlight.json"}) {
+            String json = TestFilesUtils.readFromClasspath("com/github/obourgain/elasticsearch/http/handler/search/search/" + file);
+            List<Hit> expected = new SearchResponse().parse(new BytesArray(json)).getHits().getHits();
+
+            byte[] bytes = json.getBytes(Charsets.UTF_8);
+            for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+                List<Hit> hits = stream(bytes, chunkSize);
+                assertThat(hits).hasSize(expected.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(hits.get(i).getId()).isEqualTo(expected.get(i).getId());
+                    assertThat(hits.get(i).getSource()).isEqualTo(expected.get(i).getSource());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void should_ignore_braces_and_hits_in_strings_and_nested_hits() throws Exception {
+        String json = "{\"took\":1,\"timed_out\":false,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}," +
+                "\"hits\":{\"total\":2,\"max_score\":1.0,\"hits\":[" +
+                "{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"1\",\"_score\":1.0,\"_source\":{\"hits\":[{\"a\":\"}]\\\"{\"}]}}," +
+                "{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"2\",\"_score\":1.0,\"_source\":{\"text\":\"\\\\\"}}" +
+                "]}," +
+                "\"aggregations\":{\"top\":{\"hits\":{\"total\":1,\"max_score\":1.0,\"hits\":[{\"_index\":\"the_index\",\"_type\":\"the_type\",\"_id\":\"3\",\"_score\":1.0}]}}}}";
+        byte[] bytes = json.getBytes(Charsets.UTF_8);
+        for (int chunkSize = 1; chunkSize <= bytes.length; chunkSize++) {
+            List<Hit> hits = stream(bytes, chunkSize);
+            assertThat(hits).hasSize(2);
+            assertThat(hits.get(0).getId()).isEqualTo("1");
+            assertThat(hits.get(1).getId()).isEqualTo("2");
+        }
+    }
+
+    @Test
+    public void should_fail_on_truncated_response() throws Exception {
+        byte[] bytes = "{\"hits\":{\"hits\":[{\"_id\":\"1\"}".getBytes(Charsets.UTF_8);
+        try {
+            stream(bytes, 4);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessage("search response ended before being complete");
+        }
+    }
+
+    private static List<Hit> stream(byte[] bytes, int chunkSize) {
+        List<ByteBuf> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            chunks.add(Unpooled.wrappedBuffer(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        return Observable.from(chunks).lift(new HitsStreamParser()).toList().toBlocking().single();
+    }
+
+    private static void fail() {
+        throw new AssertionError("expected an exception");
+    }
+}
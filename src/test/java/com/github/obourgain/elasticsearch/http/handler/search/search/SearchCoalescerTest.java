@@ -0,0 +1,173 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+import com.github.obourgain.elasticsearch.http.client.PreferencePolicy;
+import com.github.obourgain.elasticsearch.http.response.ElasticsearchHttpException;
+
+public class SearchCoalescerTest extends AbstractTest {
+
+    @Test
+    public void should_dispatch_responses_of_coalesced_searches() throws Exception {
+        createDocs();
+        // the window is too long for the test to pass unless the searches are sent when 3 are buffered
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMinutes(1), 3);
+
+        Future<SearchResponse> all = httpClient.search(request(matchAllQuery()));
+        Future<SearchResponse> one = httpClient.search(request(termQuery("_id", "1")));
+        Future<SearchResponse> none = httpClient.search(request(termQuery("_id", "42")));
+
+        Assertions.assertThat(all.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        Assertions.assertThat(one.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(1);
+        Assertions.assertThat(one.get().getHits().getAt(0).getId()).isEqualTo("1");
+        Assertions.assertThat(none.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_send_searches_after_window() throws Exception {
+        createDocs();
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMillis(50), 100);
+
+        Future<SearchResponse> all = httpClient.search(request(matchAllQuery()));
+        Future<SearchResponse> one = httpClient.search(request(termQuery("_id", "1")));
+
+        Assertions.assertThat(all.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        Assertions.assertThat(one.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_fail_only_the_failed_search() throws Exception {
+        createDocs();
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMinutes(1), 2);
+
+        Future<SearchResponse> missing = httpClient.search(new SearchRequest("missing_index").source(new SearchSourceBuilder().query(matchAllQuery())));
+        Future<SearchResponse> all = httpClient.search(request(matchAllQuery()));
+
+        Assertions.assertThat(all.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        try {
+            missing.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e.getCause()).isInstanceOf(ElasticsearchHttpException.class);
+            Assertions.assertThat(e.getCause().getMessage()).contains("IndexMissingException");
+        }
+    }
+
+    @Test
+    public void should_send_preference_of_the_policy() throws Exception {
+        createDocs();
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMinutes(1), 2);
+        // no node has this id, so the searches find no shard copy if the preference is sent
+        httpClient.setPreferencePolicy(new PreferencePolicy() {
+            @Override
+            protected String searchPreference(SearchRequest request) {
+                return "_only_node:no_such_node";
+            }
+
+            @Override
+            protected String getPreference(GetRequest request) {
+                return null;
+            }
+        });
+
+        Future<SearchResponse> withPolicy = httpClient.search(request(matchAllQuery()));
+        // the preference of the request is kept
+        Future<SearchResponse> local = httpClient.search(request(matchAllQuery()).preference("_local"));
+
+        Assertions.assertThat(local.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        try {
+            withPolicy.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            Assertions.assertThat(e.getCause()).isInstanceOf(ElasticsearchHttpException.class);
+        }
+    }
+
+    @Test
+    public void should_serve_cached_searches_without_coalescing() throws Exception {
+        createDocs();
+        httpClient.enableSearchCache(ByteSizeValue.parseBytesSizeValue("1mb"), TimeValue.timeValueMinutes(1));
+        Assertions.assertThat(httpClient.search(request(matchAllQuery())).get().getHits().getTotal()).isEqualTo(3);
+        // the window is too long for the test to pass unless the cached search is not buffered
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMinutes(1), 100);
+
+        Assertions.assertThat(httpClient.search(request(matchAllQuery())).get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_not_cache_coalesced_searches() throws Exception {
+        createDocs();
+        httpClient.enableSearchCache(ByteSizeValue.parseBytesSizeValue("1mb"), TimeValue.timeValueMinutes(1));
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMinutes(1), 2);
+
+        Future<SearchResponse> all = httpClient.search(request(matchAllQuery()));
+        Future<SearchResponse> one = httpClient.search(request(termQuery("_id", "1")));
+
+        Assertions.assertThat(all.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        Assertions.assertThat(one.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(1);
+        Assertions.assertThat(httpClient.getSearchCache().size()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_send_searches_added_after_close() throws Exception {
+        createDocs();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SearchCoalescer coalescer = new SearchCoalescer(new SearchActionHandler(httpClient), new MultiSearchActionHandler(httpClient),
+                    scheduler, TimeValue.timeValueMinutes(1), 100);
+            coalescer.close();
+
+            PlainActionFuture<SearchResponse> future = PlainActionFuture.newFuture();
+            coalescer.execute(request(matchAllQuery()), future);
+
+            Assertions.assertThat(future.get(10, TimeUnit.SECONDS).getHits().getTotal()).isEqualTo(3);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_not_coalesce_searches_unsupported_by_multi_search() throws Exception {
+        Assertions.assertThat(SearchCoalescer.canCoalesce(request(matchAllQuery()))).isTrue();
+        Assertions.assertThat(SearchCoalescer.canCoalesce(request(matchAllQuery()).scroll("1m"))).isFalse();
+        SearchRequest template = request(matchAllQuery());
+        template.templateName("the_template");
+        Assertions.assertThat(SearchCoalescer.canCoalesce(template)).isFalse();
+        Assertions.assertThat(SearchCoalescer.canCoalesce(request(matchAllQuery()).queryCache(true))).isFalse();
+        Assertions.assertThat(SearchCoalescer.canCoalesce(request(matchAllQuery()).indicesOptions(IndicesOptions.lenientExpandOpen()))).isFalse();
+        Assertions.assertThat(SearchCoalescer.canCoalesce(new SearchRequest(THE_INDEX))).isFalse();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_refuse_to_enable_twice() throws Exception {
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMillis(10), 10);
+        httpClient.enableSearchCoalescing(TimeValue.timeValueMillis(10), 10);
+    }
+
+    private static SearchRequest request(QueryBuilder query) {
+        return new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(query));
+    }
+
+    private void createDocs() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            createSimpleDoc(THE_INDEX, THE_TYPE, String.valueOf(i));
+        }
+        ensureSearchable(THE_INDEX);
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.obourgain.elasticsearch.http.handler.search.search;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
+import org.assertj.core.api.Assertions;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.AbstractTest;
+
+public class SearchResponseCacheTest extends AbstractTest {
+
+    @Test
+    public void should_serve_search_from_cache_until_invalidated() throws Exception {
+        createSimpleDoc(THE_INDEX, THE_TYPE, "1");
+        ensureSearchable(THE_INDEX);
+        httpClient.enableSearchCache(ByteSizeValue.parseBytesSizeValue("1mb"), TimeValue.timeValueMinutes(1));
+
+        Assertions.assertThat(httpClient.search(request(matchAllQuery())).get().getHits().getTotal()).isEqualTo(1);
+        createSimpleDoc(THE_INDEX, THE_TYPE, "2");
+
+        SearchResponse cached = httpClient.search(request(matchAllQuery())).get();
+        Assertions.assertThat(cached.getHits().getTotal()).isEqualTo(1);
+        Assertions.assertThat(cached.getHits().getAt(0).getId()).isEqualTo("1");
+        Assertions.assertThat(httpClient.getSearchCache().size()).isEqualTo(1);
+
+        httpClient.getSearchCache().invalidate(THE_INDEX);
+
+        Assertions.assertThat(httpClient.search(request(matchAllQuery())).get().getHits().getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_key_on_source() throws Exception {
+        String key = SearchResponseCache.key(request(matchAllQuery()));
+
+        Assertions.assertThat(key).isNotNull().isEqualTo(SearchResponseCache.key(request(matchAllQuery())));
+        Assertions.assertThat(key).isNotEqualTo(SearchResponseCache.key(request(termQuery("_id", "1"))));
+        Assertions.assertThat(key).isNotEqualTo(SearchResponseCache.key(request(matchAllQuery()).routing("the_routing")));
+        Assertions.assertThat(key).isNotEqualTo(SearchResponseCache.key(request(matchAllQuery()).types(THE_TYPE)));
+        Assertions.assertThat(key).isNotEqualTo(SearchResponseCache.key(request(matchAllQuery()).preference("_local")));
+        Assertions.assertThat(key).isNotEqualTo(SearchResponseCache.key(request(matchAllQuery()).indicesOptions(IndicesOptions.lenientExpandOpen())));
+        Assertions.assertThat(SearchResponseCache.key(request(matchAllQuery()).scroll("1m"))).isNull();
+    }
+
+    @Test
+    public void should_evict_above_max_size() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(new ByteSizeValue(100), TimeValue.timeValueMinutes(1));
+        SearchRequest request = request(matchAllQuery());
+
+        cache.put("small", request, new BytesArray(new byte[10]), cache.sequence());
+        cache.put("big", request, new BytesArray(new byte[200]), cache.sequence());
+
+        Assertions.assertThat(cache.get("small")).isNotNull();
+        Assertions.assertThat(cache.get("big")).isNull();
+    }
+
+    @Test
+    public void should_not_cache_response_of_search_sent_before_invalidation() throws Exception {
+        SearchResponseCache cache = new SearchResponseCache(new ByteSizeValue(100), TimeValue.timeValueMinutes(1));
+        SearchRequest request = request(matchAllQuery());
+
+        long sentBeforeInvalidation = cache.sequence();
+        cache.invalidate(THE_INDEX);
+        cache.put("stale", request, new BytesArray(new byte[10]), sentBeforeInvalidation);
+        cache.put("fresh", request, new BytesArray(new byte[10]), cache.sequence());
+
+        Assertions.assertThat(cache.get("stale")).isNull();
+        Assertions.assertThat(cache.get("fresh")).isNotNull();
+    }
+
+    private static SearchRequest request(QueryBuilder query) {
+        return new SearchRequest(THE_INDEX).source(new SearchSourceBuilder().query(query));
+    }
+}
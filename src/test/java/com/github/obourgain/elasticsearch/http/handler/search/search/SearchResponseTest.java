@@ -1,6 +1,7 @@
 package com.github.obourgain.elasticsearch.http.handler.search.search;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import java.util.Arrays;
 import java.util.List;
 import org.assertj.core.api.Assertions;
 import org.elasticsearch.common.bytes.BytesArray;
@@ -11,6 +12,9 @@ import com.github.obourgain.elasticsearch.http.response.entity.aggs.Terms;
 import com.github.obourgain.elasticsearch.http.response.entity.suggest.Completion;
 import com.github.obourgain.elasticsearch.http.response.entity.suggest.Suggestions;
 import com.github.obourgain.elasticsearch.http.response.entity.suggest.Term;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 
 public class SearchResponseTest {
 
@@ -40,6 +44,26 @@ public class SearchResponseTest {
         assertThat(hits.get(0).getSource().length).isGreaterThan(1);
     }
 
+    @Test
+    public void should_parse_response_from_heap_and_direct_buffers() throws Exception {
+        String json = TestFilesUtils.readFromClasspath("com/github/obourgain/elasticsearch/http/handler/search/search/response.json");
+        String expectedSource = new String(new SearchResponse().parse(new BytesArray(json)).getHits().getHits().get(0).getSource(), Charsets.UTF_8);
+
+        for (ByteBuf buffer : Arrays.asList(Unpooled.buffer(), Unpooled.directBuffer())) {
+            buffer.writeBytes(("garbage" + json).getBytes(Charsets.UTF_8));
+            buffer.readerIndex("garbage".length());
+            try {
+                SearchResponse searchResponse = SearchResponse.parse(buffer).toBlocking().single();
+
+                Hit hit = searchResponse.getHits().getHits().get(0);
+                assertThat(hit.getId()).isEqualTo("the_id");
+                assertThat(new String(hit.getSource(), Charsets.UTF_8)).isEqualTo(expectedSource);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
     @Test
     public void should_parse_response_with_aggs() throws Exception {
         String json = TestFilesUtils.readFromClasspath("com/github/obourgain/elasticsearch/http/handler/search/search/response_with_agg.json");
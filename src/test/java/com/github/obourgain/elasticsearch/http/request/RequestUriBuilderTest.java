@@ -0,0 +1,45 @@
+package com.github.obourgain.elasticsearch.http.request;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.net.URLEncoder;
+import org.elasticsearch.action.WriteConsistencyLevel;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.index.VersionType;
+import org.junit.Test;
+
+public class RequestUriBuilderTest {
+
+    @Test
+    public void should_not_copy_id_without_char_to_encode() throws Exception {
+        String id = "AU-the_id.42";
+
+        assertThat(RequestUriBuilder.encode(id)).isSameAs(id);
+    }
+
+    @Test
+    public void should_encode_like_url_encoder() throws Exception {
+        for (String id : new String[]{"the id", "a/b", "a+b", "é", "100%", "a?b&c=d", "~"}) {
+            assertThat(RequestUriBuilder.encode(id)).isEqualTo(URLEncoder.encode(id, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void should_build_uri() throws Exception {
+        String uri = new RequestUriBuilder("the_index", "the_type", RequestUriBuilder.encode("the id"))
+                .addEndpoint("_update")
+                .addQueryParameter("refresh", true)
+                .addQueryParameterIfNotNull("routing", (String) null)
+                .addVersionType(VersionType.EXTERNAL_GTE)
+                .addConsistencyLevel(WriteConsistencyLevel.QUORUM)
+                .toString();
+
+        assertThat(uri).isEqualTo("/the_index/the_type/the+id/_update?refresh=true&version_type=external_gte&consistency=quorum");
+    }
+
+    @Test
+    public void should_add_enum_parameters_in_lower_case() throws Exception {
+        assertThat(new RequestUriBuilder().addSearchType(SearchType.DFS_QUERY_THEN_FETCH).toString()).isEqualTo("?search_type=dfs_query_then_fetch");
+        assertThat(new RequestUriBuilder().addVersionType(VersionType.INTERNAL).toString()).isEmpty();
+        assertThat(new RequestUriBuilder().addConsistencyLevel(WriteConsistencyLevel.DEFAULT).toString()).isEmpty();
+    }
+}
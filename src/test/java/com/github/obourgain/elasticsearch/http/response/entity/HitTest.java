@@ -3,12 +3,22 @@ package com.github.obourgain.elasticsearch.http.response.entity;
 import static com.github.obourgain.elasticsearch.http.TestFilesUtils.readFromClasspath;
 import static net.javacrumbs.jsonunit.fluent.JsonFluentAssert.assertThatJson;
 import static org.assertj.core.api.Assertions.assertThat;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
 import org.assertj.core.data.Offset;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.search.lookup.SourceLookup;
 import org.junit.Test;
+import com.github.obourgain.elasticsearch.http.buffer.ByteBufBytesReference;
+import com.google.common.base.Charsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
 
 public class HitTest {
 
@@ -192,4 +202,71 @@ public class HitTest {
 
         assertThat(hit.getMatchedQueries()).containsOnly("test");
     }
+
+    @Test
+    public void should_copy_only_the_source_out_of_the_response() throws Exception {
+        String json = readFromClasspath("json/entity/hit.json");
+        String source = readFromClasspath("json/entity/source.json");
+        // parse from the middle of an array to check the offsets
+        byte[] padded = ("garbage" + json + "garbage").getBytes(Charsets.UTF_8);
+        BytesArray content = new BytesArray(padded, "garbage".length(), json.length());
+        XContentParser parser = XContentHelper.createParser(content);
+        parser.nextToken();
+
+        Hit hit = new Hit().parse(parser, content);
+
+        assertThat(hit.getSourceRef().array()).isNotSameAs(padded);
+        assertThat(hit.getSourceRef().length()).isEqualTo(hit.getSourceRef().array().length);
+        assertThatJson(hit.getSourceRef().toUtf8()).isEqualTo(source);
+        assertThat(hit.getSourceAsMap()).isEqualTo(SourceLookup.sourceAsMap(new BytesArray(source)));
+        assertThat(hit.getId()).isEqualTo("1");
+    }
+
+    @Test
+    public void should_copy_only_the_source_out_of_a_direct_buffer() throws Exception {
+        String json = readFromClasspath("json/entity/hit.json");
+        String source = readFromClasspath("json/entity/source.json");
+        ByteBuf buffer = Unpooled.directBuffer();
+        buffer.writeBytes(("garbage" + json).getBytes(Charsets.UTF_8));
+        buffer.readerIndex("garbage".length());
+        try {
+            BytesReference content = new ByteBufBytesReference(buffer.slice());
+            XContentParser parser = JsonXContent.jsonXContent.createParser(new ByteBufInputStream(buffer.duplicate()));
+            parser.nextToken();
+
+            Hit hit = new Hit().parse(parser, content);
+
+            assertThat(hit.getSource()).hasSize(hit.getSourceRef().length());
+            assertThatJson(new String(hit.getSource(), Charsets.UTF_8)).isEqualTo(source);
+            assertThat(hit.getId()).isEqualTo("1");
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void should_materialize_source_once() throws Exception {
+        String json = readFromClasspath("json/entity/hit.json");
+        BytesArray content = new BytesArray(json);
+        XContentParser parser = XContentHelper.createParser(content);
+        parser.nextToken();
+
+        Hit hit = new Hit().parse(parser, content);
+
+        assertThat(hit.getSource()).isSameAs(hit.getSource());
+        assertThat(hit.getSourceAsMap()).isSameAs(hit.getSourceAsMap());
+    }
+
+    @Test
+    public void should_copy_source_when_not_parsing_from_the_content_array() throws Exception {
+        String json = readFromClasspath("json/entity/hit.json");
+        String source = readFromClasspath("json/entity/source.json");
+        BytesArray content = new BytesArray(json);
+        XContentParser parser = JsonXContent.jsonXContent.createParser(new ByteArrayInputStream(content.array()));
+        parser.nextToken();
+
+        Hit hit = new Hit().parse(parser, content);
+
+        assertThatJson(new String(hit.getSource())).isEqualTo(source);
+    }
 }
@@ -0,0 +1,46 @@
+package com.github.obourgain.elasticsearch.http.response.entity.aggs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogram;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+public class AggregationSchemaTest {
+
+    @Test
+    public void should_read_types_from_request() throws Exception {
+        SearchRequest request = new SearchRequest("the_index").source(new SearchSourceBuilder()
+                .aggregation(AggregationBuilders.terms("by_user").field("user")
+                        .subAggregation(AggregationBuilders.dateHistogram("by_day").field("date").interval(DateHistogram.Interval.DAY)
+                                .subAggregation(AggregationBuilders.avg("avg_rating").field("rating"))))
+                .aggregation(AggregationBuilders.max("max_rating").field("rating")));
+
+        AggregationSchema schema = AggregationSchema.fromRequest(request);
+
+        assertThat(schema.type("by_user")).isEqualTo("terms");
+        assertThat(schema.type("max_rating")).isEqualTo("max");
+        assertThat(schema.type("unknown")).isNull();
+        assertThat(schema.subAggregations("by_user").type("by_day")).isEqualTo("date_histogram");
+        assertThat(schema.subAggregations("by_user").subAggregations("by_day").type("avg_rating")).isEqualTo("avg");
+        assertThat(schema.subAggregations("max_rating").isEmpty()).isTrue();
+    }
+
+    @Test
+    public void should_read_aggregations_element_and_skip_meta() throws Exception {
+        String source = "{\"query\":{\"match_all\":{}},\"aggregations\":{\"the_min\":{\"meta\":{\"a\":1},\"min\":{\"field\":\"f\"}}}}";
+
+        AggregationSchema schema = AggregationSchema.fromSource(new BytesArray(source));
+
+        assertThat(schema.type("the_min")).isEqualTo("min");
+    }
+
+    @Test
+    public void should_be_empty_without_aggregations() throws Exception {
+        assertThat(AggregationSchema.fromSource(null)).isSameAs(AggregationSchema.EMPTY);
+        assertThat(AggregationSchema.fromSource(new BytesArray("{\"query\":{\"match_all\":{}}}"))).isSameAs(AggregationSchema.EMPTY);
+        assertThat(AggregationSchema.fromRequest(new SearchRequest("the_index"))).isSameAs(AggregationSchema.EMPTY);
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.obourgain.elasticsearch.http.response.entity.aggs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.junit.Test;
+
+public class AggregationsTest {
+
+    private static final String JSON = "{" +
+            "\"max_rating\":{\"value\":5.0,\"value_as_string\":\"5.0\"}," +
+            "\"by_user\":{\"buckets\":[" +
+            "  {\"key\":\"kimchy\",\"doc_count\":2,\"by_day\":{\"buckets\":[" +
+            "    {\"key_as_string\":\"2015-01-01\",\"key\":1420070400000,\"doc_count\":2,\"avg_rating\":{\"value\":3.5},\"min_price\":{\"value\":null}}" +
+            "  ]}}" +
+            "]}" +
+            "}";
+
+    @Test
+    public void should_parse_aggregations_in_schema_directly() throws Exception {
+        AggregationSchema schema = AggregationSchema.builder()
+                .add("by_user", "terms", AggregationSchema.builder()
+                        .add("by_day", "date_histogram", AggregationSchema.builder()
+                                .add("avg_rating", "avg")
+                                .add("min_price", "min")
+                                .build())
+                        .build())
+                .add("max_rating", "max")
+                .build();
+
+        Aggregations aggregations = parse(schema);
+
+        assertThat(aggregations.names()).containsOnly("by_user", "max_rating");
+        Terms.Bucket user = aggregations.getTerms("by_user").getBuckets().get(0);
+        assertThat(user.getKey()).isEqualTo("kimchy");
+        AbstractHistogram.Bucket day = user.getAggregations().getDateHistogram("by_day").getBuckets().get(0);
+        assertThat(day.getDocCount()).isEqualTo(2);
+        assertThat(day.getAggregations().getAvg("avg_rating").getValue()).isEqualTo(3.5);
+        assertThat(day.getAggregations().getMin("min_price").getValue()).isNaN();
+        assertThat(aggregations.getMax("max_rating").getValue()).isEqualTo(5.0);
+    }
+
+    @Test
+    public void should_keep_aggregations_not_in_schema_raw() throws Exception {
+        Aggregations aggregations = parse(AggregationSchema.builder().add("max_rating", "max").build());
+
+        assertThat(aggregations.names()).containsOnly("by_user", "max_rating");
+        assertThat(aggregations.getTerms("by_user").getBuckets().get(0).getDocCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_parse_same_aggregations_without_schema() throws Exception {
+        Aggregations aggregations = parse(AggregationSchema.EMPTY);
+
+        Terms.Bucket user = aggregations.getTerms("by_user").getBuckets().get(0);
+        AbstractHistogram.Bucket day = user.getAggregations().getDateHistogram("by_day").getBuckets().get(0);
+        assertThat(day.getAggregations().getAvg("avg_rating").getValue()).isEqualTo(3.5);
+        assertThat(aggregations.getTerms("by_user")).isSameAs(aggregations.getTerms("by_user"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_when_getting_aggregation_with_other_type() throws Exception {
+        Aggregations aggregations = parse(AggregationSchema.builder().add("max_rating", "max").build());
+
+        aggregations.getMin("max_rating");
+    }
+
+    @Test
+    public void should_parse_columnar_aggregations_as_columns() throws Exception {
+        Aggregations aggregations = parse(AggregationSchema.builder().addColumnar("by_user", "terms").build());
+
+        Terms terms = aggregations.getTerms("by_user");
+        assertThat(terms.getBuckets()).isNull();
+        assertThat(terms.getColumns().getKeysAsString()).containsExactly("kimchy");
+        assertThat(terms.getColumns().getDocCounts()).containsExactly(2);
+        assertThat(aggregations.getMax("max_rating").getValue()).isEqualTo(5.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_not_parse_other_aggregations_as_columns() throws Exception {
+        AggregationSchema.builder().addColumnar("the_range", "range");
+    }
+
+    private static Aggregations parse(AggregationSchema schema) throws Exception {
+        XContentParser parser = XContentHelper.createParser(new BytesArray(JSON));
+        parser.nextToken();
+        return Aggregations.parse(parser, schema);
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.obourgain.elasticsearch.http.response.entity.aggs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.junit.Test;
+
+public class BucketColumnsTest {
+
+    @Test
+    public void should_parse_histogram_buckets_as_columns() throws Exception {
+        StringBuilder json = new StringBuilder("{\"buckets\":[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":").append(i * 10).append(",\"doc_count\":").append(i);
+            // the avg is missing in the first buckets, and null in one
+            if (i >= 20) {
+                json.append(",\"the_avg\":{\"value\":").append(i == 50 ? "null" : i + ".5").append('}');
+            }
+            json.append(",\"the_stats\":{\"count\":1,\"min\":1.0},\"the_terms\":{\"buckets\":[{\"key\":\"a\",\"doc_count\":1}]}}");
+        }
+        json.append("]}");
+
+        Histogram histogram = new Histogram().parseColumns(parser(json.toString()), "the_histogram");
+
+        assertThat(histogram.getName()).isEqualTo("the_histogram");
+        assertThat(histogram.getBuckets()).isNull();
+        BucketColumns columns = histogram.getColumns();
+        assertThat(columns.getSize()).isEqualTo(100);
+        assertThat(columns.getKeys()).hasSize(100).startsWith(0, 10, 20).endsWith(990);
+        assertThat(columns.getDocCounts()).hasSize(100).startsWith(0, 1, 2).endsWith(99);
+        assertThat(columns.getKeysAsString()).isNull();
+        double[] avg = columns.getValues("the_avg");
+        assertThat(avg).hasSize(100);
+        assertThat(avg[19]).isNaN();
+        assertThat(avg[20]).isEqualTo(20.5);
+        assertThat(avg[50]).isNaN();
+        assertThat(avg[99]).isEqualTo(99.5);
+        assertThat(columns.getValues()).containsOnlyKeys("the_avg");
+    }
+
+    @Test
+    public void should_parse_keyed_date_histogram_buckets_as_columns() throws Exception {
+        String json = "{\"buckets\":{" +
+                "\"2015-01-01\":{\"key_as_string\":\"2015-01-01\",\"key\":1420070400000,\"doc_count\":3,\"the_max\":{\"value\":4.0}}," +
+                "\"2015-01-02\":{\"key_as_string\":\"2015-01-02\",\"key\":1420156800000,\"doc_count\":0}" +
+                "}}";
+
+        BucketColumns columns = new DateHistogram().parseColumns(parser(json), "the_histogram").getColumns();
+
+        assertThat(columns.getSize()).isEqualTo(2);
+        assertThat(columns.getKeys()).containsExactly(1420070400000L, 1420156800000L);
+        assertThat(columns.getKeysAsString()).containsExactly("2015-01-01", "2015-01-02");
+        assertThat(columns.getDocCounts()).containsExactly(3, 0);
+        assertThat(columns.getValues("the_max")[0]).isEqualTo(4.0);
+        assertThat(columns.getValues("the_max")[1]).isNaN();
+    }
+
+    @Test
+    public void should_parse_terms_buckets_as_columns() throws Exception {
+        String json = "{\"doc_count_error_upper_bound\":0,\"sum_other_doc_count\":5,\"buckets\":[" +
+                "{\"key\":\"foo\",\"doc_count\":2,\"the_sum\":{\"value\":7.0}}," +
+                "{\"key\":\"bar\",\"doc_count\":1,\"the_sum\":{\"value\":1.0}}" +
+                "]}";
+
+        Terms terms = Terms.parseColumns(parser(json), "the_terms");
+
+        assertThat(terms.getSumOtherDocCount()).isEqualTo(5);
+        assertThat(terms.getBuckets()).isNull();
+        BucketColumns columns = terms.getColumns();
+        assertThat(columns.getKeys()).isNull();
+        assertThat(columns.getKeysAsString()).containsExactly("foo", "bar");
+        assertThat(columns.getDocCounts()).containsExactly(2, 1);
+        assertThat(columns.getValues("the_sum")).containsExactly(7.0, 1.0);
+    }
+
+    @Test
+    public void should_parse_empty_buckets() throws Exception {
+        BucketColumns columns = Terms.parseColumns(parser("{\"buckets\":[]}"), "the_terms").getColumns();
+
+        assertThat(columns.getSize()).isEqualTo(0);
+        assertThat(columns.getDocCounts()).isEmpty();
+    }
+
+    private static XContentParser parser(String json) throws Exception {
+        XContentParser parser = XContentHelper.createParser(new BytesArray(json));
+        parser.nextToken();
+        return parser;
+    }
+}